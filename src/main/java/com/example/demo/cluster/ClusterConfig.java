@@ -0,0 +1,24 @@
+package com.example.demo.cluster;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+@Configuration
+@EnableConfigurationProperties(ClusterProperties.class)
+public class ClusterConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public PartitionCoordinator partitionCoordinator(ReactiveMongoTemplate mongo, ClusterProperties props,
+                                                     MeterRegistry registry) {
+        return new PartitionCoordinator(mongo, props, registry);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public PartitionedWork partitionedWork(ReactiveMongoTemplate mongo, PartitionCoordinator coordinator,
+                                           ClusterProperties props, MeterRegistry registry) {
+        return new PartitionedWork(mongo, coordinator, props, registry);
+    }
+}
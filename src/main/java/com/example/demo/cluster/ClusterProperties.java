@@ -0,0 +1,64 @@
+package com.example.demo.cluster;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.UUID;
+
+@ConfigurationProperties(prefix = "app.cluster")
+public class ClusterProperties {
+    private String nodeId = UUID.randomUUID().toString();
+    private int partitions = 64;
+    private Duration leaseTtl = Duration.ofSeconds(15);
+    private Duration heartbeat = Duration.ofSeconds(5);
+    private Duration jobPoll = Duration.ofSeconds(2);
+    private Duration jobTimeout = Duration.ofSeconds(10);
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public void setPartitions(int partitions) {
+        this.partitions = partitions;
+    }
+
+    public Duration getLeaseTtl() {
+        return leaseTtl;
+    }
+
+    public void setLeaseTtl(Duration leaseTtl) {
+        this.leaseTtl = leaseTtl;
+    }
+
+    public Duration getHeartbeat() {
+        return heartbeat;
+    }
+
+    public void setHeartbeat(Duration heartbeat) {
+        this.heartbeat = heartbeat;
+    }
+
+    public Duration getJobPoll() {
+        return jobPoll;
+    }
+
+    public void setJobPoll(Duration jobPoll) {
+        this.jobPoll = jobPoll;
+    }
+
+    public Duration getJobTimeout() {
+        return jobTimeout;
+    }
+
+    public void setJobTimeout(Duration jobTimeout) {
+        this.jobTimeout = jobTimeout;
+    }
+}
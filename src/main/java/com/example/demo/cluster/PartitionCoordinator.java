@@ -0,0 +1,175 @@
+package com.example.demo.cluster;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+// Splits background work into a fixed number of partitions and leases each one to a single node.
+// Every heartbeat a node renews its leases, counts the live nodes, and then releases partitions above
+// its fair share or claims free/expired ones below it, so partitions rebalance as nodes join or leave.
+// Leases live in the default database and are shared by all tenants.
+public class PartitionCoordinator {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionCoordinator.class);
+    static final String LEASES = "partition_leases";
+    static final String NODES = "cluster_nodes";
+
+    private final ReactiveMongoTemplate mongo;
+    private final ClusterProperties props;
+    private volatile Set<Integer> owned = Set.of();
+    private volatile Instant validUntil = Instant.EPOCH;
+    private volatile int nodes;
+    private final List<Consumer<Set<Integer>>> gainListeners = new CopyOnWriteArrayList<>();
+    private Disposable loop;
+
+    public PartitionCoordinator(ReactiveMongoTemplate mongo, ClusterProperties props, MeterRegistry registry) {
+        this.mongo = mongo;
+        this.props = props;
+        Gauge.builder("cluster.partitions.owned", this, c -> c.owned.size()).tag("node", props.getNodeId()).register(registry);
+        Gauge.builder("cluster.nodes", this, c -> c.nodes).tag("node", props.getNodeId()).register(registry);
+    }
+
+    public void start() {
+        loop = Flux.interval(Duration.ZERO, props.getHeartbeat())
+                .onBackpressureDrop()
+                .concatMap(i -> tick().onErrorResume(e -> {
+                    log.warn("partition heartbeat failed on {}", props.getNodeId(), e);
+                    return Mono.empty();
+                }))
+                .subscribe();
+    }
+
+    public void stop() {
+        if (loop != null)
+            loop.dispose();
+        owned = Set.of();
+        mongo.updateMulti(new Query(where("owner").is(props.getNodeId())),
+                        new Update().unset("owner").set("expiresAt", new Date(0)), LEASES)
+                .then(mongo.remove(new Query(where("_id").is(props.getNodeId())), NODES))
+                .block(Duration.ofSeconds(5));
+    }
+
+    public String nodeId() {
+        return props.getNodeId();
+    }
+
+    public int partition(String key) {
+        return Math.floorMod(key.hashCode(), props.getPartitions());
+    }
+
+    public boolean owns(String key) {
+        return owns(partition(key));
+    }
+
+    // Ownership is trusted locally for half a lease after the last successful renewal, leaving room
+    // for clock skew before another node can take the partition over.
+    public boolean owns(int partition) {
+        return Instant.now().isBefore(validUntil) && owned.contains(partition);
+    }
+
+    public Set<Integer> owned() {
+        return Instant.now().isBefore(validUntil) ? owned : Set.of();
+    }
+
+    // Called with the partitions this node starts to own, including ones it owned before but could not
+    // trust while its renewals failed, so work skipped for them in the meantime can be picked up again.
+    public void onGain(Consumer<Set<Integer>> listener) {
+        gainListeners.add(listener);
+    }
+
+    Mono<Void> tick() {
+        Instant now = Instant.now();
+        Date expires = Date.from(now.plus(props.getLeaseTtl()));
+        return mongo.upsert(new Query(where("_id").is(props.getNodeId())), Update.update("heartbeatAt", Date.from(now)), NODES)
+                .then(mongo.find(new Query(where("heartbeatAt").gt(Date.from(now.minus(props.getLeaseTtl())))), Document.class, NODES)
+                        .map(d -> d.getString("_id"))
+                        .sort()
+                        .collectList())
+                .flatMap(live -> mongo.updateMulti(new Query(where("owner").is(props.getNodeId())), Update.update("expiresAt", expires), LEASES)
+                        .then(mine(now))
+                        .flatMap(mine -> rebalance(mine, live, now, expires))
+                        .doOnNext(mine -> {
+                            Set<Integer> gained = new TreeSet<>(mine);
+                            gained.removeAll(owned());
+                            if (!mine.equals(owned))
+                                log.info("node {} owns {} of {} partitions ({} live nodes)",
+                                        props.getNodeId(), mine.size(), props.getPartitions(), live.size());
+                            nodes = live.size();
+                            owned = Set.copyOf(mine);
+                            validUntil = now.plus(props.getLeaseTtl().dividedBy(2));
+                            if (!gained.isEmpty())
+                                gainListeners.forEach(l -> l.accept(Set.copyOf(gained)));
+                        }))
+                .then();
+    }
+
+    private Mono<Set<Integer>> mine(Instant now) {
+        Query q = new Query(where("owner").is(props.getNodeId()).and("expiresAt").gt(Date.from(now)));
+        return mongo.find(q, Document.class, LEASES)
+                .map(d -> d.getInteger("_id"))
+                .collect(() -> (Set<Integer>) new TreeSet<Integer>(), Set::add);
+    }
+
+    private Mono<Set<Integer>> rebalance(Set<Integer> mine, List<String> live, Instant now, Date expires) {
+        int n = Math.max(1, live.size());
+        int target = (props.getPartitions() + n - 1) / n;
+        if (mine.size() > target) {
+            List<Integer> extra = new ArrayList<>(mine).subList(target, mine.size());
+            Set<Integer> kept = new TreeSet<>(mine);
+            extra.forEach(kept::remove);
+            return mongo.updateMulti(new Query(where("_id").in(extra).and("owner").is(props.getNodeId())),
+                            new Update().unset("owner").set("expiresAt", new Date(0)), LEASES)
+                    .thenReturn(kept);
+        }
+        if (mine.size() == target)
+            return Mono.just(mine);
+        Query held = new Query(where("owner").exists(true).and("expiresAt").gt(Date.from(now)));
+        return mongo.find(held, Document.class, LEASES)
+                .map(d -> d.getInteger("_id"))
+                .collect(() -> (Set<Integer>) new TreeSet<Integer>(), Set::add)
+                .flatMap(taken -> {
+                    // Start at a node-specific offset so joining nodes don't all race for the same partitions.
+                    int offset = Math.max(0, live.indexOf(props.getNodeId())) * target;
+                    List<Integer> candidates = new ArrayList<>();
+                    for (int i = 0; i < props.getPartitions(); i++) {
+                        int p = (offset + i) % props.getPartitions();
+                        if (!taken.contains(p))
+                            candidates.add(p);
+                    }
+                    return Flux.fromIterable(candidates)
+                            .concatMap(p -> claim(p, now, expires).filter(Boolean::booleanValue).map(ok -> p))
+                            .take(target - mine.size())
+                            .collect(() -> (Set<Integer>) new TreeSet<>(mine), Set::add);
+                });
+    }
+
+    private Mono<Boolean> claim(int partition, Instant now, Date expires) {
+        Query free = new Query(where("_id").is(partition).orOperator(
+                where("owner").exists(false),
+                where("expiresAt").lt(Date.from(now))));
+        return mongo.upsert(free, new Update().set("owner", props.getNodeId()).set("expiresAt", expires), LEASES)
+                .map(r -> r.getUpsertedId() != null || r.getModifiedCount() == 1)
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.just(false));
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.demo.cluster;
+
+import com.example.demo.dto.TaskDto;
+import com.example.demo.entity.PartitionJob;
+import com.example.demo.tenant.TenantContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+// Routes task-scoped background work to the node that owns the task's partition. Work for a local
+// partition runs in place; anything else is queued in partition_jobs and awaited by the caller.
+// Queued and finished jobs are announced in the partition_job_signals capped collection, which every
+// node tails once: the owner drains as soon as a job is queued and the waiting node completes its
+// request as soon as the job finishes, without polling per request. The app.cluster.job-poll sweep
+// only catches missed signals and takes over jobs left RUNNING by a node that lost its lease.
+// Execution is therefore at-least-once: a taken-over job runs again even if its first run got as far
+// as saving, so handlers must tolerate a repeat (TaskService's assign and unassign do nothing when the
+// task is already in the requested state). Only the node holding the latest claim records the result.
+public class PartitionedWork {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionedWork.class);
+    private static final int MAX_CLAIMS = 32;
+    private static final int CONCURRENCY = 16;
+    static final String SIGNALS = "partition_job_signals";
+    private static final long SIGNALS_SIZE = 16L * 1024 * 1024;
+    private static final String QUEUED = "queued";
+    private static final String FINISHED = "finished";
+
+    private final ReactiveMongoTemplate mongo;
+    private final PartitionCoordinator coordinator;
+    private final ClusterProperties props;
+    private final Map<String, Function<PartitionJob, Mono<TaskDto>>> handlers = new ConcurrentHashMap<>();
+    private final Counter local;
+    private final Counter forwarded;
+    private final Counter executed;
+    private final Map<String, Sinks.One<PartitionJob>> waiting = new ConcurrentHashMap<>();
+    private final Sinks.Many<Integer> wake = Sinks.many().multicast().directBestEffort();
+    private final Mono<Void> signalsReady;
+    private volatile boolean signalsCreated;
+    private Disposable loop;
+    private Disposable tail;
+
+    public PartitionedWork(ReactiveMongoTemplate mongo, PartitionCoordinator coordinator, ClusterProperties props,
+                           MeterRegistry registry) {
+        this.mongo = mongo;
+        this.coordinator = coordinator;
+        this.props = props;
+        this.local = Counter.builder("cluster.work").tag("route", "local").register(registry);
+        this.forwarded = Counter.builder("cluster.work").tag("route", "forwarded").register(registry);
+        this.executed = Counter.builder("cluster.work").tag("route", "executed").register(registry);
+        this.signalsReady = Mono.defer(() -> signalsCreated ? Mono.empty() : createSignals());
+    }
+
+    public void handle(String type, Function<PartitionJob, Mono<TaskDto>> handler) {
+        handlers.put(type, handler);
+    }
+
+    public Mono<TaskDto> route(String type, String taskId, String assigneeId, Supplier<Mono<TaskDto>> here) {
+        if (coordinator.owns(taskId)) {
+            local.increment();
+            return here.get();
+        }
+        forwarded.increment();
+        return TenantContext.current().flatMap(tenant -> {
+            PartitionJob job = new PartitionJob();
+            job.setId(new ObjectId().toHexString());
+            job.setPartition(coordinator.partition(taskId));
+            job.setType(type);
+            job.setTenant(tenant);
+            job.setTaskId(taskId);
+            job.setAssigneeId(assigneeId);
+            job.setState(PartitionJob.State.PENDING);
+            job.setCreatedAt(Instant.now());
+            // Registered before the insert, so a job finished before the insert returns is not missed.
+            Sinks.One<PartitionJob> finished = Sinks.one();
+            waiting.put(job.getId(), finished);
+            return mongo.insert(job)
+                    .then(signal(QUEUED, job))
+                    .then(finished.asMono())
+                    .timeout(props.getJobTimeout())
+                    .onErrorMap(TimeoutException.class, e -> new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT,
+                            "partition owner did not complete the job in time"))
+                    .doFinally(s -> waiting.remove(job.getId()))
+                    .contextWrite(TenantContext.with(TenantContext.DEFAULT))
+                    .flatMap(j -> j.getState() == PartitionJob.State.DONE
+                            ? Mono.justOrEmpty(j.getResult())
+                            : Mono.error(new ResponseStatusException(HttpStatusCode.valueOf(j.getErrorStatus()), j.getError())));
+        });
+    }
+
+    public void start() {
+        tail = signalsReady.thenMany(signals())
+                .subscribe(null, e -> log.error("partition job signals stopped on {}", coordinator.nodeId(), e));
+        loop = Flux.merge(Flux.interval(props.getJobPoll()).map(i -> -1), wake.asFlux())
+                .onBackpressureLatest()
+                .concatMap(i -> drain().then(recheck()).onErrorResume(e -> {
+                    log.warn("partition job sweep failed on {}", coordinator.nodeId(), e);
+                    return Mono.empty();
+                }), 1)
+                .subscribe();
+    }
+
+    public void stop() {
+        if (loop != null)
+            loop.dispose();
+        if (tail != null)
+            tail.dispose();
+    }
+
+    private Mono<Void> createSignals() {
+        return mongo.collectionExists(SIGNALS)
+                .flatMap(exists -> exists ? Mono.empty()
+                        : mongo.createCollection(SIGNALS, CollectionOptions.empty().capped().size(SIGNALS_SIZE))
+                        .then()
+                        // Another node may have created it in the meantime.
+                        .onErrorResume(e -> mongo.collectionExists(SIGNALS)
+                                .filter(Boolean::booleanValue)
+                                .switchIfEmpty(Mono.error(e))
+                                .then()))
+                .doOnSuccess(v -> signalsCreated = true);
+    }
+
+    // A lost signal only delays the job until the next sweep, so failing to write one is not an error.
+    private Mono<Void> signal(String kind, PartitionJob job) {
+        Document signal = new Document("kind", kind)
+                .append("job", job.getId())
+                .append("partition", job.getPartition())
+                .append("at", new Date());
+        return signalsReady.then(mongo.insert(signal, SIGNALS))
+                .onErrorResume(e -> {
+                    log.warn("could not signal {} partition job {}", kind, job.getId(), e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Flux<Document> signals() {
+        AtomicReference<Date> since = new AtomicReference<>(new Date());
+        return Flux.defer(() -> mongo.tail(new Query(where("at").gte(since.get())), Document.class, SIGNALS))
+                .doOnNext(d -> {
+                    since.set(d.getDate("at"));
+                    if (QUEUED.equals(d.getString("kind"))) {
+                        if (coordinator.owns(d.getInteger("partition")))
+                            wake.tryEmitNext(d.getInteger("partition"));
+                    } else if (waiting.containsKey(d.getString("job"))) {
+                        mongo.findById(d.getString("job"), PartitionJob.class)
+                                .subscribe(this::complete, e -> log.warn("could not read partition job {}", d.getString("job"), e));
+                    }
+                })
+                .repeatWhen(done -> done.delayElements(props.getJobPoll()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, props.getJobPoll())
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .transientErrors(true)
+                        .doBeforeRetry(s -> log.warn("partition job signals failed on {}, resuming", coordinator.nodeId(), s.failure())));
+    }
+
+    private void complete(PartitionJob job) {
+        if (job.getState() != PartitionJob.State.DONE && job.getState() != PartitionJob.State.FAILED)
+            return;
+        Sinks.One<PartitionJob> finished = waiting.remove(job.getId());
+        if (finished != null)
+            finished.tryEmitValue(job);
+    }
+
+    // Catches finished jobs whose signal this node missed, e.g. while its tail was reconnecting.
+    private Mono<Void> recheck() {
+        if (waiting.isEmpty())
+            return Mono.empty();
+        Query q = new Query(where("id").in(Set.copyOf(waiting.keySet()))
+                .and("state").in(PartitionJob.State.DONE, PartitionJob.State.FAILED));
+        return mongo.find(q, PartitionJob.class).doOnNext(this::complete).then();
+    }
+
+    private Mono<Void> drain() {
+        Set<Integer> mine = coordinator.owned();
+        if (mine.isEmpty())
+            return Mono.empty();
+        return claim(mine)
+                .expand(j -> claim(mine))
+                .take(MAX_CLAIMS)
+                .flatMap(this::execute, CONCURRENCY)
+                .then();
+    }
+
+    private Mono<PartitionJob> claim(Set<Integer> partitions) {
+        Instant now = Instant.now();
+        Query q = new Query(where("partition").in(partitions).orOperator(
+                where("state").is(PartitionJob.State.PENDING),
+                new Criteria().andOperator(
+                        where("state").is(PartitionJob.State.RUNNING),
+                        where("claimedAt").lt(now.minus(props.getLeaseTtl())))));
+        Update u = new Update()
+                .set("state", PartitionJob.State.RUNNING)
+                .set("owner", coordinator.nodeId())
+                .set("claimedAt", now);
+        return mongo.findAndModify(q, u, FindAndModifyOptions.options().returnNew(true), PartitionJob.class);
+    }
+
+    private Mono<Void> execute(PartitionJob job) {
+        executed.increment();
+        Function<PartitionJob, Mono<TaskDto>> handler = handlers.get(job.getType());
+        Mono<TaskDto> work = handler != null
+                ? Mono.defer(() -> handler.apply(job)).contextWrite(TenantContext.with(job.getTenant()))
+                : Mono.error(new IllegalStateException("no handler for job type " + job.getType()));
+        return work
+                .map(result -> Update.update("state", PartitionJob.State.DONE).set("result", result))
+                .defaultIfEmpty(Update.update("state", PartitionJob.State.DONE))
+                .onErrorResume(e -> Mono.just(Update.update("state", PartitionJob.State.FAILED)
+                        .set("errorStatus", e instanceof ResponseStatusException rse ? rse.getStatusCode().value() : 500)
+                        .set("error", e instanceof ResponseStatusException rse ? rse.getReason() : e.getMessage())))
+                .flatMap(u -> mongo.updateFirst(
+                        new Query(where("id").is(job.getId()).and("owner").is(coordinator.nodeId())), u, PartitionJob.class))
+                .flatMap(r -> r.getModifiedCount() > 0 ? signal(FINISHED, job) : Mono.empty())
+                .then();
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.demo.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.reactivestreams.Publisher;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+@Configuration
+public class CodecConfig {
+
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+    // WebFlux would register Smile codecs on its own, but with a plain mapper that lacks the modules
+    // and settings Boot applies to JSON; both binary formats are built from Boot's builder instead.
+    @Bean
+    public CodecCustomizer binaryCodecCustomizer(Jackson2ObjectMapperBuilder builder) {
+        ObjectMapper cbor = builder.factory(new CBORFactory()).build();
+        ObjectMapper smile = builder.factory(new SmileFactory()).build();
+        return configurer -> {
+            configurer.customCodecs().register(new StreamingCborEncoder(cbor));
+            configurer.customCodecs().register(new Jackson2CborDecoder(cbor));
+            configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(smile));
+            configurer.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(smile));
+        };
+    }
+
+    static class StreamingCborEncoder extends Jackson2CborEncoder {
+
+        private static final byte[] ARRAY_START = {(byte) 0x9F};
+        private static final byte[] BREAK = {(byte) 0xFF};
+
+        StreamingCborEncoder(ObjectMapper mapper) {
+            super(mapper);
+        }
+
+        // Jackson2CborEncoder only encodes single values. A Flux is written as a CBOR indefinite-length
+        // array: the start marker, each element as soon as it arrives, then the break marker.
+        @Override
+        public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory,
+                                       ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+            if (inputStream instanceof Mono<?> mono)
+                return mono.map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints)).flux();
+            return Flux.concat(
+                    Mono.fromSupplier(() -> bufferFactory.wrap(ARRAY_START)),
+                    Flux.from(inputStream).map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints)),
+                    Mono.fromSupplier(() -> bufferFactory.wrap(BREAK)));
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.demo.config;
+
+import com.example.demo.tenant.TenantLimitedMongoTemplate;
+import com.example.demo.tenant.TenantLimiter;
+import com.example.demo.tenant.TenantMongoDatabaseFactory;
+import com.example.demo.tenant.TenantProperties;
+import com.mongodb.MongoCompressor;
+import com.mongodb.ReadPreference;
+import com.mongodb.reactivestreams.client.MongoClient;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.autoconfigure.mongo.MongoProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+@EnableConfigurationProperties({MongoTuningProperties.class, TenantProperties.class})
+public class MongoConfig {
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoTuning(MongoTuningProperties props) {
+        return settings -> {
+            settings.applyToConnectionPoolSettings(pool -> pool
+                    .minSize(props.getPool().getMinSize())
+                    .maxSize(props.getPool().getMaxSize())
+                    .maxWaitTime(props.getPool().getMaxWaitTime().toMillis(), TimeUnit.MILLISECONDS)
+                    .maxConnectionIdleTime(props.getPool().getMaxIdleTime().toMillis(), TimeUnit.MILLISECONDS));
+            settings.applyToSocketSettings(socket -> socket
+                    .connectTimeout((int) props.getConnectTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                    .readTimeout((int) props.getSocketTimeout().toMillis(), TimeUnit.MILLISECONDS));
+            settings.compressorList(props.getCompressors().stream().map(MongoConfig::compressor).toList());
+            settings.readPreference(ReadPreference.valueOf(props.getReadPreference()));
+        };
+    }
+
+    @Bean
+    public TenantMongoDatabaseFactory reactiveMongoDatabaseFactory(MongoClient client, MongoProperties properties) {
+        return new TenantMongoDatabaseFactory(client, properties.getMongoClientDatabase());
+    }
+
+    @Bean
+    public ReactiveMongoTemplate reactiveMongoTemplate(ReactiveMongoDatabaseFactory factory, MongoConverter converter,
+                                                       MongoTuningProperties props, TenantLimiter limiter) {
+        ReactiveMongoTemplate template = new TenantLimitedMongoTemplate(factory, converter, limiter);
+        template.setWriteConcernResolver(action -> props.writeConcernFor(action.getMongoActionOperation().name()));
+        return template;
+    }
+
+    private static MongoCompressor compressor(String name) {
+        return switch (name.trim().toLowerCase(Locale.ROOT)) {
+            case "zstd" -> MongoCompressor.createZstdCompressor();
+            case "snappy" -> MongoCompressor.createSnappyCompressor();
+            case "zlib" -> MongoCompressor.createZlibCompressor();
+            default -> throw new IllegalArgumentException("unknown compressor: " + name);
+        };
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.demo.config;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "app.mongo")
+public class MongoTuningProperties {
+    private final Pool pool = new Pool();
+    private Duration connectTimeout = Duration.ofSeconds(5);
+    private Duration socketTimeout = Duration.ofSeconds(10);
+    private List<String> compressors = new ArrayList<>();
+    private String readPreference = "primary";
+    private String listReadPreference = "primary";
+    private String writeConcern = "acknowledged";
+    private Map<String, String> writeConcerns = new HashMap<>();
+
+    public Pool getPool() {
+        return pool;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public Duration getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    public void setSocketTimeout(Duration socketTimeout) {
+        this.socketTimeout = socketTimeout;
+    }
+
+    public List<String> getCompressors() {
+        return compressors;
+    }
+
+    public void setCompressors(List<String> compressors) {
+        this.compressors = compressors;
+    }
+
+    public String getReadPreference() {
+        return readPreference;
+    }
+
+    public void setReadPreference(String readPreference) {
+        this.readPreference = readPreference;
+    }
+
+    public String getListReadPreference() {
+        return listReadPreference;
+    }
+
+    public void setListReadPreference(String listReadPreference) {
+        this.listReadPreference = listReadPreference;
+    }
+
+    public String getWriteConcern() {
+        return writeConcern;
+    }
+
+    public void setWriteConcern(String writeConcern) {
+        this.writeConcern = writeConcern;
+    }
+
+    public Map<String, String> getWriteConcerns() {
+        return writeConcerns;
+    }
+
+    public void setWriteConcerns(Map<String, String> writeConcerns) {
+        this.writeConcerns = writeConcerns;
+    }
+
+    public ReadPreference listReads() {
+        return ReadPreference.valueOf(listReadPreference);
+    }
+
+    public WriteConcern writeConcernFor(String operation) {
+        String name = writeConcerns.getOrDefault(operation.toLowerCase(Locale.ROOT), writeConcern);
+        WriteConcern wc = WriteConcern.valueOf(name);
+        if (wc == null)
+            throw new IllegalArgumentException("unknown write concern: " + name);
+        return wc;
+    }
+
+    public static class Pool {
+        private int minSize = 0;
+        private int maxSize = 100;
+        private Duration maxWaitTime = Duration.ofSeconds(2);
+        private Duration maxIdleTime = Duration.ofMinutes(5);
+
+        public int getMinSize() {
+            return minSize;
+        }
+
+        public void setMinSize(int minSize) {
+            this.minSize = minSize;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public Duration getMaxWaitTime() {
+            return maxWaitTime;
+        }
+
+        public void setMaxWaitTime(Duration maxWaitTime) {
+            this.maxWaitTime = maxWaitTime;
+        }
+
+        public Duration getMaxIdleTime() {
+            return maxIdleTime;
+        }
+
+        public void setMaxIdleTime(Duration maxIdleTime) {
+            this.maxIdleTime = maxIdleTime;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.demo.config;
+
+import com.example.demo.dto.AssigneeRequest;
+import com.example.demo.dto.InboxEventDto;
+import com.example.demo.dto.RecordingDto;
+import com.example.demo.dto.TaskCreateRequest;
+import com.example.demo.dto.TaskDto;
+import com.example.demo.dto.TaskEventDto;
+import com.example.demo.dto.TaskUpdateRequest;
+import com.example.demo.dto.UserCreateRequest;
+import com.example.demo.dto.UserDashboardDto;
+import com.example.demo.dto.UserDto;
+import com.example.demo.dto.UserUpdateRequest;
+import com.example.demo.entity.IdempotencyRecord;
+import com.example.demo.entity.PartitionJob;
+import com.example.demo.entity.Task;
+import com.example.demo.entity.TaskEvent;
+import com.example.demo.entity.TaskStatus;
+import com.example.demo.entity.User;
+import com.example.demo.entity.UserDashboard;
+import com.example.demo.repository.TaskRepository;
+import com.example.demo.repository.UserRepository;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+import java.util.List;
+
+// Reflection hints for the native image. DTOs are bound by Jackson; entities are read and written
+// reflectively by the Mongo mapping layer, including the ones only used through ReactiveMongoTemplate.
+// Repositories are additionally wrapped in plain JDK proxies by ResilienceConfig.
+@Configuration
+@ImportRuntimeHints(NativeHints.Registrar.class)
+@RegisterReflectionForBinding({
+        TaskDto.class, UserDto.class, TaskEventDto.class, InboxEventDto.class, UserDashboardDto.class, RecordingDto.class,
+        TaskCreateRequest.class, TaskUpdateRequest.class, UserCreateRequest.class, UserUpdateRequest.class,
+        AssigneeRequest.class
+})
+public class NativeHints {
+
+    static class Registrar implements RuntimeHintsRegistrar {
+        private static final List<Class<?>> ENTITIES = List.of(
+                Task.class, User.class, TaskEvent.class, TaskEvent.Type.class, TaskStatus.class, IdempotencyRecord.class,
+                UserDashboard.class, UserDashboard.Activity.class, PartitionJob.class, PartitionJob.State.class);
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            for (Class<?> type : ENTITIES)
+                hints.reflection().registerType(type,
+                        MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                        MemberCategory.INVOKE_DECLARED_METHODS,
+                        MemberCategory.DECLARED_FIELDS);
+            hints.proxies().registerJdkProxy(TaskRepository.class);
+            hints.proxies().registerJdkProxy(UserRepository.class);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.demo.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.web.embedded.netty.NettyServerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.client.ReactorResourceFactory;
+import reactor.netty.resources.LoopResources;
+
+@Configuration
+@Profile("wan")
+public class NettyConfig {
+
+    @Bean
+    public NettyServerCustomizer nettyTuning(@Value("${app.netty.backlog:1024}") int backlog) {
+        return server -> server
+                .option(ChannelOption.SO_BACKLOG, backlog)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childOption(ChannelOption.SO_KEEPALIVE, true);
+    }
+
+    // Boot starts the server on the ReactorResourceFactory's event loops, so a dedicated pool is set
+    // there rather than in a customizer. The factory is a lifecycle bean and disposes the loops on shutdown.
+    @Bean
+    @ConditionalOnExpression("${app.netty.io-workers:0} > 0")
+    public ReactorResourceFactory reactorServerResourceFactory(@Value("${app.netty.io-workers}") int ioWorkers) {
+        ReactorResourceFactory resources = new ReactorResourceFactory();
+        resources.setUseGlobalResources(false);
+        resources.setLoopResourcesSupplier(() -> LoopResources.create("http-io", ioWorkers, true));
+        return resources;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.demo.config;
+
+import com.example.demo.dto.Projected;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+
+// Skips the properties a Projected DTO was not asked for. As a Module component it is added to every
+// mapper built from Boot's Jackson2ObjectMapperBuilder (CBOR and Smile included) and to WebFlux test slices.
+@Component
+public class ProjectionModule extends SimpleModule {
+
+    public ProjectionModule() {
+        super("ProjectionModule");
+        setSerializerModifier(new BeanSerializerModifier() {
+            @Override
+            public List<BeanPropertyWriter> changeProperties(SerializationConfig config, BeanDescription bean,
+                                                             List<BeanPropertyWriter> properties) {
+                if (!Projected.class.isAssignableFrom(bean.getBeanClass()))
+                    return properties;
+                return properties.stream().<BeanPropertyWriter>map(Selected::new).toList();
+            }
+        });
+    }
+
+    private static final class Selected extends BeanPropertyWriter {
+
+        Selected(BeanPropertyWriter base) {
+            super(base);
+        }
+
+        @Override
+        public void serializeAsField(Object bean, JsonGenerator gen, SerializerProvider prov) throws Exception {
+            Set<String> selected = ((Projected) bean).projection();
+            if (selected == null || selected.contains(getName()))
+                super.serializeAsField(bean, gen, prov);
+        }
+    }
+}
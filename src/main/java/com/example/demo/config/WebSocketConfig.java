@@ -0,0 +1,18 @@
+package com.example.demo.config;
+
+import com.example.demo.web.InboxWebSocketHandler;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.reactive.handler.SimpleUrlHandlerMapping;
+
+import java.util.Map;
+
+@Configuration
+public class WebSocketConfig {
+
+    @Bean
+    public HandlerMapping webSocketMapping(InboxWebSocketHandler inbox) {
+        return new SimpleUrlHandlerMapping(Map.of(InboxWebSocketHandler.PATH, inbox), -1);
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.demo.controller;
+
+import com.example.demo.service.Tagged;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ServerWebExchange;
+
+// Answers a GET from a tagged read: 304 when If-None-Match matches, otherwise the body.
+// The same URL is served as JSON, CBOR or Smile, so caches have to key on Accept as well.
+final class Conditional {
+
+    private Conditional() {
+    }
+
+    static <T> ResponseEntity<T> respond(ServerWebExchange exchange, Tagged<T> tagged) {
+        if (exchange.checkNotModified(tagged.etag()))
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(tagged.etag()).varyBy(HttpHeaders.ACCEPT).build();
+        return ResponseEntity.ok().eTag(tagged.etag()).varyBy(HttpHeaders.ACCEPT).body(tagged.body());
+    }
+}
@@ -1,48 +1,93 @@
 package com.example.demo.controller;
 
+import com.example.demo.cluster.PartitionedWork;
+import com.example.demo.config.CodecConfig;
 import com.example.demo.dto.AssigneeRequest;
 import com.example.demo.dto.TaskCreateRequest;
 import com.example.demo.dto.TaskDto;
+import com.example.demo.dto.TaskEventDto;
 import com.example.demo.dto.TaskUpdateRequest;
+import com.example.demo.service.Idempotency;
 import com.example.demo.service.TaskService;
+import com.example.demo.tenant.TenantContext;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @RestController
-@RequestMapping(value = "/tasks", produces = MediaType.APPLICATION_JSON_VALUE)
+@RequestMapping(value = "/tasks", produces = {
+        MediaType.APPLICATION_JSON_VALUE,
+        MediaType.APPLICATION_CBOR_VALUE,
+        CodecConfig.APPLICATION_SMILE_VALUE
+})
 public class TaskController {
     private final TaskService service;
+    private final Idempotency idempotency;
+    private final PartitionedWork work;
 
-    public TaskController(TaskService service) {
+    public TaskController(TaskService service, Idempotency idempotency, PartitionedWork work) {
         this.service = service;
+        this.idempotency = idempotency;
+        this.work = work;
     }
 
     @Operation(summary = "List tasks")
     @GetMapping
-    public Flux<TaskDto> list() {
-        return service.list();
+    public Mono<ResponseEntity<List<TaskDto>>> list(
+            @Parameter(description = "Comma-separated fields to return", example = "id,status")
+            @RequestParam(required = false) String fields,
+            ServerWebExchange exchange) {
+        return service.list(fields).map(t -> Conditional.respond(exchange, t));
+    }
+
+    @Operation(summary = "List tasks", hidden = true)
+    @GetMapping(params = "!fields", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Flux<DataBuffer>>> listJson(ServerWebExchange exchange) {
+        return service.listJson(exchange.getResponse().bufferFactory()).map(t -> Conditional.respond(exchange, t));
+    }
+
+    @Operation(summary = "List tasks whose dependencies are all DONE")
+    @GetMapping("/ready")
+    public Flux<TaskDto> ready() {
+        return service.ready();
     }
 
     @Operation(summary = "Get task by id")
     @GetMapping("/{id}")
-    public Mono<TaskDto> get(@PathVariable String id) {
-        return service.get(id);
+    public Mono<ResponseEntity<TaskDto>> get(
+            @PathVariable String id,
+            @Parameter(description = "Comma-separated fields to return", example = "id,status")
+            @RequestParam(required = false) String fields,
+            ServerWebExchange exchange) {
+        return service.get(id, fields).map(t -> Conditional.respond(exchange, t));
+    }
+
+    @Operation(summary = "Change history of a task, newest first")
+    @GetMapping("/{id}/history")
+    public Flux<TaskEventDto> history(@PathVariable String id) {
+        return service.history(id);
     }
 
     @Operation(summary = "Create task")
     @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
     public Mono<TaskDto> create(
             @io.swagger.v3.oas.annotations.parameters.RequestBody(required = true, content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, examples = @ExampleObject(value = """
-                    { "title":"Report", "description":"Q3", "status":"OPEN", "assigneeId":"u-101" }
-                    """))) @RequestBody TaskCreateRequest req) {
-        return service.create(req);
+                    { "title":"Report", "description":"Q3", "status":"OPEN", "assigneeId":"u-101", "priority":5, "dependsOn":[], "dueAt":"2025-10-01T17:00:00Z" }
+                    """))) @RequestBody TaskCreateRequest req,
+            @RequestHeader(value = Idempotency.HEADER, required = false) String idempotencyKey) {
+        return idempotency.execute(idempotencyKey, "create", req, () -> service.create(req));
     }
 
     @Operation(summary = "Update task")
@@ -61,8 +106,10 @@ public class TaskController {
             @PathVariable String id,
             @io.swagger.v3.oas.annotations.parameters.RequestBody(required = true, content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, examples = @ExampleObject(value = """
                     { "assigneeId":"u-101" }
-                    """))) @RequestBody AssigneeRequest body) {
-        return service.assign(id, body.getAssigneeId());
+                    """))) @RequestBody AssigneeRequest body,
+            @RequestHeader(value = Idempotency.HEADER, required = false) String idempotencyKey) {
+        return idempotency.execute(idempotencyKey, "assign", Arrays.asList(id, body.getAssigneeId()),
+                () -> service.assign(id, body.getAssigneeId()));
     }
 
     @Operation(summary = "Unassign task")
@@ -81,9 +128,13 @@ public class TaskController {
     @ApiResponse(responseCode = "200", description = "Assigned")
     @ApiResponse(responseCode = "404", description = "Task or user not found")
     @PutMapping("/{id}/assign-async")
-    public Mono<TaskDto> assignAsync(@PathVariable String id, @RequestBody AssigneeRequest req) {
-        CompletableFuture<TaskDto> cf = service.assignAsync(id, req.getAssigneeId());
-        return Mono.fromFuture(cf);
+    public Mono<TaskDto> assignAsync(@PathVariable String id, @RequestBody AssigneeRequest req,
+                                     @RequestHeader(value = Idempotency.HEADER, required = false) String idempotencyKey) {
+        return idempotency.execute(idempotencyKey, "assign", Arrays.asList(id, req.getAssigneeId()),
+                () -> work.route("assign", id, req.getAssigneeId(), () -> TenantContext.current().flatMap(tenant -> {
+                    CompletableFuture<TaskDto> cf = service.assignAsync(id, req.getAssigneeId(), tenant);
+                    return Mono.fromFuture(cf);
+                })));
     }
 
     @Operation(summary = "Unassign task async")
@@ -91,7 +142,8 @@ public class TaskController {
     @ApiResponse(responseCode = "404", description = "Task not found")
     @PutMapping("/{id}/unassign-async")
     public Mono<TaskDto> unassignAsync(@PathVariable String id) {
-        return Mono.fromFuture(service.unassignAsync(id));
+        return work.route("unassign", id, null,
+                () -> TenantContext.current().flatMap(tenant -> Mono.fromFuture(service.unassignAsync(id, tenant))));
     }
 
 }
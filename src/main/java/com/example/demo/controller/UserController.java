@@ -1,36 +1,73 @@
 package com.example.demo.controller;
 
+import com.example.demo.config.CodecConfig;
+import com.example.demo.dto.TaskDto;
 import com.example.demo.dto.UserCreateRequest;
+import com.example.demo.dto.UserDashboardDto;
 import com.example.demo.dto.UserDto;
 import com.example.demo.dto.UserUpdateRequest;
+import com.example.demo.service.TaskService;
 import com.example.demo.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 @RestController
-@RequestMapping(value = "/users", produces = MediaType.APPLICATION_JSON_VALUE)
+@RequestMapping(value = "/users", produces = {
+        MediaType.APPLICATION_JSON_VALUE,
+        MediaType.APPLICATION_CBOR_VALUE,
+        CodecConfig.APPLICATION_SMILE_VALUE
+})
 public class UserController {
     private final UserService service;
+    private final TaskService taskService;
 
-    public UserController(UserService service) {
+    public UserController(UserService service, TaskService taskService) {
         this.service = service;
+        this.taskService = taskService;
     }
 
     @Operation(summary = "List users")
     @GetMapping
-    public Flux<UserDto> list() {
-        return service.list();
+    public Mono<ResponseEntity<List<UserDto>>> list(
+            @Parameter(description = "Comma-separated fields to return", example = "id,name")
+            @RequestParam(required = false) String fields,
+            ServerWebExchange exchange) {
+        return service.list(fields).map(t -> Conditional.respond(exchange, t));
     }
 
-    @Operation(summary = "Get user by id")
+    @Operation(summary = "Get user by id", description = "Served from the dashboard read model while it is within "
+            + "app.dashboard.max-staleness of the writes; send Cache-Control: no-cache to read users and tasks directly")
     @GetMapping("/{id}")
-    public Mono<UserDto> get(@PathVariable String id) {
-        return service.get(id);
+    public Mono<ResponseEntity<UserDto>> get(
+            @PathVariable String id,
+            @Parameter(description = "Comma-separated fields to return", example = "id,name")
+            @RequestParam(required = false) String fields,
+            ServerWebExchange exchange) {
+        String cacheControl = exchange.getRequest().getHeaders().getCacheControl();
+        boolean fresh = cacheControl != null && cacheControl.contains("no-cache");
+        return service.get(id, fields, fresh).map(t -> Conditional.respond(exchange, t));
+    }
+
+    @Operation(summary = "Precomputed dashboard of a user: task ids, counts per status, recent activity")
+    @GetMapping("/{id}/dashboard")
+    public Mono<UserDashboardDto> dashboard(@PathVariable String id) {
+        return service.dashboard(id);
+    }
+
+    @Operation(summary = "Top open tasks of a user by priority")
+    @GetMapping("/{id}/next")
+    public Flux<TaskDto> next(@PathVariable String id, @RequestParam(defaultValue = "10") int k) {
+        return taskService.next(id, k);
     }
 
     @Operation(summary = "Create user")
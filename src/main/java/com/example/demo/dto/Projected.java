@@ -0,0 +1,9 @@
+package com.example.demo.dto;
+
+import java.util.Set;
+
+// A response built for a fields= selection. Only the selected properties are written, whether or
+// not they are null; without a selection every property is written.
+public interface Projected {
+    Set<String> projection();
+}
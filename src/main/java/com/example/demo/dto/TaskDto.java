@@ -1,11 +1,20 @@
 package com.example.demo.dto;
 
-public class TaskDto {
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+public class TaskDto implements Projected {
     private String id;
     private String title;
     private String description;
     private String status;
     private String assigneeId;
+    private Integer priority;
+    private List<String> dependsOn;
+    private Instant dueAt;
+    private Long version;
+    private Set<String> projection;
 
     public String getId() {
         return id;
@@ -46,4 +55,45 @@ public class TaskDto {
     public void setAssigneeId(String assigneeId) {
         this.assigneeId = assigneeId;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public List<String> getDependsOn() {
+        return dependsOn;
+    }
+
+    public void setDependsOn(List<String> dependsOn) {
+        this.dependsOn = dependsOn;
+    }
+
+    public Instant getDueAt() {
+        return dueAt;
+    }
+
+    public void setDueAt(Instant dueAt) {
+        this.dueAt = dueAt;
+    }
+
+    public Integer getPriority() {
+        return priority;
+    }
+
+    public void setPriority(Integer priority) {
+        this.priority = priority;
+    }
+
+    @Override
+    public Set<String> projection() {
+        return projection;
+    }
+
+    public void project(Set<String> fields) {
+        this.projection = fields;
+    }
 }
@@ -1,10 +1,16 @@
 package com.example.demo.dto;
 
+import java.time.Instant;
+import java.util.List;
+
 public class TaskUpdateRequest {
     private String title;
     private String description;
     private String status;
     private String assigneeId;
+    private Integer priority;
+    private List<String> dependsOn;
+    private Instant dueAt;
 
     public String getTitle() {
         return title;
@@ -37,4 +43,28 @@ public class TaskUpdateRequest {
     public void setAssigneeId(String assigneeId) {
         this.assigneeId = assigneeId;
     }
+
+    public List<String> getDependsOn() {
+        return dependsOn;
+    }
+
+    public void setDependsOn(List<String> dependsOn) {
+        this.dependsOn = dependsOn;
+    }
+
+    public Instant getDueAt() {
+        return dueAt;
+    }
+
+    public void setDueAt(Instant dueAt) {
+        this.dueAt = dueAt;
+    }
+
+    public Integer getPriority() {
+        return priority;
+    }
+
+    public void setPriority(Integer priority) {
+        this.priority = priority;
+    }
 }
@@ -0,0 +1,122 @@
+package com.example.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserDashboardDto {
+    public static class Activity {
+        private String eventId;
+        private String taskId;
+        private String type;
+        private Instant at;
+
+        public String getEventId() {
+            return eventId;
+        }
+
+        public void setEventId(String eventId) {
+            this.eventId = eventId;
+        }
+
+        public String getTaskId() {
+            return taskId;
+        }
+
+        public void setTaskId(String taskId) {
+            this.taskId = taskId;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public void setType(String type) {
+            this.type = type;
+        }
+
+        public Instant getAt() {
+            return at;
+        }
+
+        public void setAt(Instant at) {
+            this.at = at;
+        }
+    }
+
+    private String id;
+    private String name;
+    private String email;
+    private Long version;
+    private List<String> taskIds;
+    private Map<String, Integer> statusCounts;
+    private List<Activity> recent;
+    private Instant updatedAt;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public List<String> getTaskIds() {
+        return taskIds;
+    }
+
+    public void setTaskIds(List<String> taskIds) {
+        this.taskIds = taskIds;
+    }
+
+    public Map<String, Integer> getStatusCounts() {
+        return statusCounts;
+    }
+
+    public void setStatusCounts(Map<String, Integer> statusCounts) {
+        this.statusCounts = statusCounts;
+    }
+
+    public List<Activity> getRecent() {
+        return recent;
+    }
+
+    public void setRecent(List<Activity> recent) {
+        this.recent = recent;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -1,12 +1,15 @@
 package com.example.demo.dto;
 
 import java.util.List;
+import java.util.Set;
 
-public class UserDto {
+public class UserDto implements Projected {
     private String id;
     private String name;
     private String email;
     private List<String> taskIds;
+    private Long version;
+    private Set<String> projection;
 
     public String getId() {
         return id;
@@ -39,4 +42,21 @@ public class UserDto {
     public void setTaskIds(List<String> taskIds) {
         this.taskIds = taskIds;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    @Override
+    public Set<String> projection() {
+        return projection;
+    }
+
+    public void project(Set<String> fields) {
+        this.projection = fields;
+    }
 }
@@ -0,0 +1,62 @@
+package com.example.demo.entity;
+
+import com.example.demo.dto.TaskDto;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Duration;
+import java.time.Instant;
+
+@Document("idempotency_keys")
+public class IdempotencyRecord {
+    public static final Duration TTL = Duration.ofHours(24);
+
+    @Id
+    private String id;
+    private String fingerprint;
+    private TaskDto response;
+    private boolean failed;
+    @Indexed(expireAfter = "24h")
+    private Instant createdAt;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public TaskDto getResponse() {
+        return response;
+    }
+
+    public void setResponse(TaskDto response) {
+        this.response = response;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public void setFailed(boolean failed) {
+        this.failed = failed;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -1,9 +1,16 @@
 package com.example.demo.entity;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.Instant;
+import java.util.List;
+
 @Document("tasks")
+@CompoundIndex(name = "assignee_status_priority", def = "{ 'assigneeId': 1, 'status': 1, 'priority': -1 }")
 public class Task {
     @Id
     private String id;
@@ -11,6 +18,14 @@ public class Task {
     private String description;
     private TaskStatus status;
     private String assigneeId;
+    private Integer priority;
+    private List<String> dependsOn;
+    @Indexed
+    private Instant dueAt;
+    private Instant reminderNotifiedAt;
+    private Instant overdueNotifiedAt;
+    @Version
+    private Long version;
 
     public String getId() {
         return id;
@@ -51,4 +66,52 @@ public class Task {
     public void setAssigneeId(String assigneeId) {
         this.assigneeId = assigneeId;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public List<String> getDependsOn() {
+        return dependsOn;
+    }
+
+    public void setDependsOn(List<String> dependsOn) {
+        this.dependsOn = dependsOn;
+    }
+
+    public Instant getDueAt() {
+        return dueAt;
+    }
+
+    public void setDueAt(Instant dueAt) {
+        this.dueAt = dueAt;
+    }
+
+    public Instant getReminderNotifiedAt() {
+        return reminderNotifiedAt;
+    }
+
+    public void setReminderNotifiedAt(Instant reminderNotifiedAt) {
+        this.reminderNotifiedAt = reminderNotifiedAt;
+    }
+
+    public Instant getOverdueNotifiedAt() {
+        return overdueNotifiedAt;
+    }
+
+    public void setOverdueNotifiedAt(Instant overdueNotifiedAt) {
+        this.overdueNotifiedAt = overdueNotifiedAt;
+    }
+
+    public Integer getPriority() {
+        return priority;
+    }
+
+    public void setPriority(Integer priority) {
+        this.priority = priority;
+    }
 }
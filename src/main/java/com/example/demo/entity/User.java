@@ -1,6 +1,7 @@
 package com.example.demo.entity;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document("users")
@@ -9,6 +10,8 @@ public class User {
     private String id;
     private String name;
     private String email;
+    @Version
+    private Long version;
 
     public String getId() {
         return id;
@@ -33,4 +36,12 @@ public class User {
     public void setEmail(String email) {
         this.email = email;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,19 @@
+package com.example.demo.event;
+
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+public final class Actor {
+    private static final String KEY = Actor.class.getName();
+
+    private Actor() {
+    }
+
+    public static Context with(String actor) {
+        return Context.of(KEY, actor);
+    }
+
+    public static String of(ContextView ctx) {
+        return ctx.getOrDefault(KEY, null);
+    }
+}
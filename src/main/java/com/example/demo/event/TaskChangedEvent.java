@@ -0,0 +1,7 @@
+package com.example.demo.event;
+
+import com.example.demo.dto.TaskDto;
+import com.example.demo.entity.TaskEvent;
+
+public record TaskChangedEvent(String tenant, TaskEvent.Type type, TaskDto before, TaskDto after) {
+}
@@ -0,0 +1,9 @@
+package com.example.demo.event;
+
+import java.time.Instant;
+
+public record TaskDueEvent(String tenant, String taskId, Kind kind, Instant dueAt, Instant firedAt) {
+    public enum Kind {
+        REMINDER, OVERDUE
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.demo.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+@Component
+public class TaskDueListener {
+
+    private static final Logger log = LoggerFactory.getLogger(TaskDueListener.class);
+
+    // Stand-in for a webhook delivery.
+    @EventListener
+    public void onDue(TaskDueEvent e) {
+        log.info("tenant {} task {} {} (due {}, fired {})", e.tenant(), e.taskId(), e.kind(), e.dueAt(), e.firedAt());
+    }
+}
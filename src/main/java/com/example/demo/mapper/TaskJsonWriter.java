@@ -0,0 +1,284 @@
+package com.example.demo.mapper;
+
+import com.example.demo.entity.Task;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+// Transcodes a stored task document straight from BSON bytes to the JSON that Jackson writes for
+// toDto(task): every TaskDto property in declaration order, nulls included, strings escaped as Jackson
+// does. Only BSON types that the converter maps to the DTO value unchanged are transcoded; a document
+// with anything else (a double priority, a numeric title, ...) goes through converter, mapper and
+// Jackson instead, so both paths always produce the same bytes.
+@Component
+public class TaskJsonWriter {
+
+    private static final String[] BSON_NAMES = {
+            "_id", "title", "description", "status", "assigneeId", "priority", "dependsOn", "dueAt", "version"
+    };
+    private static final int ID = 0;
+    private static final int PRIORITY = 5;
+    private static final int DEPENDS_ON = 6;
+    private static final int DUE_AT = 7;
+    private static final int VERSION = 8;
+    private static final byte[][] NAMES = new byte[BSON_NAMES.length][];
+    private static final byte[][] KEYS = new byte[BSON_NAMES.length][];
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ESCAPE_HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MIN_LONG = "-9223372036854775808".getBytes(StandardCharsets.US_ASCII);
+    private static final byte STRING = 0x02, ARRAY = 0x04, OBJECT_ID = 0x07, DATE = 0x09, NULL_TYPE = 0x0A,
+            INT32 = 0x10, INT64 = 0x12;
+
+    static {
+        for (int i = 0; i < BSON_NAMES.length; i++) {
+            String json = i == ID ? "id" : BSON_NAMES[i];
+            NAMES[i] = BSON_NAMES[i].getBytes(StandardCharsets.UTF_8);
+            KEYS[i] = ((i == ID ? "\"" : ",\"") + json + "\":").getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private final MongoConverter converter;
+    private final TaskMapper mapper;
+    private final ObjectMapper json;
+
+    public TaskJsonWriter(MongoConverter converter, TaskMapper mapper, ObjectMapper json) {
+        this.converter = converter;
+        this.mapper = mapper;
+        this.json = json;
+    }
+
+    public DataBuffer open(DataBufferFactory buffers) {
+        return buffers.allocateBuffer(1).write((byte) '[');
+    }
+
+    public DataBuffer close(DataBufferFactory buffers) {
+        return buffers.allocateBuffer(1).write((byte) ']');
+    }
+
+    public DataBuffer write(ByteBuffer bson, DataBufferFactory buffers, boolean first) {
+        ByteBuffer in = bson.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int[] at = new int[BSON_NAMES.length];
+        byte[] types = new byte[BSON_NAMES.length];
+        int start = in.position();
+        int end = start + in.getInt(start) - 1;
+        int pos = start + 4;
+        while (pos < end) {
+            byte type = in.get(pos++);
+            int nameStart = pos;
+            while (in.get(pos) != 0)
+                pos++;
+            int field = field(in, nameStart, pos - nameStart);
+            pos++;
+            if (field >= 0) {
+                at[field] = pos;
+                types[field] = type;
+            }
+            pos = skip(in, pos, type);
+        }
+        for (int i = 0; i < types.length; i++) {
+            if (at[i] == 0)
+                types[i] = NULL_TYPE;
+            else if (!transcodable(i, types[i], in, at[i]))
+                return fallback(in, start, buffers, first);
+        }
+
+        DataBuffer out = buffers.allocateBuffer(in.remaining() + 96);
+        if (!first)
+            out.write((byte) ',');
+        out.write((byte) '{');
+        for (int i = 0; i < types.length; i++) {
+            out.write(KEYS[i]);
+            if (types[i] == ARRAY)
+                array(in, at[i], out);
+            else
+                value(in, at[i], types[i], out);
+        }
+        return out.write((byte) '}');
+    }
+
+    // The BSON types the converter turns into the DTO's value without changing it.
+    private static boolean transcodable(int field, byte type, ByteBuffer in, int at) {
+        if (type == NULL_TYPE)
+            return true;
+        return switch (field) {
+            case ID -> type == STRING || type == OBJECT_ID;
+            case PRIORITY -> type == INT32;
+            case DEPENDS_ON -> type == ARRAY && stringArray(in, at);
+            case DUE_AT -> type == DATE;
+            case VERSION -> type == INT32 || type == INT64;
+            default -> type == STRING;
+        };
+    }
+
+    private static boolean stringArray(ByteBuffer in, int at) {
+        int end = at + in.getInt(at) - 1;
+        int pos = at + 4;
+        while (pos < end) {
+            byte type = in.get(pos++);
+            if (type != STRING && type != OBJECT_ID && type != NULL_TYPE)
+                return false;
+            while (in.get(pos) != 0)
+                pos++;
+            pos = skip(in, pos + 1, type);
+        }
+        return true;
+    }
+
+    private DataBuffer fallback(ByteBuffer in, int start, DataBufferFactory buffers, boolean first) {
+        byte[] bytes = new byte[in.getInt(start)];
+        in.get(start, bytes);
+        Task task = converter.read(Task.class, new RawBsonDocument(bytes).decode(new DocumentCodec()));
+        byte[] body;
+        try {
+            body = json.writeValueAsBytes(mapper.toDto(task));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        DataBuffer out = buffers.allocateBuffer(body.length + 1);
+        if (!first)
+            out.write((byte) ',');
+        return out.write(body);
+    }
+
+    private static int field(ByteBuffer in, int at, int len) {
+        for (int i = 0; i < NAMES.length; i++) {
+            byte[] name = NAMES[i];
+            if (name.length != len)
+                continue;
+            int j = 0;
+            while (j < len && in.get(at + j) == name[j])
+                j++;
+            if (j == len)
+                return i;
+        }
+        return -1;
+    }
+
+    private static void array(ByteBuffer in, int at, DataBuffer out) {
+        int end = at + in.getInt(at) - 1;
+        int pos = at + 4;
+        boolean first = true;
+        out.write((byte) '[');
+        while (pos < end) {
+            byte type = in.get(pos++);
+            while (in.get(pos) != 0)
+                pos++;
+            pos++;
+            if (!first)
+                out.write((byte) ',');
+            value(in, pos, type, out);
+            first = false;
+            pos = skip(in, pos, type);
+        }
+        out.write((byte) ']');
+    }
+
+    private static void value(ByteBuffer in, int at, byte type, DataBuffer out) {
+        switch (type) {
+            case STRING -> string(in, at + 4, in.getInt(at) - 1, out);
+            case OBJECT_ID -> {
+                out.write((byte) '"');
+                for (int i = 0; i < 12; i++) {
+                    int b = in.get(at + i) & 0xFF;
+                    out.write(HEX[b >>> 4]);
+                    out.write(HEX[b & 0x0F]);
+                }
+                out.write((byte) '"');
+            }
+            case INT32 -> number(in.getInt(at), out);
+            case INT64 -> number(in.getLong(at), out);
+            case DATE -> {
+                out.write((byte) '"');
+                out.write(Instant.ofEpochMilli(in.getLong(at)).toString().getBytes(StandardCharsets.US_ASCII));
+                out.write((byte) '"');
+            }
+            case NULL_TYPE -> out.write(NULL);
+            default -> throw new IllegalStateException("BSON type " + type + " is not transcoded");
+        }
+    }
+
+    // Jackson's default escaping: quote and backslash, the short forms for \b \t \n \f \r, and
+    // uppercase \\u00XX for the other control characters. Everything else is copied as UTF-8.
+    private static void string(ByteBuffer in, int at, int len, DataBuffer out) {
+        out.write((byte) '"');
+        for (int i = at; i < at + len; i++) {
+            byte b = in.get(i);
+            if (b == '"' || b == '\\') {
+                out.write((byte) '\\');
+                out.write(b);
+            } else if (b >= 0 && b < 0x20) {
+                out.write((byte) '\\');
+                switch (b) {
+                    case '\b' -> out.write((byte) 'b');
+                    case '\t' -> out.write((byte) 't');
+                    case '\n' -> out.write((byte) 'n');
+                    case '\f' -> out.write((byte) 'f');
+                    case '\r' -> out.write((byte) 'r');
+                    default -> {
+                        out.write((byte) 'u');
+                        out.write((byte) '0');
+                        out.write((byte) '0');
+                        out.write(ESCAPE_HEX[b >>> 4]);
+                        out.write(ESCAPE_HEX[b & 0x0F]);
+                    }
+                }
+            } else {
+                out.write(b);
+            }
+        }
+        out.write((byte) '"');
+    }
+
+    private static void number(long v, DataBuffer out) {
+        if (v == Long.MIN_VALUE) {
+            out.write(MIN_LONG);
+            return;
+        }
+        if (v < 0) {
+            out.write((byte) '-');
+            v = -v;
+        }
+        long div = 1;
+        while (div <= v / 10)
+            div *= 10;
+        for (; div > 0; div /= 10)
+            out.write((byte) ('0' + (v / div) % 10));
+    }
+
+    // Walks over a value of any BSON type, so fields the DTO does not have are skipped whatever they hold.
+    private static int skip(ByteBuffer in, int at, byte type) {
+        return switch (type) {
+            case 0x01, 0x09, 0x11, 0x12 -> at + 8;
+            case 0x02, 0x0D, 0x0E -> at + 4 + in.getInt(at);
+            case 0x03, 0x04, 0x0F -> at + in.getInt(at);
+            case 0x05 -> at + 5 + in.getInt(at);
+            case 0x07 -> at + 12;
+            case 0x08 -> at + 1;
+            case 0x0B -> {
+                int pos = at;
+                for (int cstrings = 0; cstrings < 2; cstrings++) {
+                    while (in.get(pos) != 0)
+                        pos++;
+                    pos++;
+                }
+                yield pos;
+            }
+            case 0x0C -> at + 4 + in.getInt(at) + 12;
+            case 0x10 -> at + 4;
+            case 0x13 -> at + 16;
+            case 0x0A, 0x06, (byte) 0xFF, 0x7F -> at;
+            default -> throw new IllegalArgumentException("malformed BSON: type " + type + " in task document");
+        };
+    }
+}
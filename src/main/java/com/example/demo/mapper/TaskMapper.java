@@ -2,11 +2,15 @@ package com.example.demo.mapper;
 
 import com.example.demo.dto.TaskCreateRequest;
 import com.example.demo.dto.TaskDto;
+import com.example.demo.dto.TaskEventDto;
 import com.example.demo.dto.TaskUpdateRequest;
 import com.example.demo.entity.Task;
+import com.example.demo.entity.TaskEvent;
 import com.example.demo.entity.TaskStatus;
 import org.springframework.stereotype.Component;
 
+import java.util.Set;
+
 @Component
 public class TaskMapper {
     public Task fromCreate(TaskCreateRequest req) {
@@ -16,6 +20,9 @@ public class TaskMapper {
         if (req.getStatus() != null)
             t.setStatus(TaskStatus.valueOf(req.getStatus()));
         t.setAssigneeId(req.getAssigneeId());
+        t.setDependsOn(req.getDependsOn());
+        t.setDueAt(req.getDueAt());
+        t.setPriority(req.getPriority());
         return t;
     }
 
@@ -28,6 +35,15 @@ public class TaskMapper {
             t.setStatus(TaskStatus.valueOf(req.getStatus()));
         if (req.getAssigneeId() != null && !req.getAssigneeId().isBlank())
             t.setAssigneeId(req.getAssigneeId());
+        if (req.getDependsOn() != null)
+            t.setDependsOn(req.getDependsOn());
+        if (req.getDueAt() != null && !req.getDueAt().equals(t.getDueAt())) {
+            t.setDueAt(req.getDueAt());
+            t.setReminderNotifiedAt(null);
+            t.setOverdueNotifiedAt(null);
+        }
+        if (req.getPriority() != null)
+            t.setPriority(req.getPriority());
         return t;
     }
 
@@ -38,6 +54,28 @@ public class TaskMapper {
         d.setDescription(t.getDescription());
         d.setStatus(t.getStatus() != null ? t.getStatus().name() : null);
         d.setAssigneeId(t.getAssigneeId());
+        d.setDependsOn(t.getDependsOn());
+        d.setDueAt(t.getDueAt());
+        d.setPriority(t.getPriority());
+        d.setVersion(t.getVersion());
+        return d;
+    }
+
+    public TaskDto toDto(Task t, Set<String> fields) {
+        TaskDto d = toDto(t);
+        d.project(fields);
+        return d;
+    }
+
+    public TaskEventDto toDto(TaskEvent e) {
+        TaskEventDto d = new TaskEventDto();
+        d.setId(e.getId());
+        d.setTaskId(e.getTaskId());
+        d.setType(e.getType() != null ? e.getType().name() : null);
+        d.setActor(e.getActor());
+        d.setAt(e.getAt());
+        d.setBefore(e.getBefore());
+        d.setAfter(e.getAfter());
         return d;
     }
 }
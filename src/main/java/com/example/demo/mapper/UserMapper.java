@@ -1,11 +1,15 @@
 package com.example.demo.mapper;
 
 import com.example.demo.dto.UserCreateRequest;
+import com.example.demo.dto.UserDashboardDto;
 import com.example.demo.dto.UserDto;
 import com.example.demo.dto.UserUpdateRequest;
 import com.example.demo.entity.User;
+import com.example.demo.entity.UserDashboard;
 import org.springframework.stereotype.Component;
 
+import java.util.Set;
+
 @Component
 public class UserMapper {
     public User fromCreate(UserCreateRequest req) {
@@ -28,6 +32,44 @@ public class UserMapper {
         d.setId(u.getId());
         d.setName(u.getName());
         d.setEmail(u.getEmail());
+        d.setVersion(u.getVersion());
+        return d;
+    }
+
+    public UserDto toDto(User u, Set<String> fields) {
+        UserDto d = toDto(u);
+        d.project(fields);
+        return d;
+    }
+
+    public UserDto toDto(UserDashboard b) {
+        UserDto d = new UserDto();
+        d.setId(b.getId());
+        d.setName(b.getName());
+        d.setEmail(b.getEmail());
+        d.setTaskIds(b.getTaskIds());
+        d.setVersion(b.getVersion());
+        return d;
+    }
+
+    public UserDashboardDto toDashboardDto(UserDashboard b) {
+        UserDashboardDto d = new UserDashboardDto();
+        d.setId(b.getId());
+        d.setName(b.getName());
+        d.setEmail(b.getEmail());
+        d.setVersion(b.getVersion());
+        d.setTaskIds(b.getTaskIds());
+        d.setStatusCounts(b.getStatusCounts());
+        if (b.getRecent() != null)
+            d.setRecent(b.getRecent().stream().map(a -> {
+                UserDashboardDto.Activity x = new UserDashboardDto.Activity();
+                x.setEventId(a.getEventId());
+                x.setTaskId(a.getTaskId());
+                x.setType(a.getType());
+                x.setAt(a.getAt());
+                return x;
+            }).toList());
+        d.setUpdatedAt(b.getUpdatedAt());
         return d;
     }
 }
@@ -0,0 +1,31 @@
+package com.example.demo.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.example.demo.MongoCommand")
+@Label("Mongo Command")
+@Category({"To-Do App", "MongoDB"})
+@Description("A command sent by the MongoDB driver, from send to reply")
+@StackTrace(false)
+class MongoCommandEvent extends Event {
+    @Label("Command")
+    String command;
+
+    @Label("Database")
+    String database;
+
+    @Label("Collection")
+    String collection;
+
+    @Label("Documents")
+    @Description("Documents in the reply batch, or the count reported by a write")
+    int documents;
+
+    @Label("Error")
+    String error;
+}
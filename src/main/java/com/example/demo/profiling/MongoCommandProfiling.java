@@ -0,0 +1,75 @@
+package com.example.demo.profiling;
+
+import com.mongodb.MongoException;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Driver command listener emitting a MongoCommandEvent per command. Nothing is looked up or kept
+// unless the event is enabled when the command starts.
+class MongoCommandProfiling implements CommandListener {
+
+    private final Map<Integer, MongoCommandEvent> inFlight = new ConcurrentHashMap<>();
+
+    @Override
+    public void commandStarted(CommandStartedEvent started) {
+        MongoCommandEvent event = new MongoCommandEvent();
+        if (!event.isEnabled())
+            return;
+        event.begin();
+        event.command = started.getCommandName();
+        event.database = started.getDatabaseName();
+        BsonValue target = started.getCommand().get(started.getCommandName());
+        event.collection = target != null && target.isString() ? target.asString().getValue() : null;
+        inFlight.put(started.getRequestId(), event);
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent succeeded) {
+        MongoCommandEvent event = inFlight.remove(succeeded.getRequestId());
+        if (event == null)
+            return;
+        event.end();
+        if (event.shouldCommit()) {
+            event.documents = documents(succeeded.getResponse());
+            event.commit();
+        }
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent failed) {
+        MongoCommandEvent event = inFlight.remove(failed.getRequestId());
+        if (event == null)
+            return;
+        event.end();
+        if (event.shouldCommit()) {
+            event.error = error(failed.getThrowable());
+            event.commit();
+        }
+    }
+
+    // Only the exception type and server error code: driver messages can quote hosts and commands.
+    private static String error(Throwable e) {
+        String type = e.getClass().getSimpleName();
+        return e instanceof MongoException me && me.getCode() != -1 ? type + " (" + me.getCode() + ")" : type;
+    }
+
+    private static int documents(BsonDocument reply) {
+        if (reply == null)
+            return 0;
+        if (reply.isDocument("cursor")) {
+            BsonDocument cursor = reply.getDocument("cursor");
+            if (cursor.isArray("firstBatch"))
+                return cursor.getArray("firstBatch").size();
+            if (cursor.isArray("nextBatch"))
+                return cursor.getArray("nextBatch").size();
+        }
+        return reply.isNumber("n") ? reply.getNumber("n").intValue() : 0;
+    }
+}
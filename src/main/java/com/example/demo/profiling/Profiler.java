@@ -0,0 +1,180 @@
+package com.example.demo.profiling;
+
+import com.example.demo.dto.RecordingDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Owns the JFR recordings the application starts itself: at most one bounded on-demand recording for
+// the profiling endpoint, and optionally a continuous in-memory one. Neither records the JVM's
+// arguments, system properties, environment or process list, which carry the Mongo URI and its
+// credentials when they are passed on the command line or as SPRING_DATA_MONGODB_URI. Slow requests are logged and, when any
+// recording is running, a snapshot of it is written to app.profiling.dump-dir, at most once per
+// app.profiling.dump-interval.
+public class Profiler {
+
+    private static final Logger log = LoggerFactory.getLogger(Profiler.class);
+    private static final List<String> SECRET_EVENTS = List.of(
+            "jdk.JVMInformation", "jdk.InitialSystemProperty", "jdk.InitialEnvironmentVariable", "jdk.SystemProcess");
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+
+    private final ProfilingProperties props;
+    private final Counter slow;
+    private final AtomicLong lastDump = new AtomicLong(Long.MIN_VALUE);
+    private Recording onDemand;
+    private Recording continuous;
+
+    public Profiler(ProfilingProperties props, MeterRegistry registry) {
+        this.props = props;
+        this.slow = Counter.builder("profiling.slow.requests").register(registry);
+    }
+
+    public void start() {
+        FlightRecorder.register(RequestEvent.class);
+        FlightRecorder.register(ServiceEvent.class);
+        FlightRecorder.register(MongoCommandEvent.class);
+        if (!props.isContinuous())
+            return;
+        try {
+            continuous = new Recording(Configuration.getConfiguration("default"));
+            continuous.setName("continuous");
+            redact(continuous);
+            continuous.setMaxAge(props.getContinuousMaxAge());
+            continuous.setMaxSize(props.getMaxSize().toBytes());
+            continuous.setToDisk(true);
+            continuous.start();
+        } catch (IOException | ParseException e) {
+            log.warn("could not start the continuous recording", e);
+        }
+    }
+
+    public void stop() {
+        if (continuous != null)
+            continuous.close();
+        synchronized (this) {
+            if (onDemand != null)
+                onDemand.close();
+        }
+    }
+
+    public synchronized RecordingDto startRecording(String settings, Duration duration) throws IOException {
+        if (onDemand != null && onDemand.getState() == RecordingState.RUNNING)
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "a recording is already running");
+        if (onDemand != null)
+            discard(onDemand);
+        Configuration config;
+        try {
+            config = Configuration.getConfiguration(settings);
+        } catch (NoSuchFileException e) {
+            throw new IllegalArgumentException("unknown JFR settings: " + settings);
+        } catch (ParseException e) {
+            throw new IllegalStateException(e);
+        }
+        Duration bounded = duration == null || duration.compareTo(props.getMaxDuration()) > 0 ? props.getMaxDuration() : duration;
+        Files.createDirectories(props.getDumpDir());
+        Recording r = new Recording(config);
+        r.setName("on-demand-" + settings);
+        redact(r);
+        r.setDuration(bounded);
+        r.setMaxSize(props.getMaxSize().toBytes());
+        r.setToDisk(true);
+        r.setDestination(Files.createTempFile(props.getDumpDir(), "recording-", ".jfr"));
+        r.start();
+        onDemand = r;
+        log.info("started {} recording {} for {}", settings, r.getId(), bounded);
+        return describe(r);
+    }
+
+    public synchronized RecordingDto recording() {
+        if (onDemand == null)
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "no recording");
+        return describe(onDemand);
+    }
+
+    // Stops the on-demand recording (if its duration hasn't already) and hands over the file; the
+    // caller deletes it once it has been streamed.
+    public synchronized Path stopRecording() {
+        if (onDemand == null)
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "no recording");
+        Recording r = onDemand;
+        onDemand = null;
+        if (r.getState() == RecordingState.RUNNING)
+            r.stop();
+        Path file = r.getDestination();
+        log.info("stopped recording {} ({} bytes)", r.getId(), r.getSize());
+        r.close();
+        return file;
+    }
+
+    public void slowRequest(String method, String path, int status, Duration elapsed) {
+        slow.increment();
+        log.warn("slow request {} {} -> {} took {} ms", method, path, status, elapsed.toMillis());
+        if (FlightRecorder.getFlightRecorder().getRecordings().isEmpty())
+            return;
+        long now = System.nanoTime();
+        long last = lastDump.get();
+        if (last != Long.MIN_VALUE && now - last < props.getDumpInterval().toNanos() || !lastDump.compareAndSet(last, now))
+            return;
+        Schedulers.boundedElastic().schedule(this::dump);
+    }
+
+    private void dump() {
+        try (Recording snapshot = FlightRecorder.getFlightRecorder().takeSnapshot()) {
+            if (snapshot.getSize() == 0)
+                return;
+            Files.createDirectories(props.getDumpDir());
+            Path file = props.getDumpDir().resolve("slow-" + STAMP.format(Instant.now()) + ".jfr");
+            snapshot.dump(file);
+            log.warn("wrote slow-request recording to {}", file);
+        } catch (IOException e) {
+            log.warn("could not write slow-request recording", e);
+        }
+    }
+
+    static void redact(Recording r) {
+        SECRET_EVENTS.forEach(r::disable);
+    }
+
+    private static void discard(Recording r) {
+        Path file = r.getDestination();
+        r.close();
+        try {
+            if (file != null)
+                Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("could not delete {}", file, e);
+        }
+    }
+
+    private static RecordingDto describe(Recording r) {
+        RecordingDto d = new RecordingDto();
+        d.setId(r.getId());
+        d.setName(r.getName());
+        d.setState(r.getState().name());
+        d.setStartedAt(r.getStartTime());
+        d.setDuration(r.getDuration());
+        d.setMaxSize(r.getMaxSize());
+        d.setSize(r.getSize());
+        return d;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.demo.profiling;
+
+import com.example.demo.tenant.TenantProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(ProfilingProperties.class)
+public class ProfilingConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public Profiler profiler(ProfilingProperties props, MeterRegistry registry) {
+        return new Profiler(props, registry);
+    }
+
+    // Served on the management port only, next to the other actuator endpoints.
+    @Bean
+    public ProfilingEndpoint profilingEndpoint(Profiler profiler) {
+        return new ProfilingEndpoint(profiler);
+    }
+
+    // A bean rather than a component so @WebFluxTest slices don't need the profiler.
+    @Bean
+    public ProfilingWebFilter profilingWebFilter(Profiler profiler, ProfilingProperties props, TenantProperties tenants) {
+        return new ProfilingWebFilter(profiler, props, tenants);
+    }
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoCommandProfiling() {
+        return settings -> settings.addCommandListener(new MongoCommandProfiling());
+    }
+
+    @Bean
+    static ServiceProfiling serviceProfiling() {
+        return new ServiceProfiling();
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.demo.profiling;
+
+import com.example.demo.dto.RecordingDto;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.util.MimeTypeUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+// /actuator/profiling on the management port, one on-demand recording at a time:
+// POST starts it (settings: default or profile, seconds), GET shows its state, DELETE stops it and
+// streams the .jfr file back, deleting it once sent.
+@Endpoint(id = "profiling")
+public class ProfilingEndpoint {
+    private final Profiler profiler;
+
+    public ProfilingEndpoint(Profiler profiler) {
+        this.profiler = profiler;
+    }
+
+    @WriteOperation
+    public Mono<RecordingDto> start(@Nullable String settings, @Nullable Long seconds) {
+        if (seconds != null && seconds <= 0)
+            return Mono.error(new InvalidEndpointRequestException("seconds must be positive", "seconds must be positive"));
+        return Mono.fromCallable(() -> profiler.startRecording(settings != null ? settings : "profile",
+                        Duration.ofSeconds(seconds != null ? seconds : 60)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorMap(IllegalArgumentException.class, e -> new InvalidEndpointRequestException(e.getMessage(), e.getMessage()));
+    }
+
+    @ReadOperation
+    public Mono<RecordingDto> recording() {
+        return Mono.fromCallable(profiler::recording);
+    }
+
+    @DeleteOperation(produces = MimeTypeUtils.APPLICATION_OCTET_STREAM_VALUE)
+    public Mono<Resource> stop() {
+        return Mono.fromCallable(profiler::stopRecording)
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(RecordingFile::new);
+    }
+
+    // Not a file as far as the writer is concerned, so it is read through a channel that deletes the
+    // recording when it is closed instead of being sent with zero-copy.
+    private static final class RecordingFile extends FileSystemResource {
+
+        RecordingFile(Path file) {
+            super(file);
+        }
+
+        @Override
+        public boolean isFile() {
+            return false;
+        }
+
+        @Override
+        public ReadableByteChannel readableChannel() throws IOException {
+            ReadableByteChannel channel = super.readableChannel();
+            return new ReadableByteChannel() {
+                @Override
+                public int read(ByteBuffer dst) throws IOException {
+                    return channel.read(dst);
+                }
+
+                @Override
+                public boolean isOpen() {
+                    return channel.isOpen();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        channel.close();
+                    } finally {
+                        Files.deleteIfExists(getFile().toPath());
+                    }
+                }
+            };
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return new FilterInputStream(super.getInputStream()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        Files.deleteIfExists(getFile().toPath());
+                    }
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.demo.profiling;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.profiling")
+public class ProfilingProperties {
+    private Duration slowThreshold = Duration.ofSeconds(1);
+    private Duration dumpInterval = Duration.ofMinutes(1);
+    private Path dumpDir = Path.of(System.getProperty("java.io.tmpdir"), "todo-app-jfr");
+    private Duration maxDuration = Duration.ofMinutes(10);
+    private DataSize maxSize = DataSize.ofMegabytes(256);
+    private boolean continuous;
+    private Duration continuousMaxAge = Duration.ofMinutes(2);
+
+    public Duration getSlowThreshold() {
+        return slowThreshold;
+    }
+
+    public void setSlowThreshold(Duration slowThreshold) {
+        this.slowThreshold = slowThreshold;
+    }
+
+    public Duration getDumpInterval() {
+        return dumpInterval;
+    }
+
+    public void setDumpInterval(Duration dumpInterval) {
+        this.dumpInterval = dumpInterval;
+    }
+
+    public Path getDumpDir() {
+        return dumpDir;
+    }
+
+    public void setDumpDir(Path dumpDir) {
+        this.dumpDir = dumpDir;
+    }
+
+    public Duration getMaxDuration() {
+        return maxDuration;
+    }
+
+    public void setMaxDuration(Duration maxDuration) {
+        this.maxDuration = maxDuration;
+    }
+
+    public DataSize getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(DataSize maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public boolean isContinuous() {
+        return continuous;
+    }
+
+    public void setContinuous(boolean continuous) {
+        this.continuous = continuous;
+    }
+
+    public Duration getContinuousMaxAge() {
+        return continuousMaxAge;
+    }
+
+    public void setContinuousMaxAge(Duration continuousMaxAge) {
+        this.continuousMaxAge = continuousMaxAge;
+    }
+}
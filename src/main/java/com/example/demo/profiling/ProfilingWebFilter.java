@@ -0,0 +1,101 @@
+package com.example.demo.profiling;
+
+import com.example.demo.tenant.TenantProperties;
+import org.reactivestreams.Publisher;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs ahead of the tenant filter so the measured time includes waiting for a tenant permit.
+// Response bytes are only counted while a recording has the request event enabled.
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ProfilingWebFilter implements WebFilter {
+    private final Profiler profiler;
+    private final ProfilingProperties props;
+    private final TenantProperties tenants;
+
+    public ProfilingWebFilter(Profiler profiler, ProfilingProperties props, TenantProperties tenants) {
+        this.profiler = profiler;
+        this.props = props;
+        this.tenants = tenants;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if ("websocket".equalsIgnoreCase(request.getHeaders().getUpgrade())
+                || request.getPath().value().startsWith("/actuator/profiling"))
+            return chain.filter(exchange);
+        long start = System.nanoTime();
+        RequestEvent event = new RequestEvent();
+        if (!event.isEnabled())
+            return chain.filter(exchange).doFinally(signal -> checkSlow(exchange, signal, start));
+        event.begin();
+        AtomicLong written = new AtomicLong();
+        ServerWebExchange counted = exchange.mutate().response(new Counting(exchange.getResponse(), written)).build();
+        return chain.filter(counted).doFinally(signal -> {
+            event.end();
+            if (event.shouldCommit()) {
+                event.method = request.getMethod().name();
+                event.path = request.getPath().value();
+                event.route = exchange.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE) instanceof PathPattern p
+                        ? p.getPatternString() : null;
+                event.tenant = request.getHeaders().getFirst(tenants.getHeader());
+                event.status = status(exchange, signal);
+                event.requestBytes = Math.max(0, request.getHeaders().getContentLength());
+                event.responseBytes = written.get();
+                event.commit();
+            }
+            checkSlow(exchange, signal, start);
+        });
+    }
+
+    private void checkSlow(ServerWebExchange exchange, SignalType signal, long start) {
+        long elapsed = System.nanoTime() - start;
+        if (elapsed >= props.getSlowThreshold().toNanos())
+            profiler.slowRequest(exchange.getRequest().getMethod().name(), exchange.getRequest().getPath().value(),
+                    status(exchange, signal), Duration.ofNanos(elapsed));
+    }
+
+    private static int status(ServerWebExchange exchange, SignalType signal) {
+        HttpStatusCode code = exchange.getResponse().getStatusCode();
+        if (code != null)
+            return code.value();
+        return signal == SignalType.ON_ERROR ? 500 : 200;
+    }
+
+    private static final class Counting extends ServerHttpResponseDecorator {
+        private final AtomicLong written;
+
+        Counting(ServerHttpResponse delegate, AtomicLong written) {
+            super(delegate);
+            this.written = written;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            return super.writeWith(Flux.from(body).doOnNext(b -> written.addAndGet(b.readableByteCount())));
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            return super.writeAndFlushWith(Flux.from(body)
+                    .map(inner -> Flux.from(inner).doOnNext(b -> written.addAndGet(b.readableByteCount()))));
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.demo.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.example.demo.Request")
+@Label("HTTP Request")
+@Category({"To-Do App", "HTTP"})
+@Description("A request handled by the server, including time spent waiting for a tenant permit")
+@StackTrace(false)
+class RequestEvent extends Event {
+    @Label("Method")
+    String method;
+
+    @Label("Path")
+    String path;
+
+    @Label("Route")
+    String route;
+
+    @Label("Tenant")
+    String tenant;
+
+    @Label("Status")
+    int status;
+
+    @Label("Request Size")
+    @DataAmount
+    long requestBytes;
+
+    @Label("Response Size")
+    @DataAmount
+    long responseBytes;
+}
@@ -0,0 +1,28 @@
+package com.example.demo.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.example.demo.ServiceOperation")
+@Label("Service Operation")
+@Category({"To-Do App", "Service"})
+@Description("A TaskService or UserService call, from subscription to completion")
+@StackTrace(false)
+class ServiceEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Tenant")
+    String tenant;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Items")
+    @Description("Elements emitted by the returned Mono or Flux")
+    long items;
+}
@@ -0,0 +1,92 @@
+package com.example.demo.profiling;
+
+import com.example.demo.service.TaskService;
+import com.example.demo.service.UserService;
+import com.example.demo.tenant.TenantContext;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.AbstractAdvisingBeanPostProcessor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.util.context.ContextView;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.CompletableFuture;
+
+// Emits a ServiceEvent around every public TaskService/UserService method. Reactive results are timed
+// from subscription to termination; when the event is disabled the call is passed through untouched.
+class ServiceProfiling extends AbstractAdvisingBeanPostProcessor {
+
+    private static final long serialVersionUID = 1L;
+
+    ServiceProfiling() {
+        StaticMethodMatcherPointcut services = new StaticMethodMatcherPointcut() {
+            @Override
+            public boolean matches(Method method, Class<?> targetClass) {
+                return (TaskService.class.isAssignableFrom(targetClass) || UserService.class.isAssignableFrom(targetClass))
+                        && Modifier.isPublic(method.getModifiers())
+                        && method.getDeclaringClass() != Object.class;
+            }
+        };
+        this.advisor = new DefaultPointcutAdvisor(services, (MethodInterceptor) ServiceProfiling::invoke);
+        setBeforeExistingAdvisors(true);
+        setProxyTargetClass(true);
+    }
+
+    private static Object invoke(MethodInvocation invocation) throws Throwable {
+        if (!new ServiceEvent().isEnabled())
+            return invocation.proceed();
+        String operation = invocation.getMethod().getDeclaringClass().getSimpleName() + "." + invocation.getMethod().getName();
+        ServiceEvent sync = new ServiceEvent();
+        sync.begin();
+        Object result;
+        try {
+            result = invocation.proceed();
+        } catch (Throwable e) {
+            commit(sync, operation, null, "error");
+            throw e;
+        }
+        if (result instanceof Mono<?> mono)
+            return Mono.deferContextual(ctx -> {
+                ServiceEvent event = begin();
+                return mono.doOnNext(v -> event.items++).doFinally(signal -> commit(event, operation, ctx, outcome(signal)));
+            });
+        if (result instanceof Flux<?> flux)
+            return Flux.deferContextual(ctx -> {
+                ServiceEvent event = begin();
+                return flux.doOnNext(v -> event.items++).doFinally(signal -> commit(event, operation, ctx, outcome(signal)));
+            });
+        if (result instanceof CompletableFuture<?> future)
+            return future.whenComplete((v, e) -> commit(sync, operation, null, e == null ? "complete" : "error"));
+        commit(sync, operation, null, "complete");
+        return result;
+    }
+
+    private static ServiceEvent begin() {
+        ServiceEvent event = new ServiceEvent();
+        event.begin();
+        return event;
+    }
+
+    private static void commit(ServiceEvent event, String operation, ContextView ctx, String outcome) {
+        event.end();
+        if (!event.shouldCommit())
+            return;
+        event.operation = operation;
+        event.tenant = ctx != null ? TenantContext.of(ctx) : null;
+        event.outcome = outcome;
+        event.commit();
+    }
+
+    private static String outcome(SignalType signal) {
+        return switch (signal) {
+            case ON_ERROR -> "error";
+            case CANCEL -> "cancel";
+            default -> "complete";
+        };
+    }
+}
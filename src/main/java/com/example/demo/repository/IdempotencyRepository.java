@@ -0,0 +1,7 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.IdempotencyRecord;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+public interface IdempotencyRepository extends ReactiveMongoRepository<IdempotencyRecord, String> {
+}
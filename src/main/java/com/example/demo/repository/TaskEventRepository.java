@@ -0,0 +1,9 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.TaskEvent;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+
+public interface TaskEventRepository extends ReactiveMongoRepository<TaskEvent, String> {
+    Flux<TaskEvent> findByTaskIdOrderByAtDesc(String taskId);
+}
@@ -1,9 +1,19 @@
 package com.example.demo.repository;
 
 import com.example.demo.entity.Task;
+import com.example.demo.entity.TaskStatus;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
 
+import java.util.Collection;
+
 public interface TaskRepository extends ReactiveMongoRepository<Task, String> {
     Flux<Task> findAllByAssigneeId(String assigneeId);
+
+    Flux<Task> findByAssigneeIdAndStatusInOrderByPriorityDesc(String assigneeId, Collection<TaskStatus> statuses, Limit limit);
+
+    @Query(value = "{ 'assigneeId': ?0 }", fields = "{ '_id': 1 }")
+    Flux<Task> findIdsByAssigneeId(String assigneeId);
 }
@@ -0,0 +1,7 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.UserDashboard;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+public interface UserDashboardRepository extends ReactiveMongoRepository<UserDashboard, String> {
+}
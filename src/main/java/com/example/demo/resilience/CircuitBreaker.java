@@ -0,0 +1,113 @@
+package com.example.demo.resilience;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+// Count-based breaker. Opens when at least failureRate percent of the last `window` calls failed
+// (once minimumCalls have been seen), rejects everything for openFor, then lets halfOpenCalls probes
+// through: one failed probe reopens it, all of them succeeding closes it again.
+public final class CircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private final String name;
+    private final int minimumCalls;
+    private final int failureRate;
+    private final long openForNanos;
+    private final int halfOpenCalls;
+    private final boolean[] outcomes;
+    private int next;
+    private int recorded;
+    private int failures;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probes;
+    private int probesSucceeded;
+
+    public CircuitBreaker(String name, int window, int minimumCalls, int failureRate, Duration openFor, int halfOpenCalls) {
+        this.name = name;
+        this.outcomes = new boolean[window];
+        this.minimumCalls = Math.min(minimumCalls, window);
+        this.failureRate = failureRate;
+        this.openForNanos = openFor.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openForNanos)
+                return false;
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probes >= halfOpenCalls)
+                return false;
+            probes++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++probesSucceeded >= halfOpenCalls)
+                transition(State.CLOSED);
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            transition(State.OPEN);
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (recorded >= minimumCalls && failures * 100 >= failureRate * recorded)
+                transition(State.OPEN);
+        }
+    }
+
+    // A permitted call that ended without an outcome (cancelled) gives its probe back.
+    public synchronized void release() {
+        if (state == State.HALF_OPEN && probes > probesSucceeded)
+            probes--;
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    private void record(boolean failed) {
+        if (recorded == outcomes.length) {
+            if (outcomes[next])
+                failures--;
+        } else {
+            recorded++;
+        }
+        outcomes[next] = failed;
+        if (failed)
+            failures++;
+        next = (next + 1) % outcomes.length;
+    }
+
+    private void transition(State to) {
+        if (to == State.OPEN && state == State.HALF_OPEN)
+            log.warn("circuit {} reopened after a failed probe", name);
+        else if (to == State.OPEN)
+            log.warn("circuit {} opened ({} of {} recent calls failed)", name, failures, recorded);
+        else
+            log.info("circuit {} is {}", name, to);
+        state = to;
+        openedAt = System.nanoTime();
+        probes = 0;
+        probesSucceeded = 0;
+        next = 0;
+        recorded = 0;
+        failures = 0;
+        Arrays.fill(outcomes, false);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.demo.resilience;
+
+import com.example.demo.entity.Task;
+import com.example.demo.entity.User;
+import com.example.demo.repository.TaskRepository;
+import com.example.demo.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+@Configuration
+@EnableConfigurationProperties(ResilienceProperties.class)
+public class ResilienceConfig {
+
+    // Shared by the repository proxies and the services, so template reads that bypass a repository use
+    // the same breaker as the repository of that collection. The converter snapshots fallback entries.
+    @Bean
+    public ResilientRepositories resilientRepositories(ResilienceProperties props, MongoConverter converter,
+                                                       MeterRegistry registry) {
+        return new ResilientRepositories(props, converter, registry);
+    }
+
+    // Static and lazily resolved so the post-processor doesn't pull its dependencies in before they
+    // have been bound and instrumented themselves.
+    @Bean
+    static BeanPostProcessor resilientRepositoryProxies(ObjectProvider<ResilientRepositories> guards) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof TaskRepository r)
+                    return guards.getObject().wrap(TaskRepository.class, r, "tasks", e -> e instanceof Task t ? t.getId() : null);
+                if (bean instanceof UserRepository r)
+                    return guards.getObject().wrap(UserRepository.class, r, "users", e -> e instanceof User u ? u.getId() : null);
+                return bean;
+            }
+        };
+    }
+}
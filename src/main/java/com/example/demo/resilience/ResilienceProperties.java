@@ -0,0 +1,97 @@
+package com.example.demo.resilience;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "app.resilience")
+public class ResilienceProperties {
+    private Duration timeout = Duration.ofSeconds(2);
+    private Map<String, Duration> timeouts = new LinkedHashMap<>();
+    private int maxConcurrent = 100;
+    private int window = 50;
+    private int minimumCalls = 20;
+    private int failureRate = 50;
+    private Duration openFor = Duration.ofSeconds(10);
+    private int halfOpenCalls = 5;
+    private int fallbackCacheSize = 10_000;
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    public Map<String, Duration> getTimeouts() {
+        return timeouts;
+    }
+
+    public void setTimeouts(Map<String, Duration> timeouts) {
+        this.timeouts = timeouts;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public void setMaxConcurrent(int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    public void setWindow(int window) {
+        this.window = window;
+    }
+
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+
+    public void setMinimumCalls(int minimumCalls) {
+        this.minimumCalls = minimumCalls;
+    }
+
+    public int getFailureRate() {
+        return failureRate;
+    }
+
+    public void setFailureRate(int failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    public Duration getOpenFor() {
+        return openFor;
+    }
+
+    public void setOpenFor(Duration openFor) {
+        this.openFor = openFor;
+    }
+
+    public int getHalfOpenCalls() {
+        return halfOpenCalls;
+    }
+
+    public void setHalfOpenCalls(int halfOpenCalls) {
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+    public int getFallbackCacheSize() {
+        return fallbackCacheSize;
+    }
+
+    public void setFallbackCacheSize(int fallbackCacheSize) {
+        this.fallbackCacheSize = fallbackCacheSize;
+    }
+
+    // Keys are "<repository>.<method>", e.g. app.resilience.timeouts[tasks.findAll]=5s.
+    public Duration timeoutFor(String operation) {
+        return timeouts.getOrDefault(operation, timeout);
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.demo.resilience;
+
+import com.example.demo.tenant.TenantContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactivestreams.Publisher;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+// Holds one StoreGuard per store and wraps reactive repositories so every Mono/Flux call goes through
+// the guard of their store. Single-argument find* results are remembered per tenant and served when the
+// breaker is open or the call fails; writes evict the document they touch, before and after they run.
+public class ResilientRepositories {
+
+    private final ResilienceProperties props;
+    private final MongoConverter converter;
+    private final MeterRegistry registry;
+    private final Map<String, StoreGuard> guards = new ConcurrentHashMap<>();
+
+    public ResilientRepositories(ResilienceProperties props, MongoConverter converter, MeterRegistry registry) {
+        this.props = props;
+        this.converter = converter;
+        this.registry = registry;
+    }
+
+    public StoreGuard guard(String name) {
+        return guards.computeIfAbsent(name, n -> new StoreGuard(n, props, converter, registry));
+    }
+
+    public <R> R wrap(Class<R> type, R target, String name, Function<Object, Object> idOf) {
+        Guarded guarded = new Guarded(type, target, guard(name), idOf);
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, guarded));
+    }
+
+    private static final class Guarded implements InvocationHandler {
+        private final Object target;
+        private final StoreGuard guard;
+        private final Function<Object, Object> idOf;
+        private final Set<String> reads = new HashSet<>();
+
+        Guarded(Class<?> type, Object target, StoreGuard guard, Function<Object, Object> idOf) {
+            this.target = target;
+            this.guard = guard;
+            this.idOf = idOf;
+            for (Method m : type.getMethods())
+                if (cacheable(m))
+                    reads.add(m.getName());
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+            if (m.getDeclaringClass() == Object.class) {
+                return switch (m.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> guard.name() + " guard for " + target;
+                    default -> call(m, args);
+                };
+            }
+            if (m.getReturnType() == Mono.class) {
+                Mono<Object> mono = guard.mono(m.getName(), Mono.defer(() -> (Mono<?>) call(m, args)).map(v -> v));
+                if (reads.contains(m.getName()) && args != null && args.length == 1)
+                    return Mono.deferContextual(ctx -> guard.cached(TenantContext.of(ctx), m.getName(), args[0], mono));
+                if (!write(m))
+                    return mono;
+                return Mono.deferContextual(ctx -> {
+                    Runnable evict = evictor(TenantContext.of(ctx), args);
+                    return mono.doFirst(evict).doFinally(signal -> evict.run());
+                });
+            }
+            if (m.getReturnType() == Flux.class) {
+                Flux<Object> flux = guard.flux(m.getName(), Flux.defer(() -> (Flux<?>) call(m, args)).map(v -> v));
+                if (!write(m))
+                    return flux;
+                return Flux.deferContextual(ctx -> {
+                    Runnable evict = evictor(TenantContext.of(ctx), args);
+                    return flux.doFirst(evict).doFinally(signal -> evict.run());
+                });
+            }
+            return call(m, args);
+        }
+
+        private Runnable evictor(String tenant, Object[] args) {
+            Object arg = args != null && args.length == 1 ? args[0] : null;
+            Object id = arg instanceof String s ? s : arg != null ? idOf.apply(arg) : null;
+            return () -> guard.evict(tenant, id);
+        }
+
+        private Object call(Method m, Object[] args) {
+            try {
+                return m.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof RuntimeException re)
+                    throw re;
+                throw new IllegalStateException(e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static boolean cacheable(Method m) {
+        return m.getName().startsWith("find") && m.getReturnType() == Mono.class && m.getParameterCount() == 1
+                && !Publisher.class.isAssignableFrom(m.getParameterTypes()[0]);
+    }
+
+    private static boolean write(Method m) {
+        String n = m.getName();
+        return n.startsWith("save") || n.startsWith("insert") || n.startsWith("delete");
+    }
+}
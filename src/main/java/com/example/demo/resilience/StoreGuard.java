@@ -0,0 +1,194 @@
+package com.example.demo.resilience;
+
+import com.mongodb.MongoException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.dao.UncategorizedDataAccessException;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoSimpleTypes;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+// The bulkhead, circuit breaker and per-operation timeout for one store (a collection), shared by its
+// repository proxy and by the template reads that bypass the repository. Only store failures (timeouts,
+// connection and server errors) count against the breaker. Errors the store answered with, such as
+// duplicate keys and version conflicts, say nothing about its health and are not counted either way.
+// Single-id reads can be remembered per tenant and served while the breaker is open or the store fails.
+public final class StoreGuard {
+
+    private record Key(String tenant, String method, Object id) {
+    }
+
+    // An entity as it was read, kept as its document so callers that modify what they were given
+    // (an update merging a request before it validates and saves) cannot change what the cache serves.
+    private record Snapshot(Class<?> type, Document document) {
+    }
+
+    private final String name;
+    private final ResilienceProperties props;
+    private final MongoConverter converter;
+    private final CircuitBreaker breaker;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Set<String> reads = ConcurrentHashMap.newKeySet();
+    private final Map<Key, Object> cache;
+    private final Counter succeeded;
+    private final Counter failed;
+    private final Counter ignored;
+    private final Counter rejected;
+    private final Counter shortCircuited;
+    private final Counter fallback;
+
+    StoreGuard(String name, ResilienceProperties props, MongoConverter converter, MeterRegistry registry) {
+        this.name = name;
+        this.props = props;
+        this.converter = converter;
+        this.breaker = new CircuitBreaker(name, props.getWindow(), props.getMinimumCalls(), props.getFailureRate(),
+                props.getOpenFor(), props.getHalfOpenCalls());
+        int size = props.getFallbackCacheSize();
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+                return size() > size;
+            }
+        };
+        Gauge.builder("resilience.breaker.state", breaker, b -> b.state().ordinal())
+                .description("0 = closed, 1 = half-open, 2 = open")
+                .tag("name", name).register(registry);
+        Gauge.builder("resilience.bulkhead.inflight", inFlight, AtomicInteger::get).tag("name", name).register(registry);
+        this.succeeded = Counter.builder("resilience.calls").tag("name", name).tag("outcome", "success").register(registry);
+        this.failed = Counter.builder("resilience.calls").tag("name", name).tag("outcome", "failure").register(registry);
+        this.ignored = Counter.builder("resilience.calls").tag("name", name).tag("outcome", "ignored").register(registry);
+        this.rejected = Counter.builder("resilience.calls").tag("name", name).tag("outcome", "rejected").register(registry);
+        this.shortCircuited = Counter.builder("resilience.calls").tag("name", name).tag("outcome", "short_circuited").register(registry);
+        this.fallback = Counter.builder("resilience.calls").tag("name", name).tag("outcome", "fallback").register(registry);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public <T> Mono<T> mono(String operation, Mono<T> call) {
+        return flux(operation, call.flux()).singleOrEmpty();
+    }
+
+    // Operations are named "<store>.<operation>", which is also the key of their app.resilience.timeouts entry.
+    public <T> Flux<T> flux(String operation, Flux<T> call) {
+        String op = name + "." + operation;
+        return Flux.defer(() -> {
+            if (inFlight.incrementAndGet() > props.getMaxConcurrent()) {
+                inFlight.decrementAndGet();
+                rejected.increment();
+                return Flux.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                        name + " store is saturated"));
+            }
+            if (!breaker.tryAcquire()) {
+                inFlight.decrementAndGet();
+                shortCircuited.increment();
+                return Flux.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                        name + " store is unavailable"));
+            }
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            return call
+                    .timeout(props.timeoutFor(op))
+                    .doOnError(error::set)
+                    .doFinally(signal -> {
+                        inFlight.decrementAndGet();
+                        if (signal == SignalType.ON_ERROR && isFailure(error.get())) {
+                            failed.increment();
+                            breaker.onFailure();
+                        } else if (signal == SignalType.ON_ERROR || signal == SignalType.CANCEL) {
+                            if (signal == SignalType.ON_ERROR)
+                                ignored.increment();
+                            breaker.release();
+                        } else {
+                            succeeded.increment();
+                            breaker.onSuccess();
+                        }
+                    })
+                    .onErrorMap(TimeoutException.class, e -> new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT,
+                            op + " timed out"));
+        });
+    }
+
+    // Remembers the read's result under (tenant, method, id) and serves it when the read fails because
+    // the store is unavailable. Every hit is a new instance. evict() drops every method's entry for the id.
+    public <T> Mono<T> cached(String tenant, String method, Object id, Mono<T> read) {
+        reads.add(method);
+        Key key = new Key(tenant, method, id);
+        return read
+                .doOnNext(v -> {
+                    Object snapshot = snapshot(v);
+                    synchronized (cache) {
+                        cache.put(key, snapshot);
+                    }
+                })
+                .onErrorResume(StoreGuard::unavailable, e -> {
+                    Object hit;
+                    synchronized (cache) {
+                        hit = cache.get(key);
+                    }
+                    if (hit == null)
+                        return Mono.error(e);
+                    fallback.increment();
+                    @SuppressWarnings("unchecked")
+                    T value = (T) restore(hit);
+                    return Mono.just(value);
+                });
+    }
+
+    // A null id drops everything cached for the tenant.
+    public void evict(String tenant, Object id) {
+        synchronized (cache) {
+            if (id == null)
+                cache.keySet().removeIf(k -> k.tenant().equals(tenant));
+            else
+                reads.forEach(method -> cache.remove(new Key(tenant, method, id)));
+        }
+    }
+
+    private Object snapshot(Object value) {
+        if (MongoSimpleTypes.HOLDER.isSimpleType(value.getClass()))
+            return value;
+        Document document = new Document();
+        converter.write(value, document);
+        return new Snapshot(value.getClass(), document);
+    }
+
+    private Object restore(Object hit) {
+        return hit instanceof Snapshot s ? converter.read(s.type(), s.document()) : hit;
+    }
+
+    CircuitBreaker.State state() {
+        return breaker.state();
+    }
+
+    private static boolean unavailable(Throwable e) {
+        return e instanceof ResponseStatusException rse && rse.getStatusCode().is5xxServerError() || isFailure(e);
+    }
+
+    static boolean isFailure(Throwable e) {
+        if (e instanceof ConcurrencyFailureException)
+            return false;
+        return e instanceof TimeoutException
+                || e instanceof TransientDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof UncategorizedDataAccessException
+                || e instanceof MongoException;
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.TaskDto;
+import com.example.demo.entity.TaskEvent;
+import com.example.demo.event.Actor;
+import com.example.demo.tenant.TenantContext;
+import com.example.demo.tenant.TenantProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+@Component
+public class AuditWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditWriter.class);
+    private static final Duration RETRY_PAUSE = Duration.ofMillis(5);
+    static final String DEAD_LETTER = "task_events_dead_letter";
+
+    private record Pending(String tenant, TaskEvent event) {
+    }
+
+    private final ReactiveMongoTemplate mongo;
+    private final TenantProperties tenants;
+    private final long cappedSize;
+    private final int capacity;
+    private final int maxRetries;
+    private final Duration drainTimeout;
+    private final Counter deadLettered;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Sinks.Many<Pending> queue = Sinks.many().unicast().onBackpressureBuffer();
+    private final CompletableFuture<Void> drained;
+
+    public AuditWriter(ReactiveMongoTemplate mongo, TenantProperties tenants, MeterRegistry registry,
+                       @Value("${app.audit.batch-size:500}") int batchSize,
+                       @Value("${app.audit.flush-interval:200ms}") Duration flushInterval,
+                       @Value("${app.audit.capacity:10000}") int capacity,
+                       @Value("${app.audit.capped-size:512MB}") DataSize cappedSize,
+                       @Value("${app.audit.max-retries:5}") int maxRetries,
+                       @Value("${app.audit.drain-timeout:10s}") Duration drainTimeout) {
+        this.mongo = mongo;
+        this.tenants = tenants;
+        this.capacity = capacity;
+        this.maxRetries = maxRetries;
+        this.drainTimeout = drainTimeout;
+        this.deadLettered = Counter.builder("audit.dead.letter").register(registry);
+        this.cappedSize = cappedSize.toBytes();
+        Gauge.builder("audit.queued", queued, AtomicInteger::get).register(registry);
+        this.drained = queue.asFlux()
+                .bufferTimeout(batchSize, flushInterval)
+                .concatMap(this::write)
+                .then()
+                .toFuture();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createCollections() {
+        Flux.fromIterable(tenants.tenants())
+                .concatMap(tenant -> mongo.collectionExists(TaskEvent.class)
+                        .flatMap(exists -> exists ? Mono.empty()
+                                : mongo.createCollection(TaskEvent.class, CollectionOptions.empty().capped().size(cappedSize)))
+                        .then(mongo.indexOps(TaskEvent.class)
+                                .ensureIndex(new Index().on("taskId", Sort.Direction.ASC).on("at", Sort.Direction.DESC)))
+                        .contextWrite(TenantContext.with(tenant)))
+                .subscribe(null, e -> log.error("task event collection setup failed", e));
+    }
+
+    // Completes once the event is queued. When the queue is full, callers wait for the writer to
+    // drain it instead of the event being dropped.
+    public Mono<Void> record(TaskEvent.Type type, String taskId, TaskDto before, TaskDto after) {
+        return Mono.deferContextual(ctx -> {
+            TaskEvent e = new TaskEvent();
+            e.setId(new ObjectId().toHexString());
+            e.setTaskId(taskId);
+            e.setType(type);
+            e.setActor(Actor.of(ctx));
+            e.setAt(Instant.now());
+            Map<String, Object> from = fields(before);
+            Map<String, Object> to = fields(after);
+            Map<String, Object> changedFrom = new LinkedHashMap<>();
+            Map<String, Object> changedTo = new LinkedHashMap<>();
+            for (String k : to.keySet().isEmpty() ? from.keySet() : to.keySet()) {
+                if (!Objects.equals(from.get(k), to.get(k))) {
+                    changedFrom.put(k, from.get(k));
+                    changedTo.put(k, to.get(k));
+                }
+            }
+            if (type == TaskEvent.Type.UPDATED && changedTo.isEmpty())
+                return Mono.empty();
+            e.setBefore(before != null ? changedFrom : null);
+            e.setAfter(after != null ? changedTo : null);
+            Pending p = new Pending(TenantContext.of(ctx), e);
+            return Mono.fromCallable(() -> offer(p) ? Boolean.TRUE : null)
+                    .repeatWhenEmpty(attempts -> attempts.delayElements(RETRY_PAUSE))
+                    .then();
+        });
+    }
+
+    private boolean offer(Pending p) {
+        if (queued.incrementAndGet() > capacity) {
+            queued.decrementAndGet();
+            return false;
+        }
+        queue.emitNext(p, Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(50)));
+        return true;
+    }
+
+    // Each tenant's share of the batch is retried on its own, so a failing tenant neither blocks the
+    // queue forever nor makes the others write twice. Events carry their id from the start, so a retry
+    // after a partial insert only writes the ones that are still missing. After the last retry the events
+    // are parked in task_events_dead_letter, and logged one by one if even that fails.
+    private Mono<Void> write(List<Pending> batch) {
+        return Flux.fromIterable(batch.stream().collect(Collectors.groupingBy(Pending::tenant)).entrySet())
+                .concatMap(g -> {
+                    List<TaskEvent> events = g.getValue().stream().map(Pending::event).toList();
+                    AtomicBoolean first = new AtomicBoolean(true);
+                    return Mono.defer(() -> first.getAndSet(false) ? insert(events) : insertMissing(events))
+                            .retryWhen(Retry.backoff(maxRetries, Duration.ofMillis(100))
+                                    .maxBackoff(Duration.ofSeconds(5))
+                                    .doBeforeRetry(s -> log.warn("task event write failed, retrying", s.failure())))
+                            .onErrorResume(e -> deadLetter(g.getKey(), events, e))
+                            .contextWrite(TenantContext.with(g.getKey()));
+                })
+                .then()
+                .doFinally(s -> queued.addAndGet(-batch.size()));
+    }
+
+    private Mono<Void> insert(List<TaskEvent> events) {
+        return events.isEmpty() ? Mono.empty() : mongo.insert(events, TaskEvent.class).then();
+    }
+
+    private Mono<Void> insertMissing(List<TaskEvent> events) {
+        Query q = new Query(where("id").in(events.stream().map(TaskEvent::getId).toList()));
+        q.fields().include("id");
+        return mongo.find(q, TaskEvent.class)
+                .map(TaskEvent::getId)
+                .collect(Collectors.toSet())
+                .flatMap(written -> insert(events.stream().filter(e -> !written.contains(e.getId())).toList()));
+    }
+
+    private Mono<Void> deadLetter(String tenant, List<TaskEvent> events, Throwable cause) {
+        deadLettered.increment(events.size());
+        log.error("giving up on {} task events of tenant {}, moving them to {}", events.size(), tenant, DEAD_LETTER, cause);
+        return mongo.insert(events, DEAD_LETTER)
+                .then()
+                .onErrorResume(e -> {
+                    log.error("could not park task events of tenant {}", tenant, e);
+                    events.forEach(ev -> log.error("lost task event: tenant={} task={} type={} actor={} at={} before={} after={}",
+                            tenant, ev.getTaskId(), ev.getType(), ev.getActor(), ev.getAt(), ev.getBefore(), ev.getAfter()));
+                    return Mono.empty();
+                });
+    }
+
+    private static Map<String, Object> fields(TaskDto d) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        if (d == null)
+            return m;
+        m.put("title", d.getTitle());
+        m.put("description", d.getDescription());
+        m.put("status", d.getStatus());
+        m.put("assigneeId", d.getAssigneeId());
+        m.put("priority", d.getPriority());
+        m.put("dependsOn", d.getDependsOn());
+        m.put("dueAt", d.getDueAt());
+        return m;
+    }
+
+    // Lets the writer flush what is queued, including the last partial batch, for up to the drain timeout.
+    @PreDestroy
+    void close() {
+        queue.tryEmitComplete();
+        try {
+            drained.get(drainTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("{} task events were still queued after {}", queued.get(), drainTimeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("task event writer failed", e.getCause());
+        }
+    }
+}
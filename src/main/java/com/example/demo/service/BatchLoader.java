@@ -0,0 +1,129 @@
+package com.example.demo.service;
+
+import com.example.demo.resilience.StoreGuard;
+import com.example.demo.tenant.TenantContext;
+import com.example.demo.tenant.TenantLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+final class BatchLoader<T> {
+    private record Pending<T>(String tenant, boolean held, String id, Sinks.One<T> result) {
+    }
+
+    private final Class<T> type;
+    private final ReactiveMongoTemplate mongo;
+    private final StoreGuard guard;
+    private final String operation;
+    private final Set<String> fields;
+    private final Queue<Pending<T>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private volatile boolean disposed;
+    private final int maxBatch;
+    private final int maxInFlight;
+    private final Counter queries;
+    private final DistributionSummary batchSize;
+
+    BatchLoader(String name, Class<T> type, Set<String> fields, ReactiveMongoTemplate mongo, StoreGuard guard,
+                int maxBatch, int maxInFlight, MeterRegistry registry) {
+        this.type = type;
+        this.mongo = mongo;
+        this.guard = guard;
+        this.operation = name.substring(name.indexOf('.') + 1);
+        this.fields = fields;
+        this.maxBatch = maxBatch;
+        this.maxInFlight = maxInFlight;
+        this.queries = Counter.builder("batchloader.queries").tag("name", name).register(registry);
+        this.batchSize = DistributionSummary.builder("batchloader.batch.size").tag("name", name).register(registry);
+    }
+
+    Mono<T> load(String id) {
+        return Mono.deferContextual(ctx -> {
+            Sinks.One<T> result = Sinks.one();
+            String tenant = TenantContext.of(ctx);
+            queue.offer(new Pending<>(tenant, TenantLimiter.holds(ctx, tenant), id, result));
+            drain();
+            return result.asMono();
+        });
+    }
+
+    void dispose() {
+        disposed = true;
+    }
+
+    // Keys are sent as soon as fewer than maxInFlight batches are running, so an idle loader adds no
+    // delay. Keys arriving while all slots are busy wait for the next free slot and go out together.
+    private void drain() {
+        if (wip.getAndIncrement() != 0)
+            return;
+        int missed = 1;
+        do {
+            while (running.get() < maxInFlight && !queue.isEmpty() && !disposed) {
+                List<Pending<T>> batch = new ArrayList<>();
+                Pending<T> next;
+                while (batch.size() < maxBatch && (next = queue.poll()) != null)
+                    batch.add(next);
+                running.incrementAndGet();
+                dispatch(batch)
+                        .doFinally(signal -> {
+                            running.decrementAndGet();
+                            drain();
+                        })
+                        .subscribe();
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    // A batch with a caller that holds a tenant permit is fetched under that permit: the caller keeps it
+    // while it waits for the batch, so queueing the batch for another could wait on the caller forever.
+    private Mono<Void> dispatch(List<Pending<T>> batch) {
+        return Flux.fromIterable(batch.stream().collect(Collectors.groupingBy(Pending::tenant)).entrySet())
+                .flatMap(e -> {
+                    Mono<Void> fetch = fetch(e.getValue());
+                    if (e.getValue().stream().anyMatch(Pending::held))
+                        fetch = fetch.contextWrite(TenantLimiter.hold(e.getKey()));
+                    return fetch.contextWrite(TenantContext.with(e.getKey()));
+                })
+                .then();
+    }
+
+    // Raw documents are fetched once per window and converted per caller, so callers that go on to
+    // modify and save the entity never share an instance. The batch query counts once against the guard.
+    private Mono<Void> fetch(List<Pending<T>> batch) {
+        Set<String> ids = batch.stream().map(Pending::id).collect(Collectors.toSet());
+        Query q = Fields.project(new Query(where("_id").in(ids)), fields);
+        queries.increment();
+        batchSize.record(ids.size());
+        return guard.flux(operation, Flux.defer(() -> mongo.find(q, Document.class, mongo.getCollectionName(type))))
+                .collectMap(doc -> String.valueOf(doc.get("_id")), Function.identity())
+                .doOnNext(found -> batch.forEach(p -> {
+                    Document doc = found.get(p.id());
+                    if (doc == null)
+                        p.result().tryEmitEmpty();
+                    else
+                        p.result().tryEmitValue(mongo.getConverter().read(type, doc));
+                }))
+                .doOnError(e -> batch.forEach(p -> p.result().tryEmitError(e)))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Task;
+import com.example.demo.entity.User;
+import com.example.demo.resilience.ResilientRepositories;
+import com.example.demo.resilience.StoreGuard;
+import com.example.demo.tenant.TenantContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+
+// Batched single-id reads. The batch queries go through the same guards as the task and user
+// repositories, and found tasks and users are served from the guard's fallback cache while Mongo is
+// unavailable; repository writes evict them.
+@Component
+public class BatchLookups {
+    private static final Set<String> ID_ONLY = Set.of("_id");
+
+    private final BatchLoader<Task> tasks;
+    private final BatchLoader<User> users;
+    private final BatchLoader<User> userIds;
+    private final StoreGuard taskGuard;
+    private final StoreGuard userGuard;
+
+    public BatchLookups(ReactiveMongoTemplate mongo, ResilientRepositories guards, MeterRegistry registry,
+                        @Value("${app.batch.max-size:100}") int maxSize,
+                        @Value("${app.batch.max-in-flight:4}") int maxInFlight) {
+        this.taskGuard = guards.guard("tasks");
+        this.userGuard = guards.guard("users");
+        this.tasks = new BatchLoader<>("tasks.findById", Task.class, null, mongo, taskGuard, maxSize, maxInFlight, registry);
+        this.users = new BatchLoader<>("users.findById", User.class, null, mongo, userGuard, maxSize, maxInFlight, registry);
+        this.userIds = new BatchLoader<>("users.existsById", User.class, ID_ONLY, mongo, userGuard, maxSize, maxInFlight, registry);
+    }
+
+    public Mono<Task> findTask(String id) {
+        return Mono.deferContextual(ctx -> taskGuard.cached(TenantContext.of(ctx), "findById", id, tasks.load(id)));
+    }
+
+    public Mono<User> findUser(String id) {
+        return Mono.deferContextual(ctx -> userGuard.cached(TenantContext.of(ctx), "findById", id, users.load(id)));
+    }
+
+    public Mono<Boolean> userExists(String id) {
+        return userIds.load(id).hasElement();
+    }
+
+    @PreDestroy
+    void close() {
+        tasks.dispose();
+        users.dispose();
+        userIds.dispose();
+    }
+}
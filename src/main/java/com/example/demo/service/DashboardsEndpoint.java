@@ -0,0 +1,25 @@
+package com.example.demo.service;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+// POST /actuator/dashboards on the management port: recomputes every tenant's user dashboards and
+// restarts projection streams that gave up. Returns the number of dashboards rebuilt per tenant.
+@Component
+@Endpoint(id = "dashboards")
+public class DashboardsEndpoint {
+    private final UserDashboardProjector projector;
+
+    public DashboardsEndpoint(UserDashboardProjector projector) {
+        this.projector = projector;
+    }
+
+    @WriteOperation
+    public Mono<Map<String, Long>> rebuild() {
+        return projector.rebuildAll();
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.demo.service;
+
+import com.example.demo.cluster.PartitionCoordinator;
+import com.example.demo.entity.Task;
+import com.example.demo.entity.TaskStatus;
+import com.example.demo.event.TaskDueEvent;
+import com.example.demo.tenant.TenantContext;
+import com.example.demo.tenant.TenantProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+@Component
+public class DueDateScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(DueDateScheduler.class);
+    private static final Duration RETRY = Duration.ofSeconds(5);
+
+    private final ReactiveMongoTemplate mongo;
+    private final ApplicationEventPublisher events;
+    private final TenantProperties tenants;
+    private final PartitionCoordinator partitions;
+    private final Duration reminderLead;
+    private final Duration window;
+    private final TimingWheel<TaskDueEvent> wheel;
+    private final Counter beyondHorizon;
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "due-wheel");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile Instant loadedUntil = Instant.MIN;
+
+    public DueDateScheduler(ReactiveMongoTemplate mongo, ApplicationEventPublisher events, TenantProperties tenants,
+                            PartitionCoordinator partitions, MeterRegistry registry,
+                            @Value("${app.due.tick:100ms}") Duration tick,
+                            @Value("${app.due.reminder-lead:15m}") Duration reminderLead,
+                            @Value("${app.due.window:1h}") Duration window) {
+        this.mongo = mongo;
+        this.events = events;
+        this.tenants = tenants;
+        this.partitions = partitions;
+        this.reminderLead = reminderLead;
+        this.window = window;
+        this.wheel = new TimingWheel<>(tick.toMillis(), 64, 4, System.currentTimeMillis());
+        this.beyondHorizon = Counter.builder("due.schedule.beyond.horizon").register(registry);
+        if (window.toMillis() >= wheel.horizonMs())
+            throw new IllegalArgumentException("app.due.window must be shorter than the wheel horizon");
+        ticker.scheduleAtFixedRate(this::tick, tick.toMillis(), tick.toMillis(), TimeUnit.MILLISECONDS);
+        partitions.onGain(this::reload);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        refill();
+        long every = window.toMillis() / 2;
+        ticker.scheduleAtFixedRate(this::refill, every, every, TimeUnit.MILLISECONDS);
+    }
+
+    // Past deadlines are scheduled for the next tick, so a task that fell due while no node was running
+    // is still notified; the notified markers keep that from repeating on every start.
+    public void track(String tenant, Task t) {
+        forget(tenant, t.getId());
+        if (t.getDueAt() == null || t.getStatus() == TaskStatus.DONE || t.getOverdueNotifiedAt() != null
+                || !t.getDueAt().isBefore(loadedUntil))
+            return;
+        schedule(tenant, t.getId(), TaskDueEvent.Kind.OVERDUE, t.getDueAt(), t.getDueAt());
+        Instant now = Instant.now();
+        Instant remindAt = t.getDueAt().minus(reminderLead);
+        if (t.getReminderNotifiedAt() == null && t.getDueAt().isAfter(now))
+            schedule(tenant, t.getId(), TaskDueEvent.Kind.REMINDER, remindAt.isAfter(now) ? remindAt : now, t.getDueAt());
+    }
+
+    public void forget(String tenant, String taskId) {
+        wheel.cancel(key(tenant, taskId, TaskDueEvent.Kind.REMINDER));
+        wheel.cancel(key(tenant, taskId, TaskDueEvent.Kind.OVERDUE));
+    }
+
+    // Only tasks due (or to be reminded) inside the next window are loaded, via the dueAt index. The first
+    // load has no lower bound and picks up every overdue task that was never notified.
+    private void refill() {
+        Instant until = Instant.now().plus(window);
+        Criteria due = loadedUntil == Instant.MIN
+                ? where("dueAt").lt(until.plus(reminderLead))
+                : where("dueAt").gte(loadedUntil).lt(until.plus(reminderLead));
+        loadedUntil = until.plus(reminderLead);
+        load(due, t -> true).subscribe(n -> log.debug("scheduled {} due tasks until {}", n, loadedUntil),
+                e -> log.error("due task refill failed", e));
+    }
+
+    // Events for a partition this node did not own were skipped when they fell due. Once it gains the
+    // partition, its unnotified tasks loaded so far are scheduled again; past deadlines fire on the next tick.
+    private void reload(Set<Integer> gained) {
+        Instant until = loadedUntil;
+        if (until == Instant.MIN)
+            return;
+        load(where("dueAt").lt(until), t -> gained.contains(partitions.partition(t.getId())))
+                .subscribe(n -> log.debug("rescheduled {} due tasks of {} gained partitions", n, gained.size()),
+                        e -> log.error("due task reload failed", e));
+    }
+
+    private Mono<Long> load(Criteria due, Predicate<Task> mine) {
+        Query q = new Query(due.and("status").ne(TaskStatus.DONE).and("overdueNotifiedAt").is(null));
+        q.fields().include("dueAt").include("status").include("reminderNotifiedAt").include("overdueNotifiedAt");
+        return Flux.fromIterable(tenants.tenants())
+                .concatMap(tenant -> mongo.find(q, Task.class)
+                        .filter(mine)
+                        .doOnNext(t -> track(tenant, t))
+                        .contextWrite(TenantContext.with(tenant)))
+                .count();
+    }
+
+    private void schedule(String tenant, String taskId, TaskDueEvent.Kind kind, Instant at, Instant dueAt) {
+        if (!wheel.schedule(key(tenant, taskId, kind), at.toEpochMilli(), new TaskDueEvent(tenant, taskId, kind, dueAt, null))) {
+            beyondHorizon.increment();
+            log.warn("{} for task {} at {} is beyond the due wheel horizon, not scheduled", kind, taskId, at);
+        }
+    }
+
+    private void tick() {
+        try {
+            Instant now = Instant.now();
+            // Every node keeps the wheel but only the owner fires; skipped events are reloaded on gain.
+            for (TaskDueEvent e : wheel.advance(now.toEpochMilli()))
+                if (partitions.owns(e.taskId()))
+                    fire(e, now);
+        } catch (RuntimeException e) {
+            log.error("due wheel tick failed", e);
+        }
+    }
+
+    // The marker is set only if the task is still unnotified for the same deadline, so a task is announced
+    // once even when an old node or a restart fires it again. The version is bumped with it, so a save
+    // from an update that read the task before the marker conflicts and retries instead of clearing it.
+    // A failed update is retried a few ticks later.
+    private void fire(TaskDueEvent e, Instant now) {
+        String marker = e.kind() == TaskDueEvent.Kind.REMINDER ? "reminderNotifiedAt" : "overdueNotifiedAt";
+        Query q = new Query(where("id").is(e.taskId()).and("dueAt").is(e.dueAt()).and(marker).is(null));
+        mongo.updateFirst(q, new Update().set(marker, now).inc("version", 1), Task.class)
+                .contextWrite(TenantContext.with(e.tenant()))
+                .subscribe(r -> {
+                    if (r.getModifiedCount() > 0)
+                        events.publishEvent(new TaskDueEvent(e.tenant(), e.taskId(), e.kind(), e.dueAt(), now));
+                }, err -> {
+                    log.warn("could not mark {} for task {}, retrying", e.kind(), e.taskId(), err);
+                    schedule(e.tenant(), e.taskId(), e.kind(), now.plus(RETRY), e.dueAt());
+                });
+    }
+
+    // Task ids are only unique per tenant database.
+    private static String key(String tenant, String taskId, TaskDueEvent.Kind kind) {
+        return tenant + "/" + taskId + ":" + kind;
+    }
+
+    @PreDestroy
+    void stop() {
+        ticker.shutdownNow();
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.TaskDto;
+import com.example.demo.dto.UserDto;
+
+import java.util.List;
+
+final class ETags {
+    static final long SEED = 1125899906842597L;
+    private static final long PRIME = 0x9E3779B97F4A7C15L;
+
+    private ETags() {
+    }
+
+    static String of(TaskDto d) {
+        return of(d.getId(), d.getVersion());
+    }
+
+    static String of(String id, Long version) {
+        return quote(id + "-" + (version != null ? version : 0));
+    }
+
+    static String of(UserDto d) {
+        return of(d.getId(), d.getVersion(), d.getTaskIds());
+    }
+
+    static String of(String id, Long version, List<String> taskIds) {
+        return quote(id + "-" + (version != null ? version : 0) + "-" + Long.toHexString(mix(SEED, taskIds)));
+    }
+
+    static long mix(long h, String id, Long version) {
+        h = (h ^ (id != null ? id.hashCode() : 0)) * PRIME;
+        return (h ^ (version != null ? version : 0)) * PRIME;
+    }
+
+    static long mix(long h, List<String> ids) {
+        if (ids != null)
+            for (String id : ids)
+                h = mix(h, id, 0L);
+        return h;
+    }
+
+    static String collection(String name, long h) {
+        return quote(name + "-" + Long.toHexString(h));
+    }
+
+    private static String quote(String s) {
+        return "\"" + s + "\"";
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.demo.service;
+
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+final class Fields {
+    static final Set<String> TASK = Set.of(
+            "id", "title", "description", "status", "assigneeId", "priority", "dependsOn", "dueAt", "version");
+    static final Set<String> USER = Set.of("id", "name", "email", "taskIds", "version");
+    static final Set<String> VERSION = Set.of("version");
+
+    private static final Set<String> COMPUTED = Set.of("taskIds");
+
+    private Fields() {
+    }
+
+    static Set<String> parse(String fields, Set<String> allowed) {
+        if (fields == null || fields.isBlank())
+            return null;
+        Set<String> selected = new TreeSet<>();
+        Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(f -> !f.isEmpty())
+                .forEach(f -> {
+                    if (!allowed.contains(f))
+                        throw new IllegalArgumentException("unknown field: " + f);
+                    selected.add(f);
+                });
+        return selected.isEmpty() ? null : selected;
+    }
+
+    static boolean includes(Set<String> fields, String field) {
+        return fields == null || fields.contains(field);
+    }
+
+    // The version is always read so the entity tag comes from the same document as the body.
+    static Query project(Query q, Set<String> fields) {
+        if (fields != null) {
+            fields.stream()
+                    .filter(f -> !COMPUTED.contains(f))
+                    .forEach(f -> q.fields().include(f));
+            q.fields().include("version");
+        }
+        return q;
+    }
+
+    static String tag(String etag, Set<String> fields) {
+        if (fields == null)
+            return etag;
+        return etag.substring(0, etag.length() - 1) + ";" + String.join(",", fields) + "\"";
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.TaskDto;
+import com.example.demo.entity.IdempotencyRecord;
+import com.example.demo.repository.IdempotencyRepository;
+import com.example.demo.tenant.TenantContext;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// Replays the stored response for a repeated Idempotency-Key. The first request claims the key
+// with a pending record; duplicates on this instance share its result, duplicates on other
+// instances poll the record until it completes.
+@Component
+public class Idempotency {
+    public static final String HEADER = "Idempotency-Key";
+    private static final Logger log = LoggerFactory.getLogger(Idempotency.class);
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final Duration POLL = Duration.ofMillis(50);
+
+    private final IdempotencyRepository records;
+    private final ObjectMapper json;
+    private final Duration pendingTimeout;
+    private final SingleFlight<String, IdempotencyRecord> inFlight;
+    private final Map<String, IdempotencyRecord> cache;
+    private final Counter replayedFromCache;
+    private final Counter replayedFromStore;
+
+    public Idempotency(IdempotencyRepository records, ObjectMapper json, MeterRegistry registry,
+                       @Value("${app.idempotency.cache-size:10000}") int cacheSize,
+                       @Value("${app.idempotency.pending-timeout:30s}") Duration pendingTimeout) {
+        this.records = records;
+        this.json = json;
+        this.pendingTimeout = pendingTimeout;
+        this.inFlight = new SingleFlight<>("idempotency", registry);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IdempotencyRecord> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.replayedFromCache = Counter.builder("idempotency.replayed").tag("source", "cache").register(registry);
+        this.replayedFromStore = Counter.builder("idempotency.replayed").tag("source", "store").register(registry);
+    }
+
+    public Mono<TaskDto> execute(String key, String operation, Object request, Supplier<Mono<TaskDto>> action) {
+        if (key == null)
+            return action.get();
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH)
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    HEADER + " must be 1-" + MAX_KEY_LENGTH + " characters"));
+        String fingerprint = fingerprint(operation, request);
+        return TenantContext.current().flatMap(tenant -> {
+            String cacheKey = tenant + "/" + key;
+            IdempotencyRecord cached = cached(cacheKey);
+            if (cached != null) {
+                replayedFromCache.increment();
+                return replay(cached, fingerprint);
+            }
+            return inFlight.execute(cacheKey, () -> lookup(tenant, key, fingerprint, action))
+                    .doOnNext(r -> remember(cacheKey, r))
+                    .flatMap(r -> replay(r, fingerprint));
+        });
+    }
+
+    private Mono<IdempotencyRecord> lookup(String tenant, String key, String fingerprint, Supplier<Mono<TaskDto>> action) {
+        return records.findById(key)
+                .flatMap(r -> {
+                    if (r.getResponse() == null && !r.isFailed())
+                        return awaitCompletion(tenant, key, fingerprint, action);
+                    replayedFromStore.increment();
+                    return Mono.just(r);
+                })
+                .switchIfEmpty(Mono.defer(() -> claim(tenant, key, fingerprint, action)));
+    }
+
+    private Mono<IdempotencyRecord> claim(String tenant, String key, String fingerprint, Supplier<Mono<TaskDto>> action) {
+        IdempotencyRecord r = new IdempotencyRecord();
+        r.setId(key);
+        r.setFingerprint(fingerprint);
+        r.setCreatedAt(Instant.now());
+        return records.insert(r)
+                .map(Optional::of)
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.just(Optional.empty()))
+                .flatMap(claimed -> claimed.isPresent()
+                        ? run(tenant, claimed.get(), action)
+                        : awaitCompletion(tenant, key, fingerprint, action));
+    }
+
+    // The key is released only when the action is known to have failed before writing anything, so
+    // the client can simply retry. Any other failure, or a cancel, may come after the task was saved:
+    // the claim is kept and marked failed, and repeats get 409 instead of running the action twice.
+    private Mono<IdempotencyRecord> run(String tenant, IdempotencyRecord claimed, Supplier<Mono<TaskDto>> action) {
+        return action.get()
+                .flatMap(response -> {
+                    claimed.setResponse(response);
+                    return records.save(claimed);
+                })
+                .onErrorResume(e -> (beforeWrite(e) ? records.deleteById(claimed.getId()) : markFailed(claimed))
+                        .then(Mono.error(e)))
+                .doOnCancel(() -> markFailed(claimed).contextWrite(TenantContext.with(tenant)).subscribe());
+    }
+
+    private Mono<Void> markFailed(IdempotencyRecord claimed) {
+        claimed.setResponse(null);
+        claimed.setFailed(true);
+        return records.save(claimed)
+                .then()
+                .onErrorResume(e -> {
+                    log.error("could not mark {} {} as failed; it stays pending until it expires", HEADER, claimed.getId(), e);
+                    return Mono.empty();
+                });
+    }
+
+    // Client errors and lost optimistic-lock races are raised before the task is written. 429 is not
+    // among them: the tenant limiter can reject a Mongo call that follows the write.
+    private static boolean beforeWrite(Throwable e) {
+        if (e instanceof ResponseStatusException rse)
+            return rse.getStatusCode().is4xxClientError() && rse.getStatusCode() != HttpStatus.TOO_MANY_REQUESTS;
+        return e instanceof IllegalArgumentException || e instanceof OptimisticLockingFailureException;
+    }
+
+    // Another instance holds the claim. If it fails and releases the key, this request takes it over.
+    private Mono<IdempotencyRecord> awaitCompletion(String tenant, String key, String fingerprint, Supplier<Mono<TaskDto>> action) {
+        return records.findById(key)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .filter(r -> r.isEmpty() || r.get().getResponse() != null || r.get().isFailed())
+                .repeatWhenEmpty(attempts -> attempts.delayElements(POLL))
+                .timeout(pendingTimeout)
+                .onErrorMap(TimeoutException.class, e -> new ResponseStatusException(HttpStatus.CONFLICT,
+                        "A request with this " + HEADER + " is still in progress"))
+                .flatMap(r -> r.isPresent() ? Mono.just(r.get()) : claim(tenant, key, fingerprint, action));
+    }
+
+    private Mono<TaskDto> replay(IdempotencyRecord r, String fingerprint) {
+        if (!fingerprint.equals(r.getFingerprint()))
+            return Mono.error(new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    HEADER + " was already used for a different request"));
+        if (r.isFailed())
+            return Mono.error(new ResponseStatusException(HttpStatus.CONFLICT,
+                    "The request with this " + HEADER + " failed and may have been applied; check the task and retry with a new key"));
+        return Mono.just(r.getResponse());
+    }
+
+    // A cached key lives no longer than its stored record, which the TTL index drops after
+    // IdempotencyRecord.TTL; past that the request must not be answered from memory either.
+    private IdempotencyRecord cached(String key) {
+        synchronized (cache) {
+            IdempotencyRecord r = cache.get(key);
+            if (r != null && !Instant.now().isBefore(r.getCreatedAt().plus(IdempotencyRecord.TTL))) {
+                cache.remove(key);
+                return null;
+            }
+            return r;
+        }
+    }
+
+    private void remember(String key, IdempotencyRecord r) {
+        synchronized (cache) {
+            cache.put(key, r);
+        }
+    }
+
+    private String fingerprint(String operation, Object request) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(operation.getBytes(StandardCharsets.UTF_8));
+            sha.update(json.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(sha.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.InboxEventDto;
+import com.example.demo.entity.Task;
+import com.example.demo.entity.TaskEvent;
+import com.example.demo.tenant.TenantContext;
+import com.example.demo.tenant.TenantProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+// Routes task changes to the inboxes of the assignees involved. Every node tails each tenant's
+// task_events, so a client sees changes made through any node, one audit flush after the write.
+// Events carry only the fields that changed; the title, status or assignee an inbox event needs
+// beyond those is read from the task as it is now. Each subscriber has its own bounded buffer; when
+// a slow consumer fills it, events are dropped or the subscription is completed, depending on
+// app.inbox.overflow.
+@Component
+public class InboxHub {
+
+    private static final Logger log = LoggerFactory.getLogger(InboxHub.class);
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(1);
+    // A resumed tail starts this far before the newest event seen, for events another node recorded
+    // earlier but wrote later; the ids of recently routed events keep them from being sent twice.
+    private static final Duration RESUME_MARGIN = Duration.ofSeconds(5);
+    private static final int RECENT_IDS = 10_000;
+
+    public enum Overflow {
+        DROP, CLOSE
+    }
+
+    public final class Inbox {
+        private final String key;
+        private final Sinks.Many<InboxEventDto> sink = Sinks.many().unicast()
+                .onBackpressureBuffer(Queues.<InboxEventDto>get(bufferSize).get());
+        private volatile boolean overflowed;
+
+        private Inbox(String key) {
+            this.key = key;
+        }
+
+        public Flux<InboxEventDto> events() {
+            return sink.asFlux().doFinally(s -> unsubscribe(this));
+        }
+
+        public boolean overflowed() {
+            return overflowed;
+        }
+
+        private synchronized void offer(InboxEventDto e) {
+            if (sink.tryEmitNext(e) != Sinks.EmitResult.FAIL_OVERFLOW)
+                return;
+            if (overflow == Overflow.DROP) {
+                dropped.increment();
+                return;
+            }
+            overflowed = true;
+            closed.increment();
+            sink.tryEmitComplete();
+        }
+    }
+
+    private final Map<String, Set<Inbox>> inboxes = new ConcurrentHashMap<>();
+    private final Map<String, Disposable> feeds = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final ReactiveMongoTemplate mongo;
+    private final BatchLookups lookups;
+    private final TenantProperties tenants;
+    private final int bufferSize;
+    private final Overflow overflow;
+    private final Counter dropped;
+    private final Counter closed;
+
+    public InboxHub(ReactiveMongoTemplate mongo, BatchLookups lookups, TenantProperties tenants, MeterRegistry registry,
+                    @Value("${app.inbox.buffer-size:64}") int bufferSize,
+                    @Value("${app.inbox.overflow:DROP}") Overflow overflow) {
+        this.mongo = mongo;
+        this.lookups = lookups;
+        this.tenants = tenants;
+        this.bufferSize = bufferSize;
+        this.overflow = overflow;
+        this.dropped = Counter.builder("inbox.dropped").register(registry);
+        this.closed = Counter.builder("inbox.closed").tag("reason", "overflow").register(registry);
+        Gauge.builder("inbox.connections", connections, AtomicInteger::get).register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Instant now = Instant.now();
+        for (String tenant : tenants.tenants())
+            feeds.put(tenant, feed(tenant, now).contextWrite(TenantContext.with(tenant))
+                    .subscribe(null, e -> log.error("inbox feed for tenant {} stopped", tenant, e)));
+    }
+
+    @PreDestroy
+    public void stop() {
+        feeds.values().forEach(Disposable::dispose);
+    }
+
+    public Inbox subscribe(String tenant, String assigneeId) {
+        Inbox inbox = new Inbox(tenant + "/" + assigneeId);
+        inboxes.compute(inbox.key, (k, set) -> {
+            Set<Inbox> s = set != null ? set : ConcurrentHashMap.newKeySet();
+            s.add(inbox);
+            return s;
+        });
+        connections.incrementAndGet();
+        return inbox;
+    }
+
+    Mono<Void> feed(String tenant, Instant from) {
+        AtomicReference<Instant> newest = new AtomicReference<>(from);
+        Map<String, Boolean> recent = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > RECENT_IDS;
+            }
+        };
+        return Flux.defer(() -> mongo.tail(new Query(where("at").gte(newest.get().minus(RESUME_MARGIN))), TaskEvent.class))
+                .filter(e -> recent.put(e.getId(), Boolean.TRUE) == null)
+                .doOnNext(e -> newest.accumulateAndGet(e.getAt(), (a, b) -> a.isAfter(b) ? a : b))
+                .concatMap(e -> route(tenant, e).onErrorResume(ex -> {
+                    log.warn("could not route task event {} to inboxes", e.getId(), ex);
+                    return Mono.empty();
+                }))
+                .repeatWhen(done -> done.delayElements(RETRY_DELAY))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, RETRY_DELAY)
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .transientErrors(true)
+                        .doBeforeRetry(s -> log.warn("inbox feed for tenant {} failed, resuming", tenant, s.failure())))
+                .then();
+    }
+
+    // A changed assignee gives UNASSIGNED to the old one and ASSIGNED to the new one; otherwise a
+    // changed status goes to the current assignee as STATUS_CHANGED. Creation and deletion carry every
+    // field and count as a change of assignee from or to nobody.
+    Mono<Void> route(String tenant, TaskEvent e) {
+        Map<String, Object> before = e.getBefore();
+        Map<String, Object> after = e.getAfter();
+        Mono<Map<String, Object>> current = Mono.defer(() -> lookups.findTask(e.getTaskId()))
+                .map(InboxHub::fields)
+                .defaultIfEmpty(Map.of())
+                .cache();
+        String from = before != null ? (String) before.get("assigneeId") : null;
+        String to = after != null ? (String) after.get("assigneeId") : null;
+        if (!Objects.equals(from, to))
+            return deliver(tenant, from, "UNASSIGNED", e, before, current)
+                    .then(deliver(tenant, to, "ASSIGNED", e, after, current));
+        if (before == null || after == null || !after.containsKey("status") || inboxes.isEmpty())
+            return Mono.empty();
+        return current.flatMap(c -> deliver(tenant, (String) c.get("assigneeId"), "STATUS_CHANGED", e, after, current));
+    }
+
+    private Mono<Void> deliver(String tenant, String assigneeId, String type, TaskEvent e,
+                               Map<String, Object> changed, Mono<Map<String, Object>> current) {
+        Set<Inbox> subscribers = assigneeId != null ? inboxes.get(tenant + "/" + assigneeId) : null;
+        if (subscribers == null)
+            return Mono.empty();
+        Mono<Map<String, Object>> fields = changed.containsKey("title") && changed.containsKey("status")
+                ? Mono.just(changed)
+                : current.map(c -> {
+                    Map<String, Object> merged = new HashMap<>(c);
+                    merged.putAll(changed);
+                    return merged;
+                });
+        return fields.doOnNext(f -> {
+            InboxEventDto event = event(type, e, f);
+            subscribers.forEach(i -> i.offer(event));
+        }).then();
+    }
+
+    private void unsubscribe(Inbox inbox) {
+        inboxes.computeIfPresent(inbox.key, (k, set) -> {
+            set.remove(inbox);
+            return set.isEmpty() ? null : set;
+        });
+        connections.decrementAndGet();
+    }
+
+    private static Map<String, Object> fields(Task t) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("title", t.getTitle());
+        m.put("status", t.getStatus() != null ? t.getStatus().name() : null);
+        m.put("assigneeId", t.getAssigneeId());
+        return m;
+    }
+
+    private static InboxEventDto event(String type, TaskEvent e, Map<String, Object> fields) {
+        InboxEventDto d = new InboxEventDto();
+        d.setType(type);
+        d.setTaskId(e.getTaskId());
+        d.setTitle((String) fields.get("title"));
+        d.setStatus((String) fields.get("status"));
+        d.setAt(e.getAt());
+        return d;
+    }
+}
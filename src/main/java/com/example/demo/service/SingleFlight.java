@@ -0,0 +1,103 @@
+package com.example.demo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.context.ContextView;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+final class SingleFlight<K, V> {
+    private final Map<K, Flight> inFlight = new ConcurrentHashMap<>();
+    private final Counter requests;
+    private final Counter coalesced;
+
+    SingleFlight(String name, MeterRegistry registry) {
+        this.requests = Counter.builder("singleflight.requests").tag("name", name).register(registry);
+        this.coalesced = Counter.builder("singleflight.coalesced").tag("name", name).register(registry);
+    }
+
+    // Subscribers arriving while a load for the same key is running share its result or error.
+    // The entry is removed before the result is emitted, so a caller that still joins a finished
+    // flight gets its remembered result instead of running the loader again.
+    // The load is cancelled only once every subscriber has cancelled.
+    Mono<V> execute(K key, Supplier<Mono<V>> loader) {
+        return Mono.deferContextual(context -> {
+            requests.increment();
+            Flight created = new Flight(key);
+            Flight existing = inFlight.putIfAbsent(key, created);
+            if (existing != null) {
+                coalesced.increment();
+                return existing.join(loader);
+            }
+            created.start(loader, context);
+            return created.join(loader);
+        });
+    }
+
+    private final class Flight {
+        private final K key;
+        private final Sinks.One<V> result = Sinks.one();
+        private Disposable load;
+        private int subscribers;
+        private boolean done;
+        private boolean cancelled;
+
+        Flight(K key) {
+            this.key = key;
+        }
+
+        void start(Supplier<Mono<V>> loader, ContextView context) {
+            load = Mono.defer(loader)
+                    .contextWrite(context)
+                    .subscribe(
+                            value -> {
+                                finish();
+                                result.tryEmitValue(value);
+                            },
+                            error -> {
+                                finish();
+                                result.tryEmitError(error);
+                            },
+                            () -> {
+                                finish();
+                                result.tryEmitEmpty();
+                            });
+        }
+
+        Mono<V> join(Supplier<Mono<V>> loader) {
+            return Mono.defer(() -> {
+                synchronized (this) {
+                    if (cancelled) {
+                        // Abandoned by its last subscriber just before this one arrived.
+                        return execute(key, loader);
+                    }
+                    subscribers++;
+                }
+                return result.asMono().doOnCancel(this::leave);
+            });
+        }
+
+        private void finish() {
+            synchronized (this) {
+                done = true;
+            }
+            inFlight.remove(key, this);
+        }
+
+        private void leave() {
+            synchronized (this) {
+                if (--subscribers > 0 || done) {
+                    return;
+                }
+                cancelled = true;
+            }
+            inFlight.remove(key, this);
+            load.dispose();
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package com.example.demo.service;
+
+// A response body together with the entity tag computed from the same read.
+public record Tagged<T>(String etag, T body) {
+}
@@ -0,0 +1,180 @@
+package com.example.demo.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+@Component
+public class TaskGraph {
+    private static final class Node {
+        final Set<String> deps;
+        final boolean done;
+        int pending;
+
+        Node(Set<String> deps, boolean done) {
+            this.deps = deps;
+            this.done = done;
+        }
+    }
+
+    // One graph per tenant: task ids are only unique inside a tenant database, and dependencies never
+    // cross tenants.
+    private final Map<String, Graph> tenants = new HashMap<>();
+
+    public synchronized void put(String tenant, String id, Collection<String> deps, boolean done) {
+        graph(tenant).put(id, deps, done);
+    }
+
+    public synchronized void remove(String tenant, String id) {
+        Graph g = tenants.get(tenant);
+        if (g != null)
+            g.remove(id);
+    }
+
+    public synchronized boolean contains(String tenant, String id) {
+        Graph g = tenants.get(tenant);
+        return g != null && g.nodes.containsKey(id);
+    }
+
+    public synchronized List<String> ready(String tenant) {
+        Graph g = tenants.get(tenant);
+        return g == null ? List.of() : List.copyOf(g.ready);
+    }
+
+    public synchronized void requireAcyclic(String tenant, String id, Collection<String> deps) {
+        graph(tenant).requireAcyclic(id, deps);
+    }
+
+    // Validates the dependencies the task gains and records its new edges in one step, so two concurrent
+    // updates cannot each pass the check and close a cycle together. Dependencies it already had are not
+    // checked again. The returned rollback restores the previous node, unless something else has replaced
+    // the reserved one since; call it when the save fails.
+    public synchronized Runnable reserve(String tenant, String id, Collection<String> deps, boolean done) {
+        Graph g = graph(tenant);
+        Node old = g.nodes.get(id);
+        Set<String> added = deps != null ? new HashSet<>(deps) : new HashSet<>();
+        if (old != null)
+            added.removeAll(old.deps);
+        g.requireAcyclic(id, added);
+        Node reserved = g.put(id, deps, done);
+        return () -> restore(tenant, id, reserved, old);
+    }
+
+    // Removes a task nothing depends on; a task that still has dependents cannot be deleted. The returned
+    // rollback puts it back if the delete fails.
+    public synchronized Runnable reserveRemoval(String tenant, String id) {
+        Graph g = graph(tenant);
+        Set<String> dependents = g.dependents.getOrDefault(id, Set.of());
+        if (!dependents.isEmpty())
+            throw new IllegalStateException("task " + id + " is a dependency of " + new TreeSet<>(dependents));
+        Node old = g.remove(id);
+        return () -> restore(tenant, id, null, old);
+    }
+
+    private synchronized void restore(String tenant, String id, Node reserved, Node old) {
+        Graph g = graph(tenant);
+        if (g.nodes.get(id) != reserved)
+            return;
+        if (old != null)
+            g.put(id, old.deps, old.done);
+        else
+            g.remove(id);
+    }
+
+    private Graph graph(String tenant) {
+        return tenants.computeIfAbsent(tenant, t -> new Graph());
+    }
+
+    private static final class Graph {
+        private final Map<String, Node> nodes = new HashMap<>();
+        private final Map<String, Set<String>> dependents = new HashMap<>();
+        private final Set<String> ready = new LinkedHashSet<>();
+
+        Node put(String id, Collection<String> deps, boolean done) {
+            Node old = nodes.get(id);
+            if (old != null)
+                old.deps.forEach(d -> unlink(d, id));
+
+            Node node = new Node(deps != null ? new HashSet<>(deps) : new HashSet<>(), done);
+            for (String d : node.deps) {
+                dependents.computeIfAbsent(d, k -> new HashSet<>()).add(id);
+                if (blocks(nodes.get(d)))
+                    node.pending++;
+            }
+            nodes.put(id, node);
+            refresh(id, node);
+
+            if (blocks(old) != blocks(node))
+                adjustDependents(id, blocks(node) ? 1 : -1);
+            return node;
+        }
+
+        Node remove(String id) {
+            Node old = nodes.remove(id);
+            if (old == null)
+                return null;
+            old.deps.forEach(d -> unlink(d, id));
+            ready.remove(id);
+            if (blocks(old))
+                adjustDependents(id, -1);
+            return old;
+        }
+
+        void requireAcyclic(String id, Collection<String> deps) {
+            if (deps == null || deps.isEmpty())
+                return;
+            for (String d : deps)
+                if (!nodes.containsKey(d))
+                    throw new IllegalArgumentException("unknown dependency: " + d);
+            if (id == null)
+                return;
+
+            Deque<String> stack = new ArrayDeque<>(deps);
+            Set<String> seen = new HashSet<>();
+            while (!stack.isEmpty()) {
+                String cur = stack.pop();
+                if (cur.equals(id))
+                    throw new IllegalArgumentException("dependency cycle through task " + id);
+                if (!seen.add(cur))
+                    continue;
+                Node n = nodes.get(cur);
+                if (n != null)
+                    stack.addAll(n.deps);
+            }
+        }
+
+        private void adjustDependents(String id, int delta) {
+            for (String dep : dependents.getOrDefault(id, Set.of())) {
+                Node n = nodes.get(dep);
+                n.pending += delta;
+                refresh(dep, n);
+            }
+        }
+
+        private void unlink(String dep, String id) {
+            Set<String> s = dependents.get(dep);
+            if (s != null && s.remove(id) && s.isEmpty())
+                dependents.remove(dep);
+        }
+
+        private void refresh(String id, Node n) {
+            if (!n.done && n.pending == 0)
+                ready.add(id);
+            else
+                ready.remove(id);
+        }
+
+        private static boolean blocks(Node n) {
+            return n != null && !n.done;
+        }
+    }
+}
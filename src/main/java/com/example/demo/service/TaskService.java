@@ -1,110 +1,368 @@
 package com.example.demo.service;
 
+import com.example.demo.cluster.PartitionedWork;
+import com.example.demo.config.MongoTuningProperties;
 import com.example.demo.dto.TaskCreateRequest;
 import com.example.demo.dto.TaskDto;
+import com.example.demo.dto.TaskEventDto;
 import com.example.demo.dto.TaskUpdateRequest;
 import com.example.demo.entity.Task;
+import com.example.demo.entity.TaskEvent;
+import com.example.demo.entity.TaskStatus;
+import com.example.demo.event.TaskChangedEvent;
+import com.example.demo.mapper.TaskJsonWriter;
 import com.example.demo.mapper.TaskMapper;
+import com.example.demo.repository.TaskEventRepository;
 import com.example.demo.repository.TaskRepository;
-import com.example.demo.repository.UserRepository;
+import com.example.demo.resilience.ResilientRepositories;
+import com.example.demo.resilience.StoreGuard;
+import com.example.demo.tenant.TenantContext;
+import com.example.demo.tenant.TenantLimiter;
+import com.example.demo.tenant.TenantProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.HttpStatus;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
 @Service
 public class TaskService {
 
     private static final Logger log = LoggerFactory.getLogger(TaskService.class);
+    private static final Set<TaskStatus> OPEN_STATUSES = EnumSet.of(TaskStatus.OPEN, TaskStatus.TODO, TaskStatus.IN_PROGRESS);
+    private static final int MAX_NEXT = 100;
+    // A write that lost a version race re-reads the task and applies its change again.
+    private static final Retry CONFLICTS = Retry.max(2).filter(OptimisticLockingFailureException.class::isInstance);
+    private static final Duration GRAPH_WAIT = Duration.ofSeconds(10);
 
     private final TaskRepository tasks;
-    private final UserRepository users;
     private final TaskMapper mapper;
+    private final BatchLookups lookups;
+    private final TaskGraph graph;
+    private final DueDateScheduler dueDates;
+    private final ReactiveMongoTemplate mongo;
+    private final MongoTuningProperties mongoProps;
+    private final SingleFlight<String, TaskDto> loads;
+    private final TenantProperties tenants;
+    private final TaskEventRepository events;
+    private final AuditWriter audit;
+    private final ApplicationEventPublisher publisher;
+    private final TaskJsonWriter json;
+    private final StoreGuard guard;
+    private final TenantLimiter limiter;
+    private final Sinks.Empty<Void> graphLoaded = Sinks.empty();
 
-    public TaskService(TaskRepository tasks, UserRepository users, TaskMapper mapper) {
+    public TaskService(TaskRepository tasks, TaskMapper mapper, BatchLookups lookups, TaskGraph graph,
+                       DueDateScheduler dueDates,
+                       ReactiveMongoTemplate mongo, MongoTuningProperties mongoProps, ResilientRepositories guards,
+                       MeterRegistry meterRegistry, TenantProperties tenants, TenantLimiter limiter,
+                       TaskEventRepository events, AuditWriter audit,
+                       ApplicationEventPublisher publisher, TaskJsonWriter json, PartitionedWork work) {
         this.tasks = tasks;
-        this.users = users;
         this.mapper = mapper;
+        this.lookups = lookups;
+        this.graph = graph;
+        this.dueDates = dueDates;
+        this.mongo = mongo;
+        this.mongoProps = mongoProps;
+        this.loads = new SingleFlight<>("tasks.get", meterRegistry);
+        this.tenants = tenants;
+        this.limiter = limiter;
+        this.events = events;
+        this.audit = audit;
+        this.publisher = publisher;
+        this.json = json;
+        this.guard = guards.guard("tasks");
+        work.handle("assign", job -> assign(job.getTaskId(), job.getAssigneeId()));
+        work.handle("unassign", job -> unassign(job.getTaskId()));
     }
 
     // ------- Reactive CRUD -------
 
+    // Template reads go through the tasks repository's guard, so they time out and trip the same breaker.
     public Flux<TaskDto> list() {
-        return tasks.findAll().map(mapper::toDto);
+        return guard.flux("list", mongo.find(listQuery(), Task.class)).map(mapper::toDto);
+    }
+
+    // Same documents and JSON as list(), transcoded from raw BSON without building Task or TaskDto objects.
+    // The documents are read before the body is written so the tag describes exactly what is sent.
+    public Mono<Tagged<Flux<DataBuffer>>> listJson(DataBufferFactory buffers) {
+        return guard.flux("list", mongo.getCollection(mongo.getCollectionName(Task.class))
+                        .flatMapMany(c -> c.withDocumentClass(RawBsonDocument.class)
+                                .withReadPreference(mongoProps.listReads())
+                                .find()))
+                .collectList()
+                .map(docs -> {
+                    long h = ETags.SEED;
+                    for (RawBsonDocument doc : docs)
+                        h = ETags.mix(h, id(doc.get("_id")), version(doc.get("version")));
+                    return new Tagged<>(ETags.collection("tasks", h), json(docs, buffers));
+                });
+    }
+
+    private Flux<DataBuffer> json(List<RawBsonDocument> docs, DataBufferFactory buffers) {
+        return Flux.defer(() -> {
+            boolean[] first = {true};
+            Flux<DataBuffer> body = Flux.fromIterable(docs).map(doc -> {
+                DataBuffer b = json.write(doc.getByteBuffer().asNIO(), buffers, first[0]);
+                first[0] = false;
+                return b;
+            });
+            return Flux.concat(Mono.fromSupplier(() -> json.open(buffers)), body,
+                    Mono.fromSupplier(() -> json.close(buffers)));
+        }).doOnDiscard(DataBuffer.class, DataBufferUtils::release);
     }
 
     public Mono<TaskDto> get(String id) {
-        return tasks.findById(id)
+        return TenantContext.current().flatMap(tenant -> loads.execute(tenant + "/" + id, () -> lookups.findTask(id)
                 .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
-                .map(mapper::toDto);
+                .map(mapper::toDto)));
     }
 
+    public Mono<Tagged<List<TaskDto>>> list(String fields) {
+        Set<String> f = Fields.parse(fields, Fields.TASK);
+        return guard.flux("list", mongo.find(Fields.project(listQuery(), f), Task.class))
+                .collectList()
+                .map(found -> {
+                    long h = ETags.SEED;
+                    List<TaskDto> body = new ArrayList<>(found.size());
+                    for (Task t : found) {
+                        h = ETags.mix(h, t.getId(), t.getVersion());
+                        body.add(mapper.toDto(t, f));
+                    }
+                    return new Tagged<>(Fields.tag(ETags.collection("tasks", h), f), body);
+                });
+    }
+
+    public Mono<Tagged<TaskDto>> get(String id, String fields) {
+        Set<String> f = Fields.parse(fields, Fields.TASK);
+        if (f == null)
+            return get(id).map(d -> new Tagged<>(ETags.of(d), d));
+        return guard.mono("findOne", mongo.findOne(Fields.project(new Query(where("id").is(id)), f), Task.class))
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+                .map(t -> new Tagged<>(Fields.tag(ETags.of(t.getId(), t.getVersion()), f), mapper.toDto(t, f)));
+    }
+
+    // The id is assigned up front so the task's edges can be reserved in the graph before it is saved.
     public Mono<TaskDto> create(TaskCreateRequest req) {
         Task t = mapper.fromCreate(req);
-        return tasks.save(t).map(mapper::toDto);
+        t.setId(new ObjectId().toHexString());
+        return graphReady()
+                .then(TenantContext.current())
+                .flatMap(tenant -> {
+                    Runnable rollback = graph.reserve(tenant, t.getId(), t.getDependsOn(), t.getStatus() == TaskStatus.DONE);
+                    return tasks.save(t).doOnError(e -> rollback.run());
+                })
+                .flatMap(this::tracked).map(mapper::toDto)
+                .flatMap(d -> changed(TaskEvent.Type.CREATED, d.getId(), null, d).thenReturn(d));
     }
 
     public Mono<TaskDto> update(String id, TaskUpdateRequest req) {
-        return tasks.findById(id)
+        return graphReady()
+                .then(Mono.defer(() -> lookups.findTask(id)))
                 .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
-                .flatMap(t -> tasks.save(mapper.merge(t, req)))
-                .map(mapper::toDto);
+                .zipWith(TenantContext.current())
+                .flatMap(loaded -> {
+                    Task t = loaded.getT1();
+                    TaskDto before = mapper.toDto(t);
+                    Task merged = mapper.merge(t, req);
+                    Runnable rollback = graph.reserve(loaded.getT2(), merged.getId(), merged.getDependsOn(),
+                            merged.getStatus() == TaskStatus.DONE);
+                    return save(merged)
+                            .doOnError(e -> rollback.run())
+                            .flatMap(s -> audited(TaskEvent.Type.UPDATED, before, s));
+                })
+                .retryWhen(CONFLICTS);
     }
 
+    // A task other tasks depend on is not deleted, so no task is left with a dependency that is gone.
     public Mono<Void> delete(String id) {
-        return tasks.findById(id)
+        return graphReady()
+                .then(Mono.defer(() -> lookups.findTask(id)))
                 .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
-                .flatMap(tasks::delete);
+                .zipWith(TenantContext.current())
+                .flatMap(loaded -> {
+                    Task t = loaded.getT1();
+                    String tenant = loaded.getT2();
+                    Runnable rollback;
+                    try {
+                        rollback = graph.reserveRemoval(tenant, t.getId());
+                    } catch (IllegalStateException e) {
+                        return Mono.error(new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage()));
+                    }
+                    return tasks.delete(t)
+                            .doOnError(e -> rollback.run())
+                            .then(Mono.fromRunnable(() -> dueDates.forget(tenant, t.getId())))
+                            .then(changed(TaskEvent.Type.DELETED, t.getId(), mapper.toDto(t), null));
+                });
+    }
+
+    public Flux<TaskEventDto> history(String id) {
+        return events.findByTaskIdOrderByAtDesc(id).map(mapper::toDto);
+    }
+
+    public Flux<TaskDto> ready() {
+        return TenantContext.current()
+                .flatMapMany(tenant -> tasks.findAllById(graph.ready(tenant)))
+                .map(mapper::toDto);
+    }
+
+    public Flux<TaskDto> next(String assigneeId, int k) {
+        if (k < 1 || k > MAX_NEXT)
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "k must be between 1 and " + MAX_NEXT));
+        return lookups.userExists(assigneeId)
+                .filter(Boolean::booleanValue)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "user")))
+                .thenMany(tasks.findByAssigneeIdAndStatusInOrderByPriorityDesc(assigneeId, OPEN_STATUSES, Limit.of(k)))
+                .map(mapper::toDto);
+    }
+
+    // Writes that validate dependencies wait for this, so a task is never rejected for depending on one
+    // the graph has not loaded yet. A failed load is retried until it succeeds.
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadGraph() {
+        Query q = new Query();
+        q.fields().include("status").include("dependsOn");
+        Flux.fromIterable(tenants.tenants())
+                .concatMap(tenant -> mongo.find(q, Task.class)
+                        .doOnNext(t -> graph.put(tenant, t.getId(), t.getDependsOn(), t.getStatus() == TaskStatus.DONE))
+                        .contextWrite(TenantContext.with(tenant)))
+                .count()
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(r -> log.error("task dependency graph load failed, retrying", r.failure())))
+                .subscribe(n -> {
+                    log.info("task dependency graph loaded with {} tasks", n);
+                    graphLoaded.tryEmitEmpty();
+                });
     }
 
+    private Mono<Void> graphReady() {
+        return graphLoaded.asMono().timeout(GRAPH_WAIT, Mono.error(() ->
+                new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "task dependencies are still loading")));
+    }
+
+    // Assigning to the current assignee, or unassigning an unassigned task, changes and records nothing,
+    // so a partition job that runs again after its owner lost the lease does not repeat the event.
     public Mono<TaskDto> assign(String taskId, String assigneeId) {
         if (assigneeId == null || assigneeId.isBlank())
             return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "assigneeId is blank"));
 
-        return users.existsById(assigneeId)
+        return lookups.userExists(assigneeId)
                 .filter(Boolean::booleanValue)
                 .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "user")))
-                .then(tasks.findById(taskId)
-                        .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "task"))))
-                .flatMap(t -> {
-                    t.setAssigneeId(assigneeId);
-                    return tasks.save(t);
-                })
-                .map(mapper::toDto);
+                .then(Mono.defer(() -> lookups.findTask(taskId))
+                        .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "task")))
+                        .flatMap(t -> {
+                            if (assigneeId.equals(t.getAssigneeId()))
+                                return Mono.just(mapper.toDto(t));
+                            TaskDto before = mapper.toDto(t);
+                            t.setAssigneeId(assigneeId);
+                            return save(t).flatMap(s -> audited(TaskEvent.Type.ASSIGNED, before, s));
+                        })
+                        .retryWhen(CONFLICTS));
     }
 
     public Mono<TaskDto> unassign(String taskId) {
-        return tasks.findById(taskId)
+        return Mono.defer(() -> lookups.findTask(taskId))
                 .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
                 .flatMap(t -> {
+                    if (t.getAssigneeId() == null)
+                        return Mono.just(mapper.toDto(t));
+                    TaskDto before = mapper.toDto(t);
                     t.setAssigneeId(null);
-                    return tasks.save(t);
+                    return save(t).flatMap(s -> audited(TaskEvent.Type.UNASSIGNED, before, s));
                 })
-                .map(mapper::toDto);
+                .retryWhen(CONFLICTS);
+    }
+
+    private Query listQuery() {
+        return new Query().withReadPreference(mongoProps.listReads());
+    }
+
+    // @Version makes the save conditional on the version that was read; a concurrent write fails it
+    // with OptimisticLockingFailureException, which the API reports as 409.
+    private Mono<Task> save(Task t) {
+        return tasks.save(t).flatMap(this::tracked);
+    }
+
+    private static String id(BsonValue v) {
+        if (v == null)
+            return null;
+        return v.isObjectId() ? v.asObjectId().getValue().toHexString() : v.isString() ? v.asString().getValue() : v.toString();
+    }
+
+    private static Long version(BsonValue v) {
+        return v != null && v.isNumber() ? v.asNumber().longValue() : null;
+    }
+
+    private Mono<TaskDto> audited(TaskEvent.Type type, TaskDto before, Task saved) {
+        TaskDto after = mapper.toDto(saved);
+        return changed(type, saved.getId(), before, after).thenReturn(after);
+    }
+
+    private Mono<Void> changed(TaskEvent.Type type, String taskId, TaskDto before, TaskDto after) {
+        return audit.record(type, taskId, before, after)
+                .then(TenantContext.current())
+                .doOnNext(tenant -> publisher.publishEvent(new TaskChangedEvent(tenant, type, before, after)))
+                .then();
+    }
+
+    private Mono<Task> tracked(Task t) {
+        return TenantContext.current().map(tenant -> {
+            graph.put(tenant, t.getId(), t.getDependsOn(), t.getStatus() == TaskStatus.DONE);
+            dueDates.track(tenant, t);
+            return t;
+        });
     }
 
+    // Each async change holds one of the tenant's permits from start to finish, queued fairly with the
+    // tenant's other work; the reads and writes it makes reuse that permit.
     @Async("taskAssignExecutor")
-    public CompletableFuture<TaskDto> assignAsync(String taskId, String assigneeId) {
+    public CompletableFuture<TaskDto> assignAsync(String taskId, String assigneeId, String tenant) {
         log.info("assignAsync called on thread {}", Thread.currentThread().getName());
-        return assign(taskId, assigneeId).toFuture();
+        return limiter.run(tenant, assign(taskId, assigneeId)).contextWrite(TenantContext.with(tenant)).toFuture();
     }
 
     @Async("taskAssignExecutor")
-    public CompletableFuture<TaskDto> unassignAsync(String taskId) {
+    public CompletableFuture<TaskDto> unassignAsync(String taskId, String tenant) {
         log.info("unassignAsync called on thread {}", Thread.currentThread().getName());
-        return unassign(taskId).toFuture();
+        return limiter.run(tenant, unassign(taskId)).contextWrite(TenantContext.with(tenant)).toFuture();
     }
 
     @Async("taskAssignExecutor")
-    public CompletableFuture<TaskDto> assignAsyncWithDelay(String taskId, String assigneeId, long delayMs) {
+    public CompletableFuture<TaskDto> assignAsyncWithDelay(String taskId, String assigneeId, String tenant, long delayMs) {
         log.info("assignAsyncWithDelay({}) sleeping {} ms on {}", taskId, delayMs, Thread.currentThread().getName());
-        return Mono.delay(Duration.ofMillis(delayMs)).then(assign(taskId, assigneeId)).toFuture();
+        return Mono.delay(Duration.ofMillis(delayMs)).then(limiter.run(tenant, assign(taskId, assigneeId)))
+                .contextWrite(TenantContext.with(tenant))
+                .toFuture();
     }
 }
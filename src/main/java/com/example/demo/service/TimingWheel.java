@@ -0,0 +1,111 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hierarchical timing wheel keyed by string. Level {@code L} buckets span {@code wheelSize^L} ticks, so
+ * scheduling and cancelling are O(1) and each tick only touches entries that are due or cascading down.
+ */
+final class TimingWheel<T> {
+    static final class Entry<T> {
+        final String key;
+        final long deadlineTick;
+        final T payload;
+        boolean cancelled;
+
+        Entry(String key, long deadlineTick, T payload) {
+            this.key = key;
+            this.deadlineTick = deadlineTick;
+            this.payload = payload;
+        }
+    }
+
+    private final long tickMs;
+    private final int wheelSize;
+    private final long[] spans;
+    private final List<List<Entry<T>>> buckets;
+    private final Map<String, Entry<T>> byKey = new HashMap<>();
+    private long currentTick;
+
+    TimingWheel(long tickMs, int wheelSize, int levels, long startMs) {
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.spans = new long[levels];
+        this.buckets = new ArrayList<>(levels * wheelSize);
+        long span = 1;
+        for (int l = 0; l < levels; l++) {
+            spans[l] = span;
+            span *= wheelSize;
+        }
+        for (int i = 0; i < levels * wheelSize; i++)
+            buckets.add(new ArrayList<>());
+        this.currentTick = startMs / tickMs;
+    }
+
+    long horizonMs() {
+        return spans[spans.length - 1] * wheelSize * tickMs;
+    }
+
+    synchronized boolean schedule(String key, long deadlineMs, T payload) {
+        cancel(key);
+        long deadlineTick = Math.max(deadlineMs / tickMs, currentTick + 1);
+        Entry<T> e = new Entry<>(key, deadlineTick, payload);
+        if (!place(e))
+            return false;
+        byKey.put(key, e);
+        return true;
+    }
+
+    synchronized void cancel(String key) {
+        Entry<T> old = byKey.remove(key);
+        if (old != null)
+            old.cancelled = true;
+    }
+
+    synchronized int size() {
+        return byKey.size();
+    }
+
+    synchronized List<T> advance(long nowMs) {
+        List<T> due = new ArrayList<>();
+        long target = nowMs / tickMs;
+        while (currentTick < target) {
+            currentTick++;
+            for (int l = spans.length - 1; l >= 1; l--)
+                if (currentTick % spans[l] == 0)
+                    cascade(bucket(l, (int) ((currentTick / spans[l]) % wheelSize)));
+            List<Entry<T>> slot = bucket(0, (int) (currentTick % wheelSize));
+            for (Entry<T> e : slot)
+                if (!e.cancelled && byKey.remove(e.key) == e)
+                    due.add(e.payload);
+            slot.clear();
+        }
+        return due;
+    }
+
+    private void cascade(List<Entry<T>> bucket) {
+        List<Entry<T>> moving = new ArrayList<>(bucket);
+        bucket.clear();
+        for (Entry<T> e : moving)
+            if (!e.cancelled)
+                place(e);
+    }
+
+    private boolean place(Entry<T> e) {
+        for (int l = 0; l < spans.length; l++) {
+            long slot = e.deadlineTick / spans[l];
+            if (slot - currentTick / spans[l] < wheelSize) {
+                bucket(l, (int) (slot % wheelSize)).add(e);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<Entry<T>> bucket(int level, int slot) {
+        return buckets.get(level * wheelSize + slot);
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Task;
+import com.example.demo.entity.TaskEvent;
+import com.example.demo.entity.User;
+import com.example.demo.entity.UserDashboard;
+import com.example.demo.repository.UserDashboardRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.tenant.TenantContext;
+import com.example.demo.tenant.TenantProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+// Maintains one user_dashboards document per user by tailing the task_events capped collection.
+// Every event recomputes the affected users' task ids and status counts from the tasks collection
+// and pushes the event onto their recent activity unless its id is already there, so replaying an
+// event is harmless. Delivery is at-least-once: the checkpoint is written after the event is applied,
+// and on restart the stream resumes app.dashboard.replay-window before it.
+// How far each tenant's dashboards may trail the writes is measured every app.dashboard.staleness-check;
+// reads use them only while that stays within app.dashboard.max-staleness.
+@Component
+public class UserDashboardProjector {
+
+    private static final Logger log = LoggerFactory.getLogger(UserDashboardProjector.class);
+    private static final String CHECKPOINTS = "projection_checkpoints";
+    private static final String NAME = "user_dashboards";
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(1);
+
+    private final ReactiveMongoTemplate mongo;
+    private final UserRepository users;
+    private final UserDashboardRepository dashboards;
+    private final TenantProperties tenants;
+    private final int recentSize;
+    private final Duration replayWindow;
+    private final Duration maxStaleness;
+    private final Duration stalenessCheck;
+    private final int maxRetries;
+    private final Timer lag;
+    private final AtomicLong stalenessMillis = new AtomicLong();
+    private final Map<String, Instant> applied = new ConcurrentHashMap<>();
+    private final Map<String, Long> behindMillis = new ConcurrentHashMap<>();
+    private final Map<String, Disposable> streams = new ConcurrentHashMap<>();
+
+    public UserDashboardProjector(ReactiveMongoTemplate mongo, UserRepository users, UserDashboardRepository dashboards,
+                                  TenantProperties tenants, MeterRegistry registry,
+                                  @Value("${app.dashboard.recent-size:20}") int recentSize,
+                                  @Value("${app.dashboard.replay-window:30s}") Duration replayWindow,
+                                  @Value("${app.dashboard.max-staleness:5s}") Duration maxStaleness,
+                                  @Value("${app.dashboard.staleness-check:1s}") Duration stalenessCheck,
+                                  @Value("${app.dashboard.max-retries:10}") int maxRetries) {
+        this.mongo = mongo;
+        this.users = users;
+        this.dashboards = dashboards;
+        this.tenants = tenants;
+        this.recentSize = recentSize;
+        this.replayWindow = replayWindow;
+        this.maxStaleness = maxStaleness;
+        this.stalenessCheck = stalenessCheck;
+        this.maxRetries = maxRetries;
+        this.lag = Timer.builder("dashboard.projection.lag").register(registry);
+        TimeGauge.builder("dashboard.projection.staleness", stalenessMillis, TimeUnit.MILLISECONDS, AtomicLong::get)
+                .register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        for (String tenant : tenants.tenants())
+            follow(tenant);
+        Flux.interval(stalenessCheck)
+                .concatMap(i -> Flux.fromIterable(tenants.tenants()).concatMap(this::measure))
+                .subscribe();
+    }
+
+    // Starts the tenant's stream unless it is running. The stream gives up after app.dashboard.max-retries
+    // consecutive failures; reads then bypass the dashboards until it is started again.
+    private void follow(String tenant) {
+        streams.compute(tenant, (t, running) -> running != null && !running.isDisposed() ? running
+                : resume().flatMap(from -> follow(tenant, from))
+                        .contextWrite(TenantContext.with(tenant))
+                        .doFinally(s -> applied.remove(tenant))
+                        .subscribe(null, e -> log.error("dashboard projection for tenant {} stopped, reads bypass it", tenant, e)));
+    }
+
+    // Ids are collected first so the users cursor gives its tenant permit back before the projections,
+    // which need permits of their own, start.
+    public Mono<Long> rebuild() {
+        return users.findAll()
+                .map(User::getId)
+                .collectList()
+                .flatMapMany(Flux::fromIterable)
+                .flatMap(id -> project(id, null), 8)
+                .count()
+                .doOnNext(n -> log.info("rebuilt {} user dashboards", n));
+    }
+
+    // Rebuilds every tenant's dashboards and restarts streams that gave up.
+    public Mono<Map<String, Long>> rebuildAll() {
+        return Flux.fromIterable(tenants.tenants())
+                .concatMap(tenant -> rebuild()
+                        .doOnNext(n -> follow(tenant))
+                        .map(n -> Map.entry(tenant, n))
+                        .contextWrite(TenantContext.with(tenant)))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue, LinkedHashMap::new);
+    }
+
+    // True while the tenant's dashboards trail the writes by at most app.dashboard.max-staleness.
+    public boolean serves(String tenant) {
+        Long behind = behindMillis.get(tenant);
+        return behind != null && behind <= maxStaleness.toMillis();
+    }
+
+    // Task ids and counts are set and the activity pushed in two single-document updates, so a
+    // concurrent projection for the same user cannot overwrite the other's activity.
+    public Mono<Void> project(String userId, UserDashboard.Activity activity) {
+        Query q = new Query(where("assigneeId").is(userId));
+        q.fields().include("status");
+        Query dashboard = new Query(where("id").is(userId));
+        return users.findById(userId)
+                .flatMap(u -> mongo.find(q, Task.class).collectList()
+                        .flatMap(found -> mongo.upsert(dashboard, summary(u, found), UserDashboard.class))
+                        .then(activity == null ? Mono.empty() : mongo.updateFirst(
+                                new Query(where("id").is(userId).and("recent.eventId").ne(activity.getEventId())),
+                                new Update().push("recent")
+                                        .sort(Sort.by(Sort.Direction.DESC, "at"))
+                                        .slice(recentSize)
+                                        .each(activity),
+                                UserDashboard.class))
+                        .thenReturn(u))
+                .switchIfEmpty(Mono.defer(() -> dashboards.deleteById(userId).then(Mono.<User>empty())))
+                .then();
+    }
+
+    // Profile changes only touch the user's own fields, leaving task data to the event stream.
+    public Mono<Void> user(User u) {
+        Update update = new Update()
+                .set("name", u.getName())
+                .set("email", u.getEmail())
+                .set("version", u.getVersion())
+                .set("updatedAt", Instant.now());
+        return mongo.upsert(new Query(where("id").is(u.getId())), update, UserDashboard.class).then();
+    }
+
+    public Mono<Void> remove(String userId) {
+        return dashboards.deleteById(userId);
+    }
+
+    private Mono<Instant> resume() {
+        Instant now = Instant.now();
+        return checkpoint()
+                .flatMap(cp -> edgeEvent(1)
+                        .filter(oldest -> oldest.isAfter(cp))
+                        .map(oldest -> Optional.<Instant>empty())
+                        .defaultIfEmpty(Optional.of(cp)))
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(cp -> cp.isPresent() ? Mono.just(cp.get()) : rebuild().thenReturn(now));
+    }
+
+    private Mono<Void> follow(String tenant, Instant from) {
+        AtomicReference<Instant> since = new AtomicReference<>(from);
+        applied.put(tenant, from);
+        return Flux.defer(() -> mongo.tail(new Query(where("at").gte(since.get().minus(replayWindow))), TaskEvent.class))
+                .concatMap(e -> apply(e)
+                        .then(mongo.upsert(new Query(where("_id").is(NAME)), new Update().max("at", e.getAt()), CHECKPOINTS))
+                        .then(Mono.fromRunnable(() -> applied.put(tenant,
+                                since.accumulateAndGet(e.getAt(), (a, b) -> a.isAfter(b) ? a : b)))))
+                .repeatWhen(done -> done.delayElements(RETRY_DELAY))
+                .retryWhen(Retry.backoff(maxRetries, RETRY_DELAY)
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .transientErrors(true)
+                        .doBeforeRetry(s -> {
+                            applied.remove(tenant);
+                            log.warn("dashboard projection failed, resuming", s.failure());
+                        })
+                        .doAfterRetry(s -> applied.put(tenant, since.get())))
+                .then();
+    }
+
+    // Behind is zero when no event is newer than the last applied one. Otherwise it is bounded by the
+    // time since that event: every unapplied event was written after it.
+    private Mono<Void> measure(String tenant) {
+        Instant at = applied.get(tenant);
+        if (at == null) {
+            behindMillis.remove(tenant);
+            return Mono.empty();
+        }
+        return edgeEvent(-1)
+                .map(newest -> newest.isAfter(at) ? Duration.between(at, Instant.now()).toMillis() : 0L)
+                .defaultIfEmpty(0L)
+                .doOnNext(ms -> behindMillis.put(tenant, ms))
+                .then()
+                .onErrorResume(e -> {
+                    behindMillis.remove(tenant);
+                    return Mono.empty();
+                })
+                .contextWrite(TenantContext.with(tenant));
+    }
+
+    private Mono<Void> apply(TaskEvent e) {
+        Set<String> affected = new LinkedHashSet<>();
+        addAssignee(affected, e.getBefore());
+        addAssignee(affected, e.getAfter());
+        Query current = new Query(where("id").is(e.getTaskId()));
+        current.fields().include("assigneeId");
+        UserDashboard.Activity activity = new UserDashboard.Activity();
+        activity.setEventId(e.getId());
+        activity.setTaskId(e.getTaskId());
+        activity.setType(e.getType().name());
+        activity.setAt(e.getAt());
+        return mongo.findOne(current, Task.class)
+                .doOnNext(t -> {
+                    if (t.getAssigneeId() != null)
+                        affected.add(t.getAssigneeId());
+                })
+                .thenMany(Flux.defer(() -> Flux.fromIterable(affected)))
+                .concatMap(userId -> project(userId, activity))
+                .then(Mono.fromRunnable(() -> {
+                    Duration behind = Duration.between(e.getAt(), Instant.now());
+                    lag.record(behind);
+                    stalenessMillis.set(behind.toMillis());
+                }));
+    }
+
+    private static Update summary(User u, List<Task> tasks) {
+        List<String> ids = new ArrayList<>(tasks.size());
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (Task t : tasks) {
+            ids.add(t.getId());
+            counts.merge(t.getStatus() != null ? t.getStatus().name() : "NONE", 1, Integer::sum);
+        }
+        return new Update()
+                .set("name", u.getName())
+                .set("email", u.getEmail())
+                .set("version", u.getVersion())
+                .set("taskIds", ids)
+                .set("statusCounts", counts)
+                .setOnInsert("recent", List.of())
+                .set("updatedAt", Instant.now());
+    }
+
+    private Mono<Instant> checkpoint() {
+        return mongo.findById(NAME, Document.class, CHECKPOINTS).mapNotNull(d -> d.getDate("at")).map(Date::toInstant);
+    }
+
+    private Mono<Instant> edgeEvent(int order) {
+        return mongo.getCollection(mongo.getCollectionName(TaskEvent.class))
+                .flatMap(c -> Mono.from(c.find().sort(new Document("$natural", order)).first()))
+                .mapNotNull(d -> d.getDate("at"))
+                .map(Date::toInstant);
+    }
+
+    private static void addAssignee(Set<String> affected, Map<String, Object> fields) {
+        if (fields != null && fields.get("assigneeId") instanceof String id)
+            affected.add(id);
+    }
+}
@@ -1,63 +1,185 @@
 package com.example.demo.service;
 
+import com.example.demo.config.MongoTuningProperties;
 import com.example.demo.dto.UserCreateRequest;
+import com.example.demo.dto.UserDashboardDto;
 import com.example.demo.dto.UserDto;
 import com.example.demo.dto.UserUpdateRequest;
+import com.example.demo.entity.Task;
 import com.example.demo.entity.User;
+import com.example.demo.entity.UserDashboard;
 import com.example.demo.mapper.UserMapper;
 import com.example.demo.repository.TaskRepository;
+import com.example.demo.repository.UserDashboardRepository;
 import com.example.demo.repository.UserRepository;
+import com.example.demo.resilience.ResilientRepositories;
+import com.example.demo.resilience.StoreGuard;
+import com.example.demo.tenant.TenantContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+import reactor.util.retry.Retry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
 
 @Service
 public class UserService {
     private final UserRepository users;
     private final TaskRepository tasks;
     private final UserMapper mapper;
+    private final BatchLookups lookups;
+    private final ReactiveMongoTemplate mongo;
+    private final MongoTuningProperties mongoProps;
+    private final SingleFlight<String, UserDto> loads;
+    private final UserDashboardRepository dashboards;
+    private final UserDashboardProjector projector;
+    private final boolean dashboardReads;
+    private final StoreGuard guard;
 
-    public UserService(UserRepository users, TaskRepository tasks, UserMapper mapper) {
+    public UserService(UserRepository users, TaskRepository tasks, UserMapper mapper, BatchLookups lookups,
+                       ReactiveMongoTemplate mongo, MongoTuningProperties mongoProps, ResilientRepositories guards,
+                       MeterRegistry meterRegistry, UserDashboardRepository dashboards,
+                       UserDashboardProjector projector,
+                       @Value("${app.dashboard.serve-reads:true}") boolean dashboardReads) {
         this.users = users;
         this.tasks = tasks;
         this.mapper = mapper;
+        this.lookups = lookups;
+        this.mongo = mongo;
+        this.mongoProps = mongoProps;
+        this.loads = new SingleFlight<>("users.get", meterRegistry);
+        this.dashboards = dashboards;
+        this.projector = projector;
+        this.dashboardReads = dashboardReads;
+        this.guard = guards.guard("users");
     }
 
+    // Template reads go through the users repository's guard, so they time out and trip the same breaker.
+    // The users are read to the end before their task ids are looked up: the cursor holds a tenant permit
+    // until it is exhausted, and the lookups need permits of their own.
     public Flux<UserDto> list() {
-        return users.findAll().flatMap(this::withTaskIds);
+        return guard.flux("list", mongo.find(listQuery(), User.class))
+                .collectList()
+                .flatMapMany(Flux::fromIterable)
+                .flatMap(this::withTaskIds);
     }
 
     public Mono<UserDto> get(String id) {
-        return users.findById(id)
+        return get(id, false);
+    }
+
+    // Served from the user's dashboard while the projection is within app.dashboard.max-staleness,
+    // unless the caller asks for a fresh read; otherwise from users and tasks.
+    public Mono<UserDto> get(String id, boolean fresh) {
+        return TenantContext.current().flatMap(tenant -> loads.execute(tenant + "/" + id + (fresh ? "/fresh" : ""),
+                () -> fromDashboard(tenant, id, fresh).map(mapper::toDto)
+                        .switchIfEmpty(Mono.defer(() -> lookups.findUser(id)
+                                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+                                .flatMap(this::withTaskIds)))));
+    }
+
+    public Mono<UserDashboardDto> dashboard(String id) {
+        return dashboards.findById(id)
                 .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
-                .flatMap(this::withTaskIds);
+                .map(mapper::toDashboardDto);
+    }
+
+    public Mono<Tagged<List<UserDto>>> list(String fields) {
+        Set<String> f = Fields.parse(fields, Fields.USER);
+        return guard.flux("list", mongo.find(Fields.project(listQuery(), f), User.class))
+                .collectList()
+                .flatMapMany(Flux::fromIterable)
+                .flatMapSequential(u -> withTaskIds(u, f).map(d -> Tuples.of(u, d)))
+                .collectList()
+                .map(found -> {
+                    long h = ETags.SEED;
+                    List<UserDto> body = new ArrayList<>(found.size());
+                    for (Tuple2<User, UserDto> t : found) {
+                        h = ETags.mix(ETags.mix(h, t.getT1().getId(), t.getT1().getVersion()), t.getT2().getTaskIds());
+                        body.add(t.getT2());
+                    }
+                    return new Tagged<>(Fields.tag(ETags.collection("users", h), f), body);
+                });
+    }
+
+    public Mono<Tagged<UserDto>> get(String id, String fields) {
+        return get(id, fields, false);
+    }
+
+    // Reads from the same source as get(id, fresh), so a selection never disagrees with the full user.
+    public Mono<Tagged<UserDto>> get(String id, String fields, boolean fresh) {
+        Set<String> f = Fields.parse(fields, Fields.USER);
+        if (f == null)
+            return get(id, fresh).map(d -> new Tagged<>(ETags.of(d), d));
+        Mono<Tagged<UserDto>> stored = guard.mono("findOne", mongo.findOne(Fields.project(new Query(where("id").is(id)), f), User.class))
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+                .flatMap(u -> withTaskIds(u, f)
+                        .map(d -> new Tagged<>(Fields.tag(ETags.of(u.getId(), u.getVersion(), d.getTaskIds()), f), d)));
+        return TenantContext.current().flatMap(tenant -> fromDashboard(tenant, id, fresh)
+                .map(b -> {
+                    UserDto d = mapper.toDto(b);
+                    if (!Fields.includes(f, "taskIds"))
+                        d.setTaskIds(null);
+                    d.project(f);
+                    return new Tagged<>(Fields.tag(ETags.of(b.getId(), b.getVersion(), d.getTaskIds()), f), d);
+                })
+                .switchIfEmpty(stored));
     }
 
     public Mono<UserDto> create(UserCreateRequest req) {
-        return users.save(mapper.fromCreate(req)).flatMap(this::withTaskIds);
+        return users.save(mapper.fromCreate(req))
+                .flatMap(u -> projector.project(u.getId(), null).thenReturn(u))
+                .flatMap(this::withTaskIds);
     }
 
     public Mono<UserDto> update(String id, UserUpdateRequest req) {
-        return users.findById(id)
+        return Mono.defer(() -> lookups.findUser(id))
                 .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
                 .flatMap(u -> users.save(mapper.merge(u, req)))
+                .retryWhen(Retry.max(2).filter(OptimisticLockingFailureException.class::isInstance))
+                .flatMap(u -> projector.user(u).thenReturn(u))
                 .flatMap(this::withTaskIds);
     }
 
     public Mono<Void> delete(String id) {
-        return users.findById(id)
+        return lookups.findUser(id)
                 .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
-                .flatMap(users::delete);
+                .flatMap(u -> users.delete(u).then(projector.remove(u.getId())));
+    }
+
+    private Mono<UserDashboard> fromDashboard(String tenant, String id, boolean fresh) {
+        return dashboardReads && !fresh && projector.serves(tenant) ? dashboards.findById(id) : Mono.empty();
+    }
+
+    private Query listQuery() {
+        return new Query().withReadPreference(mongoProps.listReads());
     }
 
     private Mono<UserDto> withTaskIds(User u) {
-        return tasks.findAllByAssigneeId(u.getId())
-                .map(t -> t.getId())
+        return withTaskIds(u, null);
+    }
+
+    private Mono<UserDto> withTaskIds(User u, Set<String> fields) {
+        var d = mapper.toDto(u, fields);
+        if (!Fields.includes(fields, "taskIds"))
+            return Mono.just(d);
+        return tasks.findIdsByAssigneeId(u.getId())
+                .map(Task::getId)
                 .collectList()
                 .map(ids -> {
-                    var d = mapper.toDto(u);
                     d.setTaskIds(ids);
                     return d;
                 });
@@ -0,0 +1,164 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.InboxEventDto;
+import com.example.demo.dto.TaskDto;
+import com.example.demo.dto.TaskEventDto;
+import com.example.demo.dto.UserDto;
+import com.example.demo.entity.Task;
+import com.example.demo.entity.User;
+import com.example.demo.tenant.TenantContext;
+import com.example.demo.tenant.TenantProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.ReactiveHealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs read-only traffic through the services after startup so connection pools, serializers and
+// JIT-compiled paths are warm before the readiness probe reports UP.
+@Component("warmup")
+public class WarmUp implements ReactiveHealthIndicator {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmUp.class);
+    private static final int SAMPLE = 20;
+
+    private final TaskService taskService;
+    private final UserService userService;
+    private final ReactiveMongoTemplate mongo;
+    private final ObjectMapper json;
+    private final TenantProperties tenants;
+    private final boolean enabled;
+    private final int connections;
+    private final int iterations;
+    private final Duration timeout;
+    private final AtomicLong warmupMillis = new AtomicLong();
+    private final AtomicLong readyMillis = new AtomicLong();
+    private volatile boolean done;
+
+    public WarmUp(TaskService taskService, UserService userService, ReactiveMongoTemplate mongo, ObjectMapper json,
+                  TenantProperties tenants, MeterRegistry registry,
+                  @Value("${app.warmup.enabled:true}") boolean enabled,
+                  @Value("${app.warmup.connections:10}") int connections,
+                  @Value("${app.warmup.iterations:200}") int iterations,
+                  @Value("${app.warmup.timeout:60s}") Duration timeout) {
+        this.taskService = taskService;
+        this.userService = userService;
+        this.mongo = mongo;
+        this.json = json;
+        this.tenants = tenants;
+        this.enabled = enabled;
+        this.connections = connections;
+        this.iterations = iterations;
+        this.timeout = timeout;
+        TimeGauge.builder("startup.warmup.time", warmupMillis, TimeUnit.MILLISECONDS, AtomicLong::get).register(registry);
+        TimeGauge.builder("startup.ready.time", readyMillis, TimeUnit.MILLISECONDS, AtomicLong::get).register(registry);
+    }
+
+    @Override
+    public Mono<Health> health() {
+        return Mono.just(done ? Health.up().build() : Health.outOfService().withDetail("warmup", "running").build());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            finish(0);
+            return;
+        }
+        long t0 = System.nanoTime();
+        serializers();
+        Flux.fromIterable(tenants.tenants())
+                .concatMap(tenant -> pool().then(reads()).contextWrite(TenantContext.with(tenant)))
+                .then()
+                .timeout(timeout)
+                .doOnError(e -> log.warn("warm-up did not complete, reporting ready anyway", e))
+                .onErrorComplete()
+                .doFinally(s -> finish(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0)))
+                .subscribe();
+    }
+
+    private void finish(long millis) {
+        warmupMillis.set(millis);
+        readyMillis.set(System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime());
+        done = true;
+        log.info("ready {} ms after JVM start (warm-up {} ms)", readyMillis.get(), millis);
+    }
+
+    // Opens connections up to the pool's working size by running pings concurrently.
+    private Mono<Void> pool() {
+        return Flux.range(0, connections)
+                .flatMap(i -> mongo.executeCommand(new Document("ping", 1)), connections)
+                .then();
+    }
+
+    // Every call is bounded: the sample is read with a limit, and each round only touches those ids, so
+    // the cost does not grow with the collections. Full list calls would scan them on every round.
+    private Mono<Void> reads() {
+        Mono<List<Task>> tasks = mongo.find(sample("assigneeId"), Task.class).collectList();
+        Mono<List<User>> users = mongo.find(sample(), User.class).collectList();
+        return Mono.zip(tasks, users).flatMap(s -> Flux.range(0, iterations)
+                .concatMap(i -> round(s.getT1(), s.getT2(), i))
+                .then());
+    }
+
+    private static Query sample(String... fields) {
+        Query q = new Query().limit(SAMPLE);
+        q.fields().include("id").include(fields);
+        return q;
+    }
+
+    private Mono<Void> round(List<Task> tasks, List<User> users, int i) {
+        Mono<Void> task = tasks.isEmpty() ? Mono.empty() : byTask(tasks.get(i % tasks.size()));
+        Mono<Void> user = users.isEmpty() ? Mono.empty() : byUser(users.get(i % users.size()).getId());
+        return Mono.when(task, user).onErrorComplete();
+    }
+
+    private Mono<Void> byTask(Task t) {
+        return Mono.when(
+                taskService.get(t.getId()).doOnNext(this::write),
+                taskService.get(t.getId(), "id,title,status"),
+                taskService.history(t.getId()).take(SAMPLE),
+                t.getAssigneeId() != null ? taskService.next(t.getAssigneeId(), 10) : Flux.empty());
+    }
+
+    private Mono<Void> byUser(String id) {
+        return Mono.when(
+                userService.get(id).doOnNext(this::write),
+                userService.get(id, "id,name"));
+    }
+
+    private void serializers() {
+        for (Class<?> type : List.of(TaskDto.class, UserDto.class, TaskEventDto.class, InboxEventDto.class)) {
+            try {
+                json.writeValueAsBytes(json.readValue("{}", type));
+            } catch (Exception e) {
+                log.warn("could not warm serializer for {}", type.getSimpleName(), e);
+            }
+        }
+    }
+
+    private void write(Object dto) {
+        try {
+            json.writeValueAsBytes(dto);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
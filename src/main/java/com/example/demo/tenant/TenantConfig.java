@@ -0,0 +1,21 @@
+package com.example.demo.tenant;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Declared here rather than as components so @WebFluxTest slices, which pick up every WebFilter
+// component but no @Configuration, don't need tenant properties to start.
+@Configuration
+public class TenantConfig {
+
+    @Bean
+    public TenantLimiter tenantLimiter(TenantProperties props, MeterRegistry registry) {
+        return new TenantLimiter(props, registry);
+    }
+
+    @Bean
+    public TenantWebFilter tenantWebFilter(TenantProperties props) {
+        return new TenantWebFilter(props);
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.demo.tenant;
+
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+public final class TenantContext {
+    public static final String DEFAULT = "default";
+
+    private static final String KEY = TenantContext.class.getName();
+
+    private TenantContext() {
+    }
+
+    public static Context with(String tenant) {
+        return Context.of(KEY, tenant);
+    }
+
+    public static String of(ContextView ctx) {
+        return ctx.getOrDefault(KEY, DEFAULT);
+    }
+
+    public static Mono<String> current() {
+        return Mono.deferContextual(ctx -> Mono.just(of(ctx)));
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.demo.tenant;
+
+import com.example.demo.entity.IdempotencyRecord;
+import com.example.demo.entity.Task;
+import com.example.demo.entity.User;
+import com.mongodb.client.result.UpdateResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+// Index auto-creation only covers the default database; tenant databases get the same indexes here.
+// Also brings documents from older releases up to the current schema in every tenant database.
+@Component
+public class TenantIndexes {
+
+    private static final Logger log = LoggerFactory.getLogger(TenantIndexes.class);
+    private static final List<Class<?>> ENTITIES = List.of(Task.class, User.class, IdempotencyRecord.class);
+    private static final List<Class<?>> VERSIONED = List.of(Task.class, User.class);
+
+    private final ReactiveMongoTemplate mongo;
+    private final MongoMappingContext mappingContext;
+    private final TenantProperties props;
+
+    public TenantIndexes(ReactiveMongoTemplate mongo, MongoMappingContext mappingContext, TenantProperties props) {
+        this.mongo = mongo;
+        this.mappingContext = mappingContext;
+        this.props = props;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        MongoPersistentEntityIndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+        Flux.fromIterable(props.tenants())
+                .filter(t -> !TenantContext.DEFAULT.equals(t))
+                .concatMap(tenant -> Flux.fromIterable(ENTITIES)
+                        .concatMap(type -> Flux.<IndexDefinition>fromIterable(resolver.resolveIndexFor(type))
+                                .concatMap(def -> mongo.indexOps(type).ensureIndex(def)))
+                        .contextWrite(TenantContext.with(tenant)))
+                .count()
+                .subscribe(n -> log.info("ensured {} tenant indexes", n),
+                        e -> log.error("tenant index creation failed", e));
+    }
+
+    // Tasks and users written before versions were tracked by @Version get version 0, otherwise
+    // their next save would be treated as an insert and fail with a duplicate key.
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillVersions() {
+        Query unversioned = new Query(where("version").exists(false));
+        Flux.fromIterable(props.tenants())
+                .concatMap(tenant -> Flux.fromIterable(VERSIONED)
+                        .concatMap(type -> mongo.updateMulti(unversioned, Update.update("version", 0L), type))
+                        .contextWrite(TenantContext.with(tenant)))
+                .map(UpdateResult::getModifiedCount)
+                .reduce(0L, Long::sum)
+                .subscribe(n -> {
+                            if (n > 0)
+                                log.info("set version 0 on {} unversioned documents", n);
+                        },
+                        e -> log.error("version backfill failed", e));
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.demo.tenant;
+
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.ReactiveCollectionCallback;
+import org.springframework.data.mongodb.core.ReactiveDatabaseCallback;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Every template and repository operation ends up in one of these four methods, so wrapping them puts
+// all Mongo traffic of the application under the tenant's share of the limiter. Tails are the exception:
+// they stay open while idle, so they hold no permit.
+public class TenantLimitedMongoTemplate extends ReactiveMongoTemplate {
+    private final TenantLimiter limiter;
+
+    public TenantLimitedMongoTemplate(ReactiveMongoDatabaseFactory factory, MongoConverter converter, TenantLimiter limiter) {
+        super(factory, converter);
+        this.limiter = limiter;
+    }
+
+    @Override
+    public <T> Flux<T> createFlux(String collectionName, ReactiveCollectionCallback<T> callback) {
+        return Flux.deferContextual(ctx -> limiter.run(TenantContext.of(ctx), super.createFlux(collectionName, callback)));
+    }
+
+    @Override
+    public <T> Mono<T> createMono(String collectionName, ReactiveCollectionCallback<T> callback) {
+        return Mono.deferContextual(ctx -> limiter.run(TenantContext.of(ctx), super.createMono(collectionName, callback)));
+    }
+
+    @Override
+    public <T> Flux<T> createFlux(ReactiveDatabaseCallback<T> callback) {
+        return Flux.deferContextual(ctx -> limiter.run(TenantContext.of(ctx), super.createFlux(callback)));
+    }
+
+    @Override
+    public <T> Mono<T> createMono(ReactiveDatabaseCallback<T> callback) {
+        return Mono.deferContextual(ctx -> limiter.run(TenantContext.of(ctx), super.createMono(callback)));
+    }
+
+    @Override
+    public <T> Flux<T> tail(Query query, Class<T> entityClass, String collectionName) {
+        return super.tail(query, entityClass, collectionName).contextWrite(TenantLimiter.unlimited());
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.demo.tenant;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+// Shares app.tenant.total-concurrency Mongo operations between tenants. A permit is granted at once
+// while any is free, whichever tenant asks, so a lone busy tenant can use all of them. Once callers
+// queue, every freed permit goes to the waiting tenant with the fewest permits per unit of weight, so
+// under contention each tenant converges to its weighted share and a noisy one cannot starve the rest.
+public class TenantLimiter {
+    private static final String HELD = TenantLimiter.class.getName() + ".held";
+    private static final String UNLIMITED = "*";
+
+    private final TenantProperties props;
+    private final MeterRegistry registry;
+    private final int capacity;
+    private final Map<String, Lane> lanes = new HashMap<>();
+    private int inUse;
+    private int queued;
+    private long sequence;
+
+    public TenantLimiter(TenantProperties props, MeterRegistry registry) {
+        this.props = props;
+        this.registry = registry;
+        this.capacity = Math.max(1, props.getTotalConcurrency());
+    }
+
+    // The permit covers the operation until it completes, fails or is cancelled, so a cursor still being
+    // read keeps counting against its tenant. The operation runs with the permit recorded in its context,
+    // and Mongo calls made under that context (an @Async assign, a batch fetched for a caller that holds
+    // one) reuse it instead of queueing for a second permit that the first may be waiting on.
+    public <T> Mono<T> run(String tenant, Mono<T> work) {
+        return Mono.deferContextual(ctx -> holds(ctx, tenant) ? work
+                : Mono.usingWhen(acquire(tenant),
+                        permit -> work.contextWrite(hold(tenant)),
+                        permit -> Mono.fromRunnable(permit::release)));
+    }
+
+    public <T> Flux<T> run(String tenant, Flux<T> work) {
+        return Flux.deferContextual(ctx -> holds(ctx, tenant) ? work
+                : Flux.usingWhen(acquire(tenant),
+                        permit -> work.contextWrite(hold(tenant)),
+                        permit -> Mono.fromRunnable(permit::release)));
+    }
+
+    // True if the subscriber already runs under a permit of the tenant, or under no limit at all.
+    public static boolean holds(ContextView ctx, String tenant) {
+        String held = ctx.getOrDefault(HELD, null);
+        return UNLIMITED.equals(held) || tenant.equals(held);
+    }
+
+    public static Function<Context, Context> hold(String tenant) {
+        return ctx -> ctx.put(HELD, tenant);
+    }
+
+    // For cursors that stay open for the life of the application, such as tails: holding a permit would
+    // take it away from the tenants for good.
+    public static Function<Context, Context> unlimited() {
+        return hold(UNLIMITED);
+    }
+
+    Mono<Permit> acquire(String tenant) {
+        return Mono.create(sink -> {
+            Permit permit = new Permit(tenant);
+            synchronized (this) {
+                Lane lane = lane(tenant);
+                if (inUse < capacity && queued == 0) {
+                    inUse++;
+                    lane.inUse++;
+                } else if (lane.waiters.size() >= props.getMaxQueue()) {
+                    sink.error(new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "tenant concurrency limit"));
+                    return;
+                } else {
+                    lane.waiters.add(new Waiter(sink, permit, sequence++));
+                    queued++;
+                    sink.onCancel(() -> {
+                        boolean waiting;
+                        synchronized (this) {
+                            waiting = lane.waiters.removeIf(w -> w.permit == permit);
+                            if (waiting)
+                                queued--;
+                        }
+                        if (!waiting)
+                            permit.release();
+                    });
+                    return;
+                }
+            }
+            sink.success(permit);
+        });
+    }
+
+    private void release(String tenant) {
+        Waiter next;
+        synchronized (this) {
+            lane(tenant).inUse--;
+            inUse--;
+            next = next();
+            if (next != null) {
+                inUse++;
+                lane(next.permit.tenant).inUse++;
+            }
+        }
+        if (next != null)
+            next.sink.success(next.permit);
+    }
+
+    // Weighted fair choice: lowest in-use/weight, then the longest waiting head.
+    private Waiter next() {
+        Lane best = null;
+        for (Lane lane : lanes.values()) {
+            if (lane.waiters.isEmpty())
+                continue;
+            if (best == null || lane.inUse * best.weight < best.inUse * lane.weight
+                    || lane.inUse * best.weight == best.inUse * lane.weight
+                    && lane.waiters.peek().sequence < best.waiters.peek().sequence)
+                best = lane;
+        }
+        if (best == null)
+            return null;
+        queued--;
+        return best.waiters.poll();
+    }
+
+    private Lane lane(String tenant) {
+        return lanes.computeIfAbsent(tenant, t -> {
+            Lane lane = new Lane(Math.max(1, props.getWeights().getOrDefault(t, 1)));
+            Gauge.builder("tenant.inflight", this, l -> l.inUse(t)).tag("tenant", t).register(registry);
+            Gauge.builder("tenant.queued", this, l -> l.queued(t)).tag("tenant", t).register(registry);
+            return lane;
+        });
+    }
+
+    synchronized int inUse(String tenant) {
+        Lane lane = lanes.get(tenant);
+        return lane == null ? 0 : lane.inUse;
+    }
+
+    synchronized int queued(String tenant) {
+        Lane lane = lanes.get(tenant);
+        return lane == null ? 0 : lane.waiters.size();
+    }
+
+    private static final class Lane {
+        final int weight;
+        final Deque<Waiter> waiters = new ArrayDeque<>();
+        int inUse;
+
+        Lane(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private record Waiter(MonoSink<Permit> sink, Permit permit, long sequence) {
+    }
+
+    final class Permit {
+        private final String tenant;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(String tenant) {
+            this.tenant = tenant;
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true))
+                TenantLimiter.this.release(tenant);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.demo.tenant;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.SimpleReactiveMongoDatabaseFactory;
+import reactor.core.publisher.Mono;
+
+public class TenantMongoDatabaseFactory extends SimpleReactiveMongoDatabaseFactory {
+    private final String defaultDatabase;
+
+    public TenantMongoDatabaseFactory(MongoClient client, String defaultDatabase) {
+        super(client, defaultDatabase);
+        this.defaultDatabase = defaultDatabase;
+    }
+
+    @Override
+    public Mono<MongoDatabase> getMongoDatabase() throws DataAccessException {
+        return Mono.deferContextual(ctx -> getMongoDatabase(databaseFor(TenantContext.of(ctx))));
+    }
+
+    public String databaseFor(String tenant) {
+        return TenantContext.DEFAULT.equals(tenant) ? defaultDatabase : defaultDatabase + "-" + tenant;
+    }
+}
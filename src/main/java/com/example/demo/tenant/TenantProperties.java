@@ -0,0 +1,55 @@
+package com.example.demo.tenant;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+@ConfigurationProperties(prefix = "app.tenant")
+public class TenantProperties {
+    private String header = "X-Tenant-Id";
+    private Map<String, Integer> weights = new LinkedHashMap<>(Map.of(TenantContext.DEFAULT, 1));
+    private int totalConcurrency = 100;
+    private int maxQueue = 200;
+
+    public String getHeader() {
+        return header;
+    }
+
+    public void setHeader(String header) {
+        this.header = header;
+    }
+
+    public Map<String, Integer> getWeights() {
+        return weights;
+    }
+
+    public void setWeights(Map<String, Integer> weights) {
+        this.weights = weights;
+    }
+
+    public int getTotalConcurrency() {
+        return totalConcurrency;
+    }
+
+    public void setTotalConcurrency(int totalConcurrency) {
+        this.totalConcurrency = totalConcurrency;
+    }
+
+    public int getMaxQueue() {
+        return maxQueue;
+    }
+
+    public void setMaxQueue(int maxQueue) {
+        this.maxQueue = maxQueue;
+    }
+
+    public Set<String> tenants() {
+        return weights.keySet();
+    }
+
+    public boolean isKnown(String tenant) {
+        return weights.containsKey(tenant);
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.demo.tenant;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class TenantWebFilter implements WebFilter {
+    private final TenantProperties props;
+
+    public TenantWebFilter(TenantProperties props) {
+        this.props = props;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String tenant = exchange.getRequest().getHeaders().getFirst(props.getHeader());
+        if (tenant == null || tenant.isBlank())
+            tenant = TenantContext.DEFAULT;
+        if (!props.isKnown(tenant))
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "unknown tenant"));
+        return chain.filter(exchange).contextWrite(TenantContext.with(tenant));
+    }
+}
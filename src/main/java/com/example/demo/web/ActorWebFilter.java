@@ -0,0 +1,42 @@
+package com.example.demo.web;
+
+import com.example.demo.event.Actor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// X-Actor-Id is only believed when the connection comes from one of app.actor.trusted-proxies, i.e. the
+// gateway that authenticated the caller and set it. Any other request is recorded under its peer address,
+// so a client cannot put someone else's name into the audit trail.
+@Component
+public class ActorWebFilter implements WebFilter {
+    public static final String HEADER = "X-Actor-Id";
+
+    private final Set<String> trustedProxies;
+
+    public ActorWebFilter(@Value("${app.actor.trusted-proxies:}") String[] trustedProxies) {
+        this.trustedProxies = Arrays.stream(trustedProxies).map(String::trim).filter(s -> !s.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        InetSocketAddress remote = exchange.getRequest().getRemoteAddress();
+        String peer = remote == null ? null
+                : remote.getAddress() != null ? remote.getAddress().getHostAddress() : remote.getHostString();
+        String actor = exchange.getRequest().getHeaders().getFirst(HEADER);
+        if (actor == null || actor.isBlank() || peer == null || !trustedProxies.contains(peer))
+            actor = peer == null ? null : "ip:" + peer;
+        if (actor == null)
+            return chain.filter(exchange);
+        return chain.filter(exchange).contextWrite(Actor.with(actor));
+    }
+}
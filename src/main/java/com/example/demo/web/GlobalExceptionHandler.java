@@ -1,6 +1,7 @@
 package com.example.demo.web;
 
 import jakarta.validation.ConstraintViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
 import org.springframework.web.ErrorResponseException;
@@ -29,6 +30,16 @@ public class GlobalExceptionHandler {
         return pd;
     }
 
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ProblemDetail handleConflict(OptimisticLockingFailureException ex) {
+        ProblemDetail pd = ProblemDetail.forStatus(HttpStatus.CONFLICT);
+        pd.setTitle("Conflict");
+        pd.setDetail("The resource was modified concurrently, retry the request");
+        pd.setType(URI.create("about:blank"));
+        pd.setProperty("timestamp", Instant.now().toString());
+        return pd;
+    }
+
     @ExceptionHandler(ResponseStatusException.class)
     public ProblemDetail handleRSE(ResponseStatusException ex) {
         ProblemDetail pd = ProblemDetail.forStatus(ex.getStatusCode());
@@ -0,0 +1,72 @@
+package com.example.demo.web;
+
+import com.example.demo.dto.InboxEventDto;
+import com.example.demo.service.BatchLookups;
+import com.example.demo.service.InboxHub;
+import com.example.demo.tenant.TenantContext;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import org.springframework.web.util.UriTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+
+@Component
+public class InboxWebSocketHandler implements WebSocketHandler {
+    public static final String PATH = "/ws/users/{id}/inbox";
+
+    private static final UriTemplate TEMPLATE = new UriTemplate(PATH);
+    private static final CloseStatus UNKNOWN_USER = CloseStatus.POLICY_VIOLATION.withReason("unknown user");
+    private static final CloseStatus TOO_SLOW = CloseStatus.SERVICE_OVERLOAD.withReason("inbox overflow");
+
+    private final InboxHub hub;
+    private final BatchLookups lookups;
+    private final ObjectMapper json;
+    private final Duration pingInterval;
+
+    public InboxWebSocketHandler(InboxHub hub, BatchLookups lookups, ObjectMapper json,
+                                 @Value("${app.inbox.ping-interval:30s}") Duration pingInterval) {
+        this.hub = hub;
+        this.lookups = lookups;
+        this.json = json;
+        this.pingInterval = pingInterval;
+    }
+
+    @Override
+    public Mono<Void> handle(WebSocketSession session) {
+        Map<String, String> vars = TEMPLATE.match(session.getHandshakeInfo().getUri().getPath());
+        String userId = vars.get("id");
+        return lookups.userExists(userId)
+                .filter(Boolean::booleanValue)
+                .flatMap(exists -> TenantContext.current())
+                .flatMap(tenant -> stream(session, hub.subscribe(tenant, userId)))
+                .switchIfEmpty(Mono.defer(() -> session.close(UNKNOWN_USER)));
+    }
+
+    private Mono<Void> stream(WebSocketSession session, InboxHub.Inbox inbox) {
+        Flux<WebSocketMessage> pings = Flux.interval(pingInterval)
+                .map(i -> session.pingMessage(f -> f.allocateBuffer(0)));
+        Flux<WebSocketMessage> messages = inbox.events()
+                .map(e -> session.textMessage(write(e)))
+                .publish(events -> Flux.merge(events, pings.takeUntilOther(events.ignoreElements())));
+        Mono<Void> out = session.send(messages)
+                .then(Mono.defer(() -> inbox.overflowed() ? session.close(TOO_SLOW) : Mono.empty()));
+        return Mono.firstWithSignal(out, session.receive().then());
+    }
+
+    private String write(InboxEventDto e) {
+        try {
+            return json.writeValueAsString(e);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.demo;
+
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.reactivestreams.client.ClientSession;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.support.PersistenceExceptionTranslator;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoExceptionTranslator;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+// A ReactiveMongoTemplate with no database behind it, for tests that override the operations the code
+// under test uses. Converter, collection names and query mapping are the real template's; any other
+// operation fails as it would with the database down. Unlike a Mockito mock it needs no bytecode
+// generated at runtime, so tests built on it also run in a native image.
+public class StubMongoTemplate extends ReactiveMongoTemplate {
+
+    public StubMongoTemplate() {
+        this(converter());
+    }
+
+    public StubMongoTemplate(MappingMongoConverter converter) {
+        super(new NoDatabase(), converter);
+    }
+
+    public static MappingMongoConverter converter() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext context = new MongoMappingContext();
+        context.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        context.afterPropertiesSet();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+
+    private static final class NoDatabase implements ReactiveMongoDatabaseFactory {
+
+        @Override
+        public Mono<MongoDatabase> getMongoDatabase() {
+            return Mono.error(new DataAccessResourceFailureException("no database in this test"));
+        }
+
+        @Override
+        public Mono<MongoDatabase> getMongoDatabase(String name) {
+            return getMongoDatabase();
+        }
+
+        @Override
+        public PersistenceExceptionTranslator getExceptionTranslator() {
+            return new MongoExceptionTranslator();
+        }
+
+        @Override
+        public CodecRegistry getCodecRegistry() {
+            return MongoClientSettings.getDefaultCodecRegistry();
+        }
+
+        @Override
+        public Mono<ClientSession> getSession(ClientSessionOptions options) {
+            return Mono.error(new DataAccessResourceFailureException("no database in this test"));
+        }
+
+        @Override
+        public ReactiveMongoDatabaseFactory withSession(ClientSession session) {
+            return this;
+        }
+    }
+}
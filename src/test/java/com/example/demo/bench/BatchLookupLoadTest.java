@@ -0,0 +1,137 @@
+package com.example.demo.bench;
+
+import com.example.demo.entity.Task;
+import com.example.demo.resilience.ResilienceProperties;
+import com.example.demo.resilience.ResilientRepositories;
+import com.example.demo.service.BatchLookups;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Closed-loop load on BatchLookups.findTask against a simulated store: each query takes a fixed round trip
+ * and at most pool queries run at once, like a Mongo connection pool. Each caller issues its lookups one
+ * after another. Runs the same load unbatched (one key per query) and batched, at several concurrency
+ * levels, and prints store queries, mean batch size, throughput and p50/p99 lookup latency.
+ * Usage: BatchLookupLoadTest [lookupsPerCaller] [rttMicros] [pool] [maxSize] [maxInFlight]
+ */
+public class BatchLookupLoadTest {
+
+    private record Run(long queries, double meanBatch, double perSecond, double p50, double p99) {
+    }
+
+    public static void main(String[] args) {
+        int lookups = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        long rttMicros = args.length > 1 ? Long.parseLong(args[1]) : 1_000;
+        int pool = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int maxSize = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        int maxInFlight = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+
+        System.out.printf("rtt=%dus pool=%d max-size=%d max-in-flight=%d%n", rttMicros, pool, maxSize, maxInFlight);
+        System.out.printf("%-10s %8s %10s %10s %10s %10s %10s%n",
+                "mode", "callers", "queries", "batch", "lookups/s", "p50 ms", "p99 ms");
+        for (int callers : new int[]{1, 16, 256}) {
+            print("unbatched", callers, run(callers, lookups, rttMicros, pool, 1, Integer.MAX_VALUE));
+            print("batched", callers, run(callers, lookups, rttMicros, pool, maxSize, maxInFlight));
+        }
+    }
+
+    // Unguarded in effect: the bulkhead would otherwise reject the unbatched runs with many callers.
+    private static ResilientRepositories guards(ReactiveMongoTemplate store, SimpleMeterRegistry registry) {
+        ResilienceProperties props = new ResilienceProperties();
+        props.setMaxConcurrent(Integer.MAX_VALUE);
+        return new ResilientRepositories(props, store.getConverter(), registry);
+    }
+
+    private static Run run(int callers, int lookups, long rttMicros, int pool, int maxSize, int maxInFlight) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ReactiveMongoTemplate store = store(rttMicros, pool);
+        BatchLookups lookupsUnderTest = new BatchLookups(store, guards(store, registry), registry, maxSize, maxInFlight);
+        long[] latencies = new long[callers * lookups];
+
+        // one untimed round to load classes and warm the JIT
+        drive(lookupsUnderTest, callers, Math.min(lookups, 20), new long[callers * lookups]);
+        registry.clear();
+        store = store(rttMicros, pool);
+        lookupsUnderTest = new BatchLookups(store, guards(store, registry), registry, maxSize, maxInFlight);
+
+        long t0 = System.nanoTime();
+        drive(lookupsUnderTest, callers, lookups, latencies);
+        double seconds = (System.nanoTime() - t0) / 1e9;
+
+        Arrays.sort(latencies);
+        var summary = registry.get("batchloader.batch.size").tag("name", "tasks.findById").summary();
+        return new Run(summary.count(), summary.mean(), latencies.length / seconds,
+                latencies[latencies.length / 2] / 1e6, latencies[(int) (latencies.length * 0.99)] / 1e6);
+    }
+
+    private static void drive(BatchLookups target, int callers, int lookups, long[] latencies) {
+        Flux.range(0, callers)
+                .flatMap(caller -> Flux.range(0, lookups)
+                        .concatMap(i -> {
+                            long start = System.nanoTime();
+                            String id = "t" + ThreadLocalRandom.current().nextInt(10_000);
+                            return target.findTask(id)
+                                    .doOnNext(task -> latencies[caller * lookups + i] = System.nanoTime() - start);
+                        }), callers)
+                .blockLast(Duration.ofMinutes(5));
+    }
+
+    // A mocked template whose find(...) answers every requested id after rttMicros, with at most pool
+    // queries running at once; the rest wait in line as they would for a pooled connection.
+    @SuppressWarnings("unchecked")
+    private static ReactiveMongoTemplate store(long rttMicros, int pool) {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext context = new MongoMappingContext();
+        context.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        context.afterPropertiesSet();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+
+        Sinks.Many<Runnable> connections = Sinks.many().unicast().onBackpressureBuffer();
+        connections.asFlux()
+                .flatMap(query -> Mono.delay(Duration.ofNanos(rttMicros * 1_000)).doOnNext(t -> query.run()), pool)
+                .subscribe();
+
+        ReactiveMongoTemplate mongo = mock(ReactiveMongoTemplate.class);
+        when(mongo.getConverter()).thenReturn(converter);
+        when(mongo.getCollectionName(any())).thenReturn("tasks");
+        when(mongo.find(any(Query.class), eq(Document.class), any(String.class))).thenAnswer(inv -> {
+            Query query = inv.getArgument(0);
+            Collection<String> ids = (Collection<String>) ((Map<String, Object>) query.getQueryObject().get("_id")).get("$in");
+            Sinks.Many<Document> result = Sinks.many().unicast().onBackpressureBuffer();
+            connections.emitNext(() -> {
+                ids.forEach(id -> result.tryEmitNext(new Document("_id", id).append("title", id)));
+                result.tryEmitComplete();
+            }, Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+            return result.asFlux();
+        });
+        return mongo;
+    }
+
+    private static void print(String mode, int callers, Run run) {
+        System.out.printf("%-10s %8d %10d %10.1f %10.0f %10.2f %10.2f%n",
+                mode, callers, run.queries(), run.meanBatch(), run.perSecond(), run.p50(), run.p99());
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.demo.bench;
+
+import com.example.demo.dto.TaskDto;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares payload size and encode/decode throughput of JSON, CBOR and Smile for TaskDto lists.
+ * Run with: java -cp build/classes/java/test:build/classes/java/main:... com.example.demo.bench.CodecBenchmark
+ */
+public class CodecBenchmark {
+
+    private static final TypeReference<List<TaskDto>> TASK_LIST = new TypeReference<>() {
+    };
+
+    public static void main(String[] args) throws Exception {
+        Map<String, ObjectMapper> mappers = Map.of(
+                "json", new ObjectMapper(),
+                "cbor", new ObjectMapper(new CBORFactory()),
+                "smile", new ObjectMapper(new SmileFactory()));
+
+        for (int size : new int[]{10, 1_000, 100_000}) {
+            List<TaskDto> tasks = tasks(size);
+            int iterations = Math.max(5, 2_000_000 / size);
+            for (var e : mappers.entrySet()) {
+                ObjectMapper m = e.getValue();
+                byte[] bytes = m.writeValueAsBytes(tasks);
+
+                for (int i = 0; i < iterations; i++)
+                    m.writeValueAsBytes(tasks);
+                long t0 = System.nanoTime();
+                for (int i = 0; i < iterations; i++)
+                    m.writeValueAsBytes(tasks);
+                long encodeNs = (System.nanoTime() - t0) / iterations;
+
+                for (int i = 0; i < iterations; i++)
+                    m.readValue(bytes, TASK_LIST);
+                t0 = System.nanoTime();
+                for (int i = 0; i < iterations; i++)
+                    m.readValue(bytes, TASK_LIST);
+                long decodeNs = (System.nanoTime() - t0) / iterations;
+
+                System.out.printf("%-6s n=%-7d bytes=%-10d encode=%,d ns decode=%,d ns%n",
+                        e.getKey(), size, bytes.length, encodeNs, decodeNs);
+            }
+        }
+    }
+
+    private static List<TaskDto> tasks(int n) {
+        List<TaskDto> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            TaskDto d = new TaskDto();
+            d.setId(String.format("%024x", i));
+            d.setTitle("Task " + i);
+            d.setDescription("Quarterly report section " + i);
+            d.setStatus(i % 3 == 0 ? "DONE" : "OPEN");
+            d.setAssigneeId("u-" + (i % 100));
+            d.setVersion((long) (i % 7));
+            list.add(d);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.demo.bench;
+
+import com.example.demo.entity.User;
+import com.example.demo.resilience.ResilienceProperties;
+import com.example.demo.resilience.ResilientRepositories;
+import com.example.demo.service.BatchLookups;
+import com.example.demo.service.InboxHub;
+import com.example.demo.tenant.TenantProperties;
+import com.example.demo.web.InboxWebSocketHandler;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.web.reactive.socket.server.support.HandshakeWebSocketService;
+import org.springframework.web.reactive.socket.server.upgrade.ReactorNettyRequestUpgradeStrategy;
+import org.springframework.web.server.adapter.WebHttpHandlerBuilder;
+import reactor.core.publisher.Flux;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Serves /ws/users/{id}/inbox with the real InboxHub and InboxWebSocketHandler over a store in which
+ * every user exists, so InboxLoadTest can be run without Mongo. Every few seconds it prints the open
+ * inbox connections and the heap (after a GC) and direct memory in use.
+ * Usage: InboxLoadServer [port] [reportSeconds]
+ */
+public class InboxLoadServer {
+
+    public static void main(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        long reportSeconds = args.length > 1 ? Long.parseLong(args[1]) : 5;
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ReactiveMongoTemplate mongo = store();
+        BatchLookups lookups = new BatchLookups(mongo,
+                new ResilientRepositories(new ResilienceProperties(), mongo.getConverter(), registry), registry, 100, 4);
+        InboxHub hub = new InboxHub(mongo, lookups, new TenantProperties(), registry, 64, InboxHub.Overflow.DROP);
+        InboxWebSocketHandler handler = new InboxWebSocketHandler(hub, lookups,
+                new ObjectMapper().registerModule(new JavaTimeModule()), Duration.ofSeconds(30));
+        HandshakeWebSocketService ws = new HandshakeWebSocketService(new ReactorNettyRequestUpgradeStrategy());
+
+        DisposableServer server = HttpServer.create()
+                .port(port)
+                .handle(new ReactorHttpHandlerAdapter(WebHttpHandlerBuilder
+                        .webHandler(exchange -> ws.handleRequest(exchange, handler))
+                        .build()))
+                .bindNow();
+        System.out.printf("listening on %d%n", server.port());
+
+        long t0 = System.nanoTime();
+        Flux.interval(Duration.ofSeconds(reportSeconds))
+                .doOnNext(i -> {
+                    System.gc();
+                    double open = registry.get("inbox.connections").gauge().value();
+                    long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+                    long direct = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                            .mapToLong(BufferPoolMXBean::getMemoryUsed).sum();
+                    System.out.printf("%6ds  connections=%.0f  heap=%dMB  direct=%dMB%n",
+                            (System.nanoTime() - t0) / 1_000_000_000, open, heap >> 20, direct >> 20);
+                })
+                .blockLast();
+    }
+
+    // Answers every id query with a document per id; stub-only so the mock keeps no invocations.
+    private static ReactiveMongoTemplate store() {
+        ReactiveMongoTemplate mongo = mock(ReactiveMongoTemplate.class, withSettings().stubOnly());
+        when(mongo.getConverter()).thenReturn(converter());
+        when(mongo.getCollectionName(User.class)).thenReturn("users");
+        when(mongo.find(any(Query.class), eq(Document.class), anyString())).thenAnswer(inv -> {
+            Query q = inv.getArgument(0);
+            @SuppressWarnings("unchecked")
+            Collection<String> ids = (Collection<String>) ((Map<String, Object>) q.getQueryObject().get("_id")).get("$in");
+            return Flux.fromIterable(ids).map(id -> new Document("_id", id));
+        });
+        return mongo;
+    }
+
+    private static MappingMongoConverter converter() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext context = new MongoMappingContext();
+        context.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        context.afterPropertiesSet();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+}
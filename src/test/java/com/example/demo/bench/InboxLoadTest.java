@@ -0,0 +1,53 @@
+package com.example.demo.bench;
+
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens many idle inbox WebSocket connections against a running server and holds them open, printing
+ * the number of connected sessions every few seconds. Server-side cost is read from
+ * /actuator/metrics/inbox.connections and /actuator/metrics/jvm.memory.used.
+ * Usage: InboxLoadTest [baseUrl] [connections] [userId] [holdSeconds]
+ */
+public class InboxLoadTest {
+
+    public static void main(String[] args) throws InterruptedException {
+        String base = args.length > 0 ? args[0] : "ws://localhost:8080";
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+        String userId = args.length > 2 ? args[2] : "u-101";
+        long holdSeconds = args.length > 3 ? Long.parseLong(args[3]) : 120;
+
+        URI uri = URI.create(base + "/ws/users/" + userId + "/inbox");
+        HttpClient http = HttpClient.create(ConnectionProvider.newConnection());
+        ReactorNettyWebSocketClient client = new ReactorNettyWebSocketClient(http);
+        AtomicInteger open = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+
+        // At most 1000 handshakes are in flight; a session, once open, no longer counts against them.
+        long t0 = System.nanoTime();
+        Flux.range(0, connections)
+                .flatMap(i -> Mono.<Void>create(handshake -> client.execute(uri, session -> {
+                            open.incrementAndGet();
+                            handshake.success();
+                            return session.receive().then().doFinally(s -> open.decrementAndGet());
+                        })
+                        .subscribe(null, e -> {
+                            failed.incrementAndGet();
+                            handshake.success();
+                        })), 1_000)
+                .subscribe();
+
+        Flux.interval(Duration.ofSeconds(5))
+                .take(Duration.ofSeconds(holdSeconds))
+                .doOnNext(i -> System.out.printf("%6ds  open=%d  failed=%d%n",
+                        (System.nanoTime() - t0) / 1_000_000_000, open.get(), failed.get()))
+                .blockLast();
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.demo.bench;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Seeds one assignee per backlog size (default 1k, 10k, 100k, 1M tasks) into a scratch database, then runs
+ * the GET /users/{id}/next query against each: the {assigneeId, status, priority} index, statuses
+ * OPEN/TODO/IN_PROGRESS, sort priority desc, limit k. For every backlog it prints keys and documents
+ * examined from explain("executionStats") and p50/p99 latency, which should stay flat as the backlog grows.
+ * The seeded tasks are removed afterwards.
+ * Usage: NextTasksBenchmark [mongoUri] [database] [backlogs, comma separated] [k] [queries]
+ */
+public class NextTasksBenchmark {
+
+    private static final List<String> OPEN = List.of("OPEN", "TODO", "IN_PROGRESS");
+    private static final List<String> STATUSES = List.of("OPEN", "TODO", "IN_PROGRESS", "DONE");
+
+    public static void main(String[] args) {
+        String uri = args.length > 0 ? args[0] : "mongodb://localhost:27017";
+        String database = args.length > 1 ? args[1] : "todo-bench";
+        int[] backlogs = Arrays.stream((args.length > 2 ? args[2] : "1000,10000,100000,1000000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        int k = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        int queries = args.length > 4 ? Integer.parseInt(args[4]) : 500;
+
+        try (MongoClient client = MongoClients.create(uri)) {
+            ReactiveMongoTemplate mongo = new ReactiveMongoTemplate(client, database);
+            mongo.indexOps("tasks").ensureIndex(new Index()
+                    .on("assigneeId", Sort.Direction.ASC)
+                    .on("status", Sort.Direction.ASC)
+                    .on("priority", Sort.Direction.DESC)).block();
+
+            System.out.printf("%10s %4s %12s %12s %10s %10s%n", "backlog", "k", "keys", "docs", "p50 us", "p99 us");
+            try {
+                for (int backlog : backlogs) {
+                    String assignee = "bench-" + backlog;
+                    seed(mongo, assignee, backlog);
+                    Document stats = explain(mongo, assignee, k);
+                    long[] micros = time(mongo, assignee, k, queries);
+                    System.out.printf("%10d %4d %12d %12d %10d %10d%n", backlog, k,
+                            stats.get("totalKeysExamined", Number.class).longValue(),
+                            stats.get("totalDocsExamined", Number.class).longValue(),
+                            micros[micros.length / 2], micros[(int) (micros.length * 0.99)]);
+                }
+            } finally {
+                mongo.remove(new Query(where("assigneeId").regex("^bench-")), "tasks").block();
+            }
+        }
+    }
+
+    private static void seed(ReactiveMongoTemplate mongo, String assignee, int backlog) {
+        mongo.remove(new Query(where("assigneeId").is(assignee)), "tasks").block();
+        Random random = new Random(backlog);
+        Flux.range(0, backlog)
+                .map(i -> new Document("title", "task " + i)
+                        .append("assigneeId", assignee)
+                        .append("status", STATUSES.get(random.nextInt(STATUSES.size())))
+                        .append("priority", random.nextInt(1_000))
+                        .append("version", 0L))
+                .buffer(1_000)
+                .concatMap(batch -> mongo.insert(batch, "tasks").then())
+                .blockLast(Duration.ofMinutes(30));
+    }
+
+    private static Query next(String assignee, int k) {
+        return new Query(where("assigneeId").is(assignee).and("status").in(OPEN))
+                .with(Sort.by(Sort.Direction.DESC, "priority"))
+                .limit(k);
+    }
+
+    private static Document explain(ReactiveMongoTemplate mongo, String assignee, int k) {
+        Query q = next(assignee, k);
+        Document find = new Document("find", "tasks")
+                .append("filter", q.getQueryObject())
+                .append("sort", q.getSortObject())
+                .append("limit", k);
+        Document result = mongo.executeCommand(new Document("explain", find).append("verbosity", "executionStats")).block();
+        return result.get("executionStats", Document.class);
+    }
+
+    private static long[] time(ReactiveMongoTemplate mongo, String assignee, int k, int queries) {
+        for (int i = 0; i < Math.min(queries, 50); i++)
+            mongo.find(next(assignee, k), Document.class, "tasks").blockLast();
+        List<Long> micros = new ArrayList<>(queries);
+        for (int i = 0; i < queries; i++) {
+            long t0 = System.nanoTime();
+            mongo.find(next(assignee, k), Document.class, "tasks").blockLast();
+            micros.add((System.nanoTime() - t0) / 1_000);
+        }
+        return micros.stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+}
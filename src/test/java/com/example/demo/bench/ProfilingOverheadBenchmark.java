@@ -0,0 +1,158 @@
+package com.example.demo.bench;
+
+import com.example.demo.cluster.PartitionedWork;
+import com.example.demo.config.MongoTuningProperties;
+import com.example.demo.mapper.TaskMapper;
+import com.example.demo.profiling.ProfilingConfig;
+import com.example.demo.profiling.ProfilingWebFilter;
+import com.example.demo.resilience.ResilienceProperties;
+import com.example.demo.resilience.ResilientRepositories;
+import com.example.demo.service.TaskService;
+import com.example.demo.tenant.TenantProperties;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Measures what the JFR instrumentation adds to one call of each instrumented path, in ns/op: a
+ * TaskService.next() that is rejected before reaching the store, through the ServiceProfiling proxy and
+ * unproxied; a request through ProfilingWebFilter and through the bare chain; and a started/succeeded
+ * pair through the Mongo command listener and through an empty one. Nothing does I/O, so the differences
+ * are the instrumentation's own cost. Each instrumented path is run with no recording and with a
+ * "profile" recording running; every cell is the median of five interleaved rounds.
+ * Usage: ProfilingOverheadBenchmark [iterations]
+ */
+public class ProfilingOverheadBenchmark {
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+            context.registerBean(TenantProperties.class, TenantProperties::new);
+            context.registerBean(TaskService.class, ProfilingOverheadBenchmark::taskService);
+            context.register(ProfilingConfig.class);
+            context.refresh();
+
+            TaskService plain = taskService();
+            TaskService profiled = context.getBean(TaskService.class);
+            ProfilingWebFilter filter = context.getBean(ProfilingWebFilter.class);
+            CommandListener listener = listener(context.getBean(MongoClientSettingsBuilderCustomizer.class));
+            WebFilterChain chain = exchange -> exchange.getResponse().setComplete();
+            MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/tasks"));
+
+            BsonDocument find = new BsonDocument("find", new BsonString("tasks"));
+            BsonDocument reply = new BsonDocument("cursor", new BsonDocument("firstBatch", new BsonArray()));
+            ConnectionDescription connection = new ConnectionDescription(new ServerId(new ClusterId(), new ServerAddress()));
+            CommandListener nothing = new CommandListener() {
+            };
+
+            System.out.printf("iterations=%d%n", iterations);
+            System.out.printf("%-24s %12s %15s %12s%n", "path", "baseline", "no recording", "recording");
+            row("TaskService.next()",
+                    i -> plain.next("u", 0).onErrorComplete().blockLast(),
+                    i -> profiled.next("u", 0).onErrorComplete().blockLast(), iterations);
+            row("ProfilingWebFilter",
+                    i -> chain.filter(exchange).block(),
+                    i -> filter.filter(exchange, chain).block(), iterations);
+            row("MongoCommandProfiling",
+                    i -> command(nothing, i, connection, find, reply),
+                    i -> command(listener, i, connection, find, reply), iterations);
+        }
+    }
+
+    // The baseline, then the instrumented path with no recording and with a "profile" recording, each
+    // the median of five rounds after one discarded warm-up round.
+    private static void row(String path, LongConsumer baseline, LongConsumer instrumented, int iterations) {
+        double[][] rounds = new double[3][5];
+        for (int round = -1; round < 5; round++) {
+            double base = time(baseline, iterations);
+            double off = time(instrumented, iterations);
+            double on;
+            try (Recording recording = new Recording(Configuration.getConfiguration("profile"))) {
+                recording.setToDisk(false);
+                recording.start();
+                on = time(instrumented, iterations);
+            } catch (IOException | ParseException e) {
+                throw new IllegalStateException(e);
+            }
+            if (round >= 0) {
+                rounds[0][round] = base;
+                rounds[1][round] = off;
+                rounds[2][round] = on;
+            }
+        }
+        System.out.printf("%-24s %9.1f ns %12.1f ns %9.1f ns%n", path, median(rounds[0]), median(rounds[1]), median(rounds[2]));
+    }
+
+    private static double median(double[] values) {
+        Arrays.sort(values);
+        return values[values.length / 2];
+    }
+
+    private static double time(LongConsumer op, int iterations) {
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+            op.accept(i);
+        return (double) (System.nanoTime() - t0) / iterations;
+    }
+
+    private static void command(CommandListener listener, long i, ConnectionDescription connection,
+                                BsonDocument command, BsonDocument reply) {
+        listener.commandStarted(new CommandStartedEvent(null, i, (int) i, connection, "todo-db", "find", command));
+        listener.commandSucceeded(new CommandSucceededEvent(null, i, (int) i, connection, "todo-db", "find", reply, 1_000));
+    }
+
+    private static CommandListener listener(MongoClientSettingsBuilderCustomizer customizer) {
+        MongoClientSettings.Builder builder = MongoClientSettings.builder();
+        customizer.customize(builder);
+        return builder.build().getCommandListeners().get(0);
+    }
+
+    private static MappingMongoConverter converter() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext context = new MongoMappingContext();
+        context.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        context.afterPropertiesSet();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+
+    private static TaskService taskService() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        return new TaskService(null, new TaskMapper(), null, null, null, null, new MongoTuningProperties(),
+                new ResilientRepositories(new ResilienceProperties(), converter(), registry), registry, new TenantProperties(),
+                null, null, null, null, null, mock(PartitionedWork.class));
+    }
+}
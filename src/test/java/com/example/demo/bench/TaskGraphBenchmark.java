@@ -0,0 +1,68 @@
+package com.example.demo.bench;
+
+import com.example.demo.service.TaskGraph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds a dependency DAG with hundreds of thousands of edges and times loading, status transitions,
+ * ready-queue reads and cycle checks against the in-memory TaskGraph.
+ */
+public class TaskGraphBenchmark {
+
+    private static final String TENANT = "default";
+
+    public static void main(String[] args) {
+        int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int fanIn = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        Random rnd = new Random(42);
+
+        List<List<String>> deps = new ArrayList<>(tasks);
+        for (int i = 0; i < tasks; i++) {
+            List<String> d = new ArrayList<>(fanIn);
+            for (int j = 0; j < fanIn && i > 0; j++)
+                d.add(id(rnd.nextInt(i)));
+            deps.add(d);
+        }
+
+        TaskGraph graph = new TaskGraph();
+        long t0 = System.nanoTime();
+        for (int i = tasks - 1; i >= 0; i--)
+            graph.put(TENANT, id(i), deps.get(i), false);
+        report("load " + tasks + " tasks / " + (long) tasks * fanIn + " edges", t0, 1);
+
+        t0 = System.nanoTime();
+        int reads = 1_000;
+        for (int i = 0; i < reads; i++)
+            graph.ready(TENANT);
+        report("ready() with " + graph.ready(TENANT).size() + " ready tasks", t0, reads);
+
+        t0 = System.nanoTime();
+        for (int i = 0; i < tasks; i++)
+            graph.put(TENANT, id(i), deps.get(i), true);
+        report("mark DONE (per transition)", t0, tasks);
+
+        t0 = System.nanoTime();
+        int checks = 1_000;
+        int cycles = 0;
+        for (int i = 0; i < checks; i++) {
+            try {
+                graph.requireAcyclic(TENANT, id(rnd.nextInt(tasks / 10)), List.of(id(tasks - 1 - rnd.nextInt(tasks / 10))));
+            } catch (IllegalArgumentException e) {
+                cycles++;
+            }
+        }
+        report("cycle check (" + cycles + " of " + checks + " rejected)", t0, checks);
+    }
+
+    private static String id(int i) {
+        return "t" + i;
+    }
+
+    private static void report(String label, long startNanos, int ops) {
+        long total = System.nanoTime() - startNanos;
+        System.out.printf("%-45s total=%,d ms  per-op=%,d ns%n", label, total / 1_000_000, total / ops);
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.demo.bench;
+
+import com.example.demo.dto.TaskDto;
+import com.example.demo.entity.Task;
+import com.example.demo.mapper.TaskJsonWriter;
+import com.example.demo.mapper.TaskMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.ObjectId;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Compares the list path used so far (BSON -> Document -> Task -> TaskDto -> Jackson) with TaskJsonWriter
+ * (BSON bytes -> pooled Netty buffer). Reports throughput and bytes allocated per task on the calling thread.
+ * Run with: java -cp build/classes/java/test:build/classes/java/main:... com.example.demo.bench.TaskJsonBenchmark
+ */
+public class TaskJsonBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final ResolvableType TASK_LIST = ResolvableType.forClassWithGenerics(List.class, TaskDto.class);
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+
+        List<RawBsonDocument> docs = documents(size);
+        NettyDataBufferFactory buffers = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext context = new MongoMappingContext();
+        context.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        context.afterPropertiesSet();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        ObjectMapper mapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        Jackson2JsonEncoder encoder = new Jackson2JsonEncoder(mapper);
+        TaskMapper taskMapper = new TaskMapper();
+        TaskJsonWriter writer = new TaskJsonWriter(converter, taskMapper, mapper);
+        DocumentCodec codec = new DocumentCodec();
+
+        Runnable current = () -> {
+            List<TaskDto> dtos = new ArrayList<>(size);
+            for (RawBsonDocument raw : docs)
+                dtos.add(taskMapper.toDto(converter.read(Task.class, raw.decode(codec))));
+            DataBufferUtils.release(encoder.encodeValue(dtos, buffers, TASK_LIST, MediaType.APPLICATION_JSON, null));
+        };
+        Runnable direct = () -> {
+            DataBufferUtils.release(writer.open(buffers));
+            boolean first = true;
+            for (RawBsonDocument raw : docs) {
+                DataBufferUtils.release(writer.write(raw.getByteBuffer().asNIO(), buffers, first));
+                first = false;
+            }
+            DataBufferUtils.release(writer.close(buffers));
+        };
+
+        check(docs, converter, codec, taskMapper, writer, buffers, mapper);
+        run("mapper+jackson", current, size, iterations);
+        run("TaskJsonWriter", direct, size, iterations);
+    }
+
+    private static void run(String name, Runnable pass, int size, int iterations) {
+        for (int i = 0; i < iterations; i++)
+            pass.run();
+        long bytes0 = THREADS.getCurrentThreadAllocatedBytes();
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+            pass.run();
+        long ns = System.nanoTime() - t0;
+        long allocated = THREADS.getCurrentThreadAllocatedBytes() - bytes0;
+        long tasks = (long) size * iterations;
+        System.out.printf("%-15s n=%-6d %,12.0f tasks/s  %,8d B allocated/task%n",
+                name, size, tasks * 1e9 / ns, allocated / tasks);
+    }
+
+    // Both paths must produce the same bytes for every document.
+    private static void check(List<RawBsonDocument> docs, MappingMongoConverter converter, DocumentCodec codec,
+                              TaskMapper taskMapper, TaskJsonWriter writer, NettyDataBufferFactory buffers,
+                              ObjectMapper mapper) throws Exception {
+        for (RawBsonDocument raw : docs) {
+            byte[] expected = mapper.writeValueAsBytes(taskMapper.toDto(converter.read(Task.class, raw.decode(codec))));
+            DataBuffer b = writer.write(raw.getByteBuffer().asNIO(), buffers, true);
+            byte[] actual = new byte[b.readableByteCount()];
+            b.read(actual);
+            DataBufferUtils.release(b);
+            if (!Arrays.equals(expected, actual))
+                throw new IllegalStateException("mismatch:\n" + new String(expected) + "\n" + new String(actual));
+        }
+    }
+
+    private static List<RawBsonDocument> documents(int n) {
+        DocumentCodec codec = new DocumentCodec();
+        List<RawBsonDocument> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Document d = new Document("_id", new ObjectId())
+                    .append("title", "Task " + i)
+                    .append("description", "Quarterly \"report\" section " + i)
+                    .append("status", i % 3 == 0 ? "DONE" : "OPEN")
+                    .append("assigneeId", "u-" + (i % 100))
+                    .append("priority", i % 10)
+                    .append("dependsOn", i > 0 ? List.of(new ObjectId().toHexString()) : List.of())
+                    .append("dueAt", new Date(1_760_000_000_000L + i * 60_000L))
+                    .append("version", (long) (i % 7))
+                    .append("_class", Task.class.getName());
+            list.add(new RawBsonDocument(d, codec));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.demo.bench;
+
+import com.example.demo.dto.TaskDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the default server settings with the wan profile (gzip above 2 KB, h2c, TCP_NODELAY) for a
+ * GET /tasks sized response. Reports wire bytes per response, throughput and latency percentiles.
+ * By default it serves a synthetic task list from an in-process Reactor Netty server, adding the given
+ * round-trip delay to every response; pass a URL to measure a running instance instead.
+ * Run with: java -cp build/classes/java/test:build/classes/java/main:... com.example.demo.bench.WanProfileBenchmark
+ * [tasks=1000] [requests=2000] [concurrency=50] [rtt-ms=40] [url]
+ */
+public class WanProfileBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        Duration rtt = Duration.ofMillis(args.length > 3 ? Long.parseLong(args[3]) : 40);
+        String url = args.length > 4 ? args[4] : null;
+
+        if (url != null) {
+            run("h1 identity", client(HttpProtocol.HTTP11, false), url, requests, concurrency);
+            run("h1 gzip", client(HttpProtocol.HTTP11, true), url, requests, concurrency);
+            run("h2c gzip", client(HttpProtocol.H2C, true), url, requests, concurrency);
+            return;
+        }
+
+        byte[] body = json().writeValueAsBytes(tasks(tasks));
+        DisposableServer plain = server(body, rtt, false);
+        DisposableServer wan = server(body, rtt, true);
+        try {
+            String base = "http://localhost:%d/tasks";
+            System.out.printf("payload %d tasks, %d bytes uncompressed, rtt %d ms%n", tasks, body.length, rtt.toMillis());
+            run("default h1", client(HttpProtocol.HTTP11, true), base.formatted(plain.port()), requests, concurrency);
+            run("wan h1 gzip", client(HttpProtocol.HTTP11, true), base.formatted(wan.port()), requests, concurrency);
+            run("wan h2c gzip", client(HttpProtocol.H2C, true), base.formatted(wan.port()), requests, concurrency);
+        } finally {
+            plain.disposeNow();
+            wan.disposeNow();
+        }
+    }
+
+    // Mirrors application-wan.properties and NettyConfig: compression above 2 KB, h1 + h2c, socket options.
+    private static DisposableServer server(byte[] body, Duration rtt, boolean wan) {
+        HttpServer server = HttpServer.create().port(0)
+                .route(r -> r.get("/tasks", (req, res) -> res
+                        .header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                        .sendByteArray(Mono.delay(rtt).thenReturn(body))));
+        if (wan)
+            server = server
+                    .compress(2048)
+                    .protocol(HttpProtocol.HTTP11, HttpProtocol.H2C)
+                    .option(ChannelOption.SO_BACKLOG, 1024)
+                    .childOption(ChannelOption.TCP_NODELAY, true)
+                    .childOption(ChannelOption.SO_KEEPALIVE, true);
+        return server.bindNow();
+    }
+
+    // Bytes are counted as received, before any decompression.
+    private static HttpClient client(HttpProtocol protocol, boolean gzip) {
+        HttpClient client = HttpClient.create(ConnectionProvider.create("bench", 500)).protocol(protocol);
+        return gzip ? client.headers(h -> h.set(HttpHeaderNames.ACCEPT_ENCODING, "gzip")) : client;
+    }
+
+    private static void run(String name, HttpClient client, String url, int requests, int concurrency) {
+        AtomicLong bytes = new AtomicLong();
+        Flux.range(0, Math.max(100, requests / 10))
+                .flatMap(i -> get(client, url, new AtomicLong()), concurrency)
+                .blockLast();
+        long[] latencies = new long[requests];
+        long t0 = System.nanoTime();
+        Flux.range(0, requests)
+                .flatMap(i -> {
+                    long start = System.nanoTime();
+                    return get(client, url, bytes).doOnSuccess(v -> latencies[i] = System.nanoTime() - start);
+                }, concurrency)
+                .blockLast();
+        long elapsed = System.nanoTime() - t0;
+        Arrays.sort(latencies);
+        System.out.printf("%-14s bytes/resp=%-8d req/s=%-8.0f p50=%6.1f ms p99=%6.1f ms%n", name,
+                bytes.get() / requests, requests / (elapsed / 1e9),
+                latencies[requests / 2] / 1e6, latencies[requests * 99 / 100] / 1e6);
+    }
+
+    private static Mono<Integer> get(HttpClient client, String url, AtomicLong bytes) {
+        return client.get().uri(url)
+                .responseSingle((res, body) -> body.asByteArray())
+                .map(b -> {
+                    bytes.addAndGet(b.length);
+                    return b.length;
+                });
+    }
+
+    private static ObjectMapper json() {
+        return Jackson2ObjectMapperBuilder.json().featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+    }
+
+    private static List<TaskDto> tasks(int n) {
+        List<TaskDto> list = new ArrayList<>(n);
+        Instant due = Instant.parse("2025-10-01T17:00:00Z");
+        for (int i = 0; i < n; i++) {
+            TaskDto d = new TaskDto();
+            d.setId(String.format("%024x", i));
+            d.setTitle("Task " + i);
+            d.setDescription("Quarterly report section " + i);
+            d.setStatus(i % 3 == 0 ? "DONE" : "OPEN");
+            d.setAssigneeId("u-" + (i % 100));
+            d.setPriority(i % 10);
+            d.setDueAt(due.plusSeconds(i * 3600L));
+            d.setVersion((long) (i % 7));
+            list.add(d);
+        }
+        return list;
+    }
+}
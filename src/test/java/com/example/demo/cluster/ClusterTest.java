@@ -0,0 +1,169 @@
+package com.example.demo.cluster;
+
+import com.example.demo.dto.TaskDto;
+import com.example.demo.entity.PartitionJob;
+import com.example.demo.tenant.TenantContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+// Several app instances in one JVM, each with its own coordinator and partitioned work running on
+// their real schedules against a shared InMemoryMongo, as they would against one Mongo deployment.
+class ClusterTest {
+
+    private static final int PARTITIONS = 16;
+
+    private final InMemoryMongo mongo = new InMemoryMongo();
+    private final List<Instance> instances = new ArrayList<>();
+    // Which instance ran which task's job, in order.
+    private final List<String> runs = new CopyOnWriteArrayList<>();
+
+    private final class Instance {
+        final InMemoryMongo.Template template = mongo.connect();
+        final PartitionCoordinator coordinator;
+        final PartitionedWork work;
+        volatile boolean hangs;
+
+        Instance(String id) {
+            ClusterProperties props = new ClusterProperties();
+            props.setNodeId(id);
+            props.setPartitions(PARTITIONS);
+            props.setHeartbeat(Duration.ofMillis(100));
+            props.setLeaseTtl(Duration.ofSeconds(1));
+            props.setJobPoll(Duration.ofMillis(100));
+            props.setJobTimeout(Duration.ofSeconds(20));
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            coordinator = new PartitionCoordinator(template, props, registry);
+            work = new PartitionedWork(template, coordinator, props, registry);
+            work.handle("assign", job -> {
+                runs.add(id + ":" + job.getTaskId());
+                if (hangs)
+                    return Mono.never();
+                TaskDto dto = new TaskDto();
+                dto.setId(job.getTaskId());
+                dto.setAssigneeId(job.getAssigneeId());
+                return Mono.just(dto);
+            });
+            coordinator.start();
+            work.start();
+        }
+
+        Mono<TaskDto> assign(String taskId, String assigneeId) {
+            return work.route("assign", taskId, assigneeId, () -> Mono.error(new AssertionError("ran locally")))
+                    .contextWrite(TenantContext.with(TenantContext.DEFAULT));
+        }
+
+        void stop() {
+            work.stop();
+            try {
+                coordinator.stop();
+            } catch (RuntimeException e) {
+                // a disconnected instance cannot release its leases; they expire instead
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        instances.forEach(Instance::stop);
+    }
+
+    @Test
+    @DisplayName("instances split the partitions between them, each owned by exactly one")
+    void splitsPartitions() {
+        start("a", "b", "c");
+
+        awaitBalanced();
+
+        Set<Integer> all = new HashSet<>();
+        instances.forEach(i -> all.addAll(i.coordinator.owned()));
+        assertThat(all).hasSize(PARTITIONS);
+        assertThat(mongo.all(PartitionCoordinator.LEASES))
+                .extracting(d -> d.getString("owner"))
+                .containsOnly("a", "b", "c");
+    }
+
+    @Test
+    @DisplayName("work for a partition another instance owns runs there once and its result reaches the caller")
+    void forwardsToOwner() {
+        start("a", "b", "c");
+        awaitBalanced();
+        String taskId = ownedBy(instances.get(1));
+
+        TaskDto result = instances.get(0).assign(taskId, "u1").block(Duration.ofSeconds(10));
+
+        assertThat(result.getAssigneeId()).isEqualTo("u1");
+        assertThat(runs).containsExactly("b:" + taskId);
+        assertThat(mongo.all("partition_jobs")).singleElement().satisfies(job -> {
+            assertThat(job.getString("state")).isEqualTo(PartitionJob.State.DONE.name());
+            assertThat(job.getString("owner")).isEqualTo("b");
+        });
+    }
+
+    @Test
+    @DisplayName("a job left running by an instance cut off from the database runs again on the partition's next owner")
+    void takesOverFromLostInstance() {
+        start("a", "b", "c");
+        awaitBalanced();
+        Instance b = instances.get(1);
+        String taskId = ownedBy(b);
+        b.hangs = true;
+
+        CompletableFuture<TaskDto> result = instances.get(0).assign(taskId, "u1").toFuture();
+        await().atMost(Duration.ofSeconds(10)).until(() -> runs.contains("b:" + taskId));
+        b.template.disconnect();
+
+        assertThat(result).succeedsWithin(20, TimeUnit.SECONDS)
+                .satisfies(d -> assertThat(d.getAssigneeId()).isEqualTo("u1"));
+        // Delivery is at-least-once: the handler ran on b and again on the new owner.
+        assertThat(runs).hasSize(2).first().isEqualTo("b:" + taskId);
+        Document job = mongo.all("partition_jobs").get(0);
+        assertThat(job.getString("state")).isEqualTo(PartitionJob.State.DONE.name());
+        assertThat(job.getString("owner")).isIn("a", "c");
+        assertThat(runs.get(1)).isEqualTo(job.getString("owner") + ":" + taskId);
+    }
+
+    private void start(String... ids) {
+        for (String id : ids)
+            instances.add(new Instance(id));
+    }
+
+    private void awaitBalanced() {
+        int share = (PARTITIONS + instances.size() - 1) / instances.size();
+        await().atMost(Duration.ofSeconds(20)).until(() -> {
+            int owned = 0;
+            Set<Integer> all = new HashSet<>();
+            for (Instance i : instances) {
+                Set<Integer> mine = i.coordinator.owned();
+                if (mine.isEmpty() || mine.size() > share)
+                    return false;
+                owned += mine.size();
+                all.addAll(mine);
+            }
+            return owned == PARTITIONS && all.size() == PARTITIONS;
+        });
+    }
+
+    private static String ownedBy(Instance instance) {
+        return IntStream.range(0, 1000).mapToObj(i -> "task-" + i)
+                .filter(instance.coordinator::owns)
+                .findFirst()
+                .orElseThrow();
+    }
+}
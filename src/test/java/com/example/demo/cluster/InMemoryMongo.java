@@ -0,0 +1,351 @@
+package com.example.demo.cluster;
+
+import com.example.demo.StubMongoTemplate;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import org.bson.BsonInt32;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.convert.UpdateMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+// A local stand-in for the Mongo server that several app instances in one JVM can share. Each
+// instance gets its own template from connect(); queries and updates go through the same mappers as
+// the real template and are applied atomically to in-memory collections, supporting the filter and
+// update operators the cluster code uses. A template can be disconnected to simulate a node that is
+// cut off from the database: its calls fail and its tails end, while the other nodes carry on.
+class InMemoryMongo {
+
+    private final MappingMongoConverter converter = StubMongoTemplate.converter();
+    private final QueryMapper queries = new QueryMapper(converter);
+    private final UpdateMapper updates = new UpdateMapper(converter);
+    private final Map<String, Map<Object, Document>> collections = new ConcurrentHashMap<>();
+    private final Map<String, Sinks.Many<Document>> capped = new ConcurrentHashMap<>();
+
+    Template connect() {
+        return new Template();
+    }
+
+    synchronized List<Document> all(String collection) {
+        return collection(collection).values().stream().map(Document::new).toList();
+    }
+
+    class Template extends StubMongoTemplate {
+
+        private volatile boolean down;
+
+        private Template() {
+            super(converter);
+        }
+
+        void disconnect() {
+            down = true;
+        }
+
+        @Override
+        public <T> Mono<T> insert(T entity) {
+            return run(() -> {
+                Document doc = new Document();
+                converter.write(entity, doc);
+                if (!doc.containsKey("_id"))
+                    doc.put("_id", new ObjectId());
+                store(getCollectionName(entity.getClass()), doc);
+                return entity;
+            });
+        }
+
+        @Override
+        public <T> Mono<T> insert(T doc, String collection) {
+            return run(() -> {
+                Document copy = new Document((Document) doc);
+                copy.putIfAbsent("_id", new ObjectId());
+                store(collection, copy);
+                return doc;
+            });
+        }
+
+        @Override
+        public <T> Flux<T> find(Query query, Class<T> type) {
+            return find(query, type, getCollectionName(type));
+        }
+
+        @Override
+        public <T> Flux<T> find(Query query, Class<T> type, String collection) {
+            return run(() -> select(collection, filter(query, type)))
+                    .flatMapIterable(docs -> docs)
+                    .map(doc -> read(type, doc));
+        }
+
+        @Override
+        public <T> Mono<T> findById(Object id, Class<T> type) {
+            return find(new Query(where("_id").is(id)), type).next();
+        }
+
+        @Override
+        public <T> Mono<T> findAndModify(Query query, UpdateDefinition update, FindAndModifyOptions options, Class<T> type) {
+            return run(() -> modify(getCollectionName(type), filter(query, type), update(update, type), options.isReturnNew()))
+                    .map(doc -> read(type, doc));
+        }
+
+        @Override
+        public Mono<UpdateResult> upsert(Query query, UpdateDefinition update, String collection) {
+            return run(() -> apply(collection, filter(query, null), update(update, null), false, true));
+        }
+
+        @Override
+        public Mono<UpdateResult> updateFirst(Query query, UpdateDefinition update, Class<?> type) {
+            return run(() -> apply(getCollectionName(type), filter(query, type), update(update, type), false, false));
+        }
+
+        @Override
+        public Mono<UpdateResult> updateMulti(Query query, UpdateDefinition update, String collection) {
+            return run(() -> apply(collection, filter(query, null), update(update, null), true, false));
+        }
+
+        @Override
+        public Mono<DeleteResult> remove(Query query, String collection) {
+            return run(() -> delete(collection, filter(query, null)));
+        }
+
+        @Override
+        public Mono<Boolean> collectionExists(String collection) {
+            return run(() -> collections.containsKey(collection));
+        }
+
+        @Override
+        public Mono<MongoCollection<Document>> createCollection(String collection, CollectionOptions options) {
+            return run(() -> {
+                if (collections.putIfAbsent(collection, new LinkedHashMap<>()) != null)
+                    throw new DataAccessResourceFailureException("collection " + collection + " already exists");
+                if (options.getCapped().orElse(false))
+                    capped.put(collection, Sinks.unsafe().many().replay().all());
+                return null;
+            });
+        }
+
+        // Replays what is already in the capped collection, then follows inserts, like a tailable cursor.
+        @Override
+        public <T> Flux<T> tail(Query query, Class<T> type, String collection) {
+            return Flux.defer(() -> {
+                Sinks.Many<Document> sink = capped.get(collection);
+                if (down || sink == null)
+                    return Flux.error(new DataAccessResourceFailureException("cannot tail " + collection));
+                Document filter = filter(query, type);
+                return sink.asFlux()
+                        .publishOn(Schedulers.boundedElastic())
+                        .<Document>handle((doc, out) -> {
+                            if (down)
+                                out.error(new DataAccessResourceFailureException("connection lost"));
+                            else if (matches(doc, filter))
+                                out.next(new Document(doc));
+                        })
+                        .map(doc -> read(type, doc));
+            });
+        }
+
+        private <T> Mono<T> run(Supplier<T> op) {
+            return Mono.defer(() -> down
+                    ? Mono.error(new DataAccessResourceFailureException("connection refused"))
+                    : Mono.justOrEmpty(op.get()));
+        }
+
+        private Document filter(Query query, Class<?> type) {
+            return queries.getMappedObject(query.getQueryObject(), entity(type));
+        }
+
+        private Document update(UpdateDefinition update, Class<?> type) {
+            return updates.getMappedObject(update.getUpdateObject(), entity(type));
+        }
+
+        private MongoPersistentEntity<?> entity(Class<?> type) {
+            return type == null || type == Document.class ? null : converter.getMappingContext().getPersistentEntity(type);
+        }
+
+        private <T> T read(Class<T> type, Document doc) {
+            return type == Document.class ? type.cast(doc) : converter.read(type, doc);
+        }
+    }
+
+    private synchronized void store(String collection, Document doc) {
+        Map<Object, Document> docs = collection(collection);
+        if (docs.putIfAbsent(doc.get("_id"), doc) != null)
+            throw new DuplicateKeyException("duplicate _id " + doc.get("_id") + " in " + collection);
+        Sinks.Many<Document> sink = capped.get(collection);
+        if (sink != null)
+            sink.tryEmitNext(new Document(doc));
+    }
+
+    private synchronized List<Document> select(String collection, Document filter) {
+        return collection(collection).values().stream()
+                .filter(d -> matches(d, filter))
+                .map(Document::new)
+                .toList();
+    }
+
+    private synchronized Document modify(String collection, Document filter, Document update, boolean returnNew) {
+        Document doc = collection(collection).values().stream().filter(d -> matches(d, filter)).findFirst().orElse(null);
+        if (doc == null)
+            return null;
+        Document before = new Document(doc);
+        set(doc, update, false);
+        return new Document(returnNew ? doc : before);
+    }
+
+    // A missed upsert inserts the filter's equality fields plus the update, failing like Mongo does when
+    // the _id it would insert is already taken by a document the rest of the filter excluded.
+    private synchronized UpdateResult apply(String collection, Document filter, Document update, boolean multi, boolean upsert) {
+        Map<Object, Document> docs = collection(collection);
+        long matched = 0;
+        long modified = 0;
+        for (Document doc : docs.values()) {
+            if (!matches(doc, filter))
+                continue;
+            matched++;
+            Document before = new Document(doc);
+            set(doc, update, false);
+            if (!before.equals(doc))
+                modified++;
+            if (!multi)
+                break;
+        }
+        if (matched > 0 || !upsert)
+            return UpdateResult.acknowledged(matched, modified, null);
+        Document doc = new Document();
+        filter.forEach((k, v) -> {
+            if (!k.startsWith("$") && !(v instanceof Document d && d.keySet().stream().anyMatch(o -> o.startsWith("$"))))
+                doc.put(k, v);
+        });
+        doc.putIfAbsent("_id", new ObjectId());
+        set(doc, update, true);
+        if (docs.containsKey(doc.get("_id")))
+            throw new DuplicateKeyException("duplicate _id " + doc.get("_id") + " in " + collection);
+        docs.put(doc.get("_id"), doc);
+        return UpdateResult.acknowledged(0, 0L, id(doc.get("_id")));
+    }
+
+    private synchronized DeleteResult delete(String collection, Document filter) {
+        Collection<Document> docs = collection(collection).values();
+        long before = docs.size();
+        docs.removeIf(d -> matches(d, filter));
+        return DeleteResult.acknowledged(before - docs.size());
+    }
+
+    private Map<Object, Document> collection(String name) {
+        return collections.computeIfAbsent(name, n -> new LinkedHashMap<>());
+    }
+
+    private static void set(Document doc, Document update, boolean inserting) {
+        update.forEach((op, fields) -> ((Document) fields).forEach((field, value) -> {
+            switch (op) {
+                case "$set" -> doc.put(field, value);
+                case "$setOnInsert" -> {
+                    if (inserting)
+                        doc.put(field, value);
+                }
+                case "$unset" -> doc.remove(field);
+                case "$inc" -> doc.put(field, ((Number) doc.getOrDefault(field, 0)).longValue() + ((Number) value).longValue());
+                default -> throw new UnsupportedOperationException("update operator " + op);
+            }
+        }));
+    }
+
+    static boolean matches(Document doc, Document filter) {
+        for (Map.Entry<String, Object> e : filter.entrySet()) {
+            boolean ok = switch (e.getKey()) {
+                case "$or" -> clauses(e.getValue()).stream().anyMatch(c -> matches(doc, c));
+                case "$and" -> clauses(e.getValue()).stream().allMatch(c -> matches(doc, c));
+                default -> matches(doc.containsKey(e.getKey()), doc.get(e.getKey()), e.getValue());
+            };
+            if (!ok)
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean matches(boolean present, Object value, Object condition) {
+        if (!(condition instanceof Document ops) || ops.keySet().stream().noneMatch(k -> k.startsWith("$")))
+            return Objects.equals(normalize(value), normalize(condition));
+        for (Map.Entry<String, Object> op : ops.entrySet()) {
+            Object arg = op.getValue();
+            boolean ok = switch (op.getKey()) {
+                case "$eq" -> Objects.equals(normalize(value), normalize(arg));
+                case "$ne" -> !Objects.equals(normalize(value), normalize(arg));
+                case "$in" -> ((Collection<?>) arg).stream().anyMatch(a -> Objects.equals(normalize(value), normalize(a)));
+                case "$nin" -> ((Collection<?>) arg).stream().noneMatch(a -> Objects.equals(normalize(value), normalize(a)));
+                case "$exists" -> present == (Boolean) arg;
+                case "$gt" -> present && compare(value, arg) > 0;
+                case "$gte" -> present && compare(value, arg) >= 0;
+                case "$lt" -> present && compare(value, arg) < 0;
+                case "$lte" -> present && compare(value, arg) <= 0;
+                default -> throw new UnsupportedOperationException("query operator " + op.getKey());
+            };
+            if (!ok)
+                return false;
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Document> clauses(Object value) {
+        return new ArrayList<>((Collection<Document>) value);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object value, Object arg) {
+        Object a = normalize(value);
+        Object b = normalize(arg);
+        if (a == null || b == null || a.getClass() != b.getClass())
+            return a == null ? -1 : 1;
+        return ((Comparable) a).compareTo(b);
+    }
+
+    // Compares dates and instants by time, numbers by value and enums by name, as they are stored.
+    private static Object normalize(Object value) {
+        if (value instanceof Date d)
+            return d.getTime();
+        if (value instanceof Instant i)
+            return i.toEpochMilli();
+        if (value instanceof Number n)
+            return n instanceof Double || n instanceof Float ? (Object) n.doubleValue() : (Object) n.longValue();
+        if (value instanceof Enum<?> e)
+            return e.name();
+        return value;
+    }
+
+    private static BsonValue id(Object id) {
+        if (id instanceof ObjectId o)
+            return new BsonObjectId(o);
+        if (id instanceof Integer i)
+            return new BsonInt32(i);
+        return new BsonString(String.valueOf(id));
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.demo.cluster;
+
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonInt32;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Runs the coordinator's heartbeat against an in-memory lease table that applies the filters the
+// coordinator relies on: leases are only taken when free, and only released by their owner.
+@DisabledInNativeImage
+class PartitionCoordinatorTest {
+
+    private static final int PARTITIONS = 8;
+
+    private final ReactiveMongoTemplate mongo = mock(ReactiveMongoTemplate.class);
+    private final Map<Integer, String> leases = new ConcurrentHashMap<>();
+    private final List<String> live = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(mongo.upsert(any(Query.class), any(UpdateDefinition.class), eq(PartitionCoordinator.NODES)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(mongo.find(any(Query.class), eq(Document.class), eq(PartitionCoordinator.NODES)))
+                .thenAnswer(inv -> Flux.fromIterable(List.copyOf(live)).map(id -> new Document("_id", id)));
+        when(mongo.find(any(Query.class), eq(Document.class), eq(PartitionCoordinator.LEASES)))
+                .thenAnswer(inv -> {
+                    Object owner = inv.<Query>getArgument(0).getQueryObject().get("owner");
+                    return Flux.fromIterable(Set.copyOf(leases.entrySet()))
+                            .filter(e -> !(owner instanceof String) || e.getValue().equals(owner))
+                            .map(e -> new Document("_id", e.getKey()));
+                });
+        when(mongo.upsert(any(Query.class), any(UpdateDefinition.class), eq(PartitionCoordinator.LEASES)))
+                .thenAnswer(inv -> {
+                    Document filter = inv.<Query>getArgument(0).getQueryObject();
+                    Document set = inv.<UpdateDefinition>getArgument(1).getUpdateObject().get("$set", Document.class);
+                    int partition = filter.getInteger("_id");
+                    boolean claimed = leases.putIfAbsent(partition, set.getString("owner")) == null;
+                    return Mono.just(claimed ? UpdateResult.acknowledged(0, 0L, new BsonInt32(partition))
+                            : UpdateResult.acknowledged(0, 0L, null));
+                });
+        when(mongo.updateMulti(any(Query.class), any(UpdateDefinition.class), eq(PartitionCoordinator.LEASES)))
+                .thenAnswer(inv -> {
+                    Document filter = inv.<Query>getArgument(0).getQueryObject();
+                    if (inv.<UpdateDefinition>getArgument(1).getUpdateObject().containsKey("$unset")) {
+                        Object ids = filter.get("_id");
+                        Collection<?> released = ids instanceof Document in ? (Collection<?>) in.get("$in") : leases.keySet();
+                        leases.entrySet().removeIf(e -> released.contains(e.getKey()) && e.getValue().equals(filter.get("owner")));
+                    }
+                    return Mono.just(UpdateResult.acknowledged(0, 0L, null));
+                });
+    }
+
+    @Test
+    @DisplayName("a lone node claims every partition and reports them as gained")
+    void loneNodeOwnsAll() {
+        live.add("a");
+        PartitionCoordinator a = node("a", Duration.ofSeconds(15));
+        List<Set<Integer>> gained = new ArrayList<>();
+        a.onGain(gained::add);
+
+        a.tick().block();
+
+        assertThat(a.owned()).hasSize(PARTITIONS);
+        assertThat(gained).containsExactly(a.owned());
+        a.tick().block();
+        assertThat(gained).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("partitions rebalance to a fair share when a node joins, without being owned twice")
+    void rebalancesOnJoin() {
+        live.add("a");
+        PartitionCoordinator a = node("a", Duration.ofSeconds(15));
+        a.tick().block();
+        live.add("b");
+        PartitionCoordinator b = node("b", Duration.ofSeconds(15));
+
+        b.tick().block();
+        assertThat(b.owned()).isEmpty();
+        a.tick().block();
+        b.tick().block();
+
+        assertThat(a.owned()).hasSize(PARTITIONS / 2);
+        assertThat(b.owned()).hasSize(PARTITIONS / 2).doesNotContainAnyElementsOf(a.owned());
+        assertThat(b.owned()).allSatisfy(p -> assertThat(leases).containsEntry(p, "b"));
+    }
+
+    @Test
+    @DisplayName("a node that stops renewing loses its partitions locally and gains them again on renewal")
+    void ownershipLapsesWithoutRenewal() throws InterruptedException {
+        live.add("a");
+        PartitionCoordinator a = node("a", Duration.ofMillis(200));
+        List<Set<Integer>> gained = new ArrayList<>();
+        a.onGain(gained::add);
+        a.tick().block();
+        assertThat(a.owns(0)).isTrue();
+
+        Thread.sleep(150);
+        assertThat(a.owns(0)).isFalse();
+        assertThat(a.owned()).isEmpty();
+
+        a.tick().block();
+        assertThat(a.owns(0)).isTrue();
+        assertThat(gained).hasSize(2);
+    }
+
+    private PartitionCoordinator node(String id, Duration leaseTtl) {
+        ClusterProperties props = new ClusterProperties();
+        props.setNodeId(id);
+        props.setPartitions(PARTITIONS);
+        props.setLeaseTtl(leaseTtl);
+        return new PartitionCoordinator(mongo, props, new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.demo.config;
+
+import com.example.demo.dto.TaskDto;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CodecConfigTest {
+
+    private final ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+    private final CodecConfig.StreamingCborEncoder encoder = new CodecConfig.StreamingCborEncoder(cbor);
+
+    @Test
+    @DisplayName("a Flux is encoded as one CBOR array that Jackson reads back")
+    void encodesFluxAsArray() throws Exception {
+        Flux<DataBuffer> out = encoder.encode(Flux.just(task("t1"), task("t2")), DefaultDataBufferFactory.sharedInstance,
+                ResolvableType.forClass(TaskDto.class), MediaType.APPLICATION_CBOR, Map.of());
+
+        DataBuffer joined = DataBufferUtils.join(out).block();
+        byte[] bytes = new byte[joined.readableByteCount()];
+        joined.read(bytes);
+        List<TaskDto> decoded = cbor.readValue(bytes, new TypeReference<>() {
+        });
+
+        assertThat(decoded).extracting(TaskDto::getId).containsExactly("t1", "t2");
+    }
+
+    @Test
+    @DisplayName("elements are written as they arrive instead of after the Flux completes")
+    void streamsElements() {
+        Sinks.Many<TaskDto> source = Sinks.many().unicast().onBackpressureBuffer();
+        Flux<DataBuffer> out = encoder.encode(source.asFlux(), DefaultDataBufferFactory.sharedInstance,
+                ResolvableType.forClass(TaskDto.class), MediaType.APPLICATION_CBOR, Map.of());
+
+        StepVerifier.create(out)
+                .assertNext(start -> assertThat(start.readableByteCount()).isEqualTo(1))
+                .then(() -> source.tryEmitNext(task("t1")))
+                .assertNext(element -> assertThat(element.readableByteCount()).isGreaterThan(1))
+                .then(source::tryEmitComplete)
+                .assertNext(end -> assertThat(end.readableByteCount()).isEqualTo(1))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("a Mono is encoded as a single value")
+    void encodesMonoAsValue() throws Exception {
+        DataBuffer out = DataBufferUtils.join(encoder.encode(Mono.just(task("t1")), DefaultDataBufferFactory.sharedInstance,
+                ResolvableType.forClass(TaskDto.class), MediaType.APPLICATION_CBOR, Map.of())).block();
+        byte[] bytes = new byte[out.readableByteCount()];
+        out.read(bytes);
+
+        assertThat(cbor.readValue(bytes, TaskDto.class).getId()).isEqualTo("t1");
+    }
+
+    private static TaskDto task(String id) {
+        TaskDto d = new TaskDto();
+        d.setId(id);
+        d.setTitle("title " + id);
+        return d;
+    }
+}
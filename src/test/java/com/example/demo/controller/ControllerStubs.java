@@ -0,0 +1,218 @@
+package com.example.demo.controller;
+
+import com.example.demo.cluster.ClusterProperties;
+import com.example.demo.cluster.PartitionedWork;
+import com.example.demo.config.MongoTuningProperties;
+import com.example.demo.dto.TaskCreateRequest;
+import com.example.demo.dto.TaskDto;
+import com.example.demo.dto.TaskEventDto;
+import com.example.demo.dto.TaskUpdateRequest;
+import com.example.demo.dto.UserCreateRequest;
+import com.example.demo.dto.UserDashboardDto;
+import com.example.demo.dto.UserDto;
+import com.example.demo.dto.UserUpdateRequest;
+import com.example.demo.mapper.TaskMapper;
+import com.example.demo.mapper.UserMapper;
+import com.example.demo.resilience.ResilienceProperties;
+import com.example.demo.resilience.ResilientRepositories;
+import com.example.demo.service.Idempotency;
+import com.example.demo.service.Tagged;
+import com.example.demo.service.TaskService;
+import com.example.demo.service.UserService;
+import com.example.demo.tenant.TenantProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The services behind the controllers in the controller slice tests. They are hand-written stubs
+// rather than @MockBean mocks, so the tests also run with AOT processing and in a native image. Each
+// stub answers a call with what the test set for it, keyed by the method name and the arguments the
+// tests match on, e.g. "get t1 null". A call with no answer fails. Idempotency is the real one: without
+// an Idempotency-Key header it just runs the action.
+@TestConfiguration
+class ControllerStubs {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    @Bean
+    PartitionedWork partitionedWork() {
+        return new PartitionedWork(null, null, new ClusterProperties(), registry);
+    }
+
+    @Bean
+    Tasks taskService(PartitionedWork work) {
+        return new Tasks(registry, work);
+    }
+
+    @Bean
+    Users userService() {
+        return new Users(registry);
+    }
+
+    @Bean
+    Idempotency idempotency() {
+        return new Idempotency(null, new ObjectMapper(), registry, 100, Duration.ofSeconds(30));
+    }
+
+    static class Answers {
+        private final Map<String, Object> answers = new ConcurrentHashMap<>();
+
+        void answer(String call, Object result) {
+            answers.put(call, result);
+        }
+
+        void reset() {
+            answers.clear();
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> T get(String call) {
+            Object result = answers.get(call);
+            if (result == null)
+                throw new IllegalStateException("no answer for " + call);
+            return (T) result;
+        }
+    }
+
+    static class Tasks extends TaskService {
+        private final Answers answers = new Answers();
+
+        Tasks(MeterRegistry registry, PartitionedWork work) {
+            super(null, new TaskMapper(), null, null, null, null, new MongoTuningProperties(),
+                    new ResilientRepositories(new ResilienceProperties(), null, registry), registry, new TenantProperties(),
+                    null, null, null, null, null, work);
+        }
+
+        void answer(String call, Object result) {
+            answers.answer(call, result);
+        }
+
+        void reset() {
+            answers.reset();
+        }
+
+        @Override
+        public Mono<Tagged<List<TaskDto>>> list(String fields) {
+            return answers.get("list " + fields);
+        }
+
+        @Override
+        public Mono<Tagged<Flux<DataBuffer>>> listJson(DataBufferFactory buffers) {
+            return answers.get("listJson");
+        }
+
+        @Override
+        public Flux<TaskDto> ready() {
+            return answers.get("ready");
+        }
+
+        @Override
+        public Mono<Tagged<TaskDto>> get(String id, String fields) {
+            return answers.get("get " + id + " " + fields);
+        }
+
+        @Override
+        public Flux<TaskEventDto> history(String id) {
+            return answers.get("history " + id);
+        }
+
+        @Override
+        public Mono<TaskDto> create(TaskCreateRequest req) {
+            return answers.get("create");
+        }
+
+        @Override
+        public Mono<TaskDto> update(String id, TaskUpdateRequest req) {
+            return answers.get("update " + id);
+        }
+
+        @Override
+        public Mono<TaskDto> assign(String taskId, String assigneeId) {
+            return answers.get("assign " + taskId + " " + assigneeId);
+        }
+
+        @Override
+        public Mono<TaskDto> unassign(String taskId) {
+            return answers.get("unassign " + taskId);
+        }
+
+        @Override
+        public Mono<Void> delete(String id) {
+            return answers.get("delete " + id);
+        }
+
+        @Override
+        public CompletableFuture<TaskDto> assignAsync(String taskId, String assigneeId, String tenant) {
+            return answers.get("assignAsync " + taskId + " " + assigneeId);
+        }
+
+        @Override
+        public CompletableFuture<TaskDto> unassignAsync(String taskId, String tenant) {
+            return answers.get("unassignAsync " + taskId);
+        }
+
+        @Override
+        public Flux<TaskDto> next(String assigneeId, int k) {
+            return answers.get("next " + assigneeId + " " + k);
+        }
+    }
+
+    static class Users extends UserService {
+        private final Answers answers = new Answers();
+
+        Users(MeterRegistry registry) {
+            super(null, null, new UserMapper(), null, null, new MongoTuningProperties(),
+                    new ResilientRepositories(new ResilienceProperties(), null, registry), registry, null, null, true);
+        }
+
+        void answer(String call, Object result) {
+            answers.answer(call, result);
+        }
+
+        void reset() {
+            answers.reset();
+        }
+
+        @Override
+        public Mono<Tagged<List<UserDto>>> list(String fields) {
+            return answers.get("list " + fields);
+        }
+
+        @Override
+        public Mono<Tagged<UserDto>> get(String id, String fields, boolean fresh) {
+            return answers.get("get " + id + " " + fields + " " + fresh);
+        }
+
+        @Override
+        public Mono<UserDashboardDto> dashboard(String id) {
+            return answers.get("dashboard " + id);
+        }
+
+        @Override
+        public Mono<UserDto> create(UserCreateRequest req) {
+            return answers.get("create");
+        }
+
+        @Override
+        public Mono<UserDto> update(String id, UserUpdateRequest req) {
+            return answers.get("update " + id);
+        }
+
+        @Override
+        public Mono<Void> delete(String id) {
+            return answers.get("delete " + id);
+        }
+    }
+}
@@ -1,38 +1,44 @@
 package com.example.demo.controller;
 
-import com.example.demo.dto.TaskCreateRequest;
 import com.example.demo.dto.TaskDto;
-import com.example.demo.dto.TaskUpdateRequest;
-import com.example.demo.service.TaskService;
+import com.example.demo.service.Tagged;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
-import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
-import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.eq;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
 
 @WebFluxTest(controllers = TaskController.class)
+@Import(ControllerStubs.class)
 class TaskControllerTest {
 
     @Autowired
     private WebTestClient webTestClient;
 
-    @MockBean
-    private TaskService taskService;
+    @Autowired
+    private ControllerStubs.Tasks taskService;
 
     private TaskDto t1;
     private TaskDto t2;
 
     @BeforeEach
     void setUp() {
+        taskService.reset();
+
         t1 = new TaskDto();
         t1.setId("t1");
         t1.setTitle("Buy milk");
@@ -51,7 +57,11 @@ class TaskControllerTest {
     @Test
     @DisplayName("GET /tasks -> 200 + list")
     void listTasks() {
-        Mockito.when(taskService.list()).thenReturn(Flux.just(t1, t2));
+        String json = """
+                [{"id":"t1","title":"Buy milk"},{"id":"t2","title":"Pay bills","assigneeId":"u1"}]
+                """;
+        DataBuffer body = DefaultDataBufferFactory.sharedInstance.wrap(json.getBytes(StandardCharsets.UTF_8));
+        taskService.answer("listJson", Mono.just(new Tagged<>("\"tasks-1\"", Flux.just(body))));
 
         webTestClient.get()
                 .uri("/tasks")
@@ -59,6 +69,7 @@ class TaskControllerTest {
                 .exchange()
                 .expectStatus().isOk()
                 .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_JSON)
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"tasks-1\"")
                 .expectBody()
                 .jsonPath("$[0].id").isEqualTo("t1")
                 .jsonPath("$[0].title").isEqualTo("Buy milk")
@@ -67,24 +78,96 @@ class TaskControllerTest {
     }
 
     @Test
-    @DisplayName("GET /tasks/{id} -> 200 + item")
+    @DisplayName("GET /tasks?fields= -> 200 + only the selected fields")
+    void listTasksWithFields() {
+        t1.project(Set.of("id", "status"));
+        t2.project(Set.of("id", "status"));
+        taskService.answer("list id,status", Mono.just(new Tagged<>("\"tasks-1;id,status\"", List.of(t1, t2))));
+
+        webTestClient.get()
+                .uri("/tasks?fields=id,status")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"tasks-1;id,status\"")
+                .expectBody()
+                .jsonPath("$[0].id").isEqualTo("t1")
+                .jsonPath("$[0].status").isEqualTo("OPEN")
+                .jsonPath("$[0].title").doesNotHaveJsonPath()
+                .jsonPath("$[1].status").isEqualTo("IN_PROGRESS")
+                .jsonPath("$[1].assigneeId").doesNotHaveJsonPath();
+    }
+
+    @Test
+    @DisplayName("GET /tasks/{id}?fields= -> selected null fields are kept")
+    void getTaskWithFields() {
+        t1.project(Set.of("id", "assigneeId"));
+        taskService.answer("get t1 id,assigneeId", Mono.just(new Tagged<>("\"t1-3;assigneeId,id\"", t1)));
+
+        webTestClient.get()
+                .uri("/tasks/{id}?fields=id,assigneeId", "t1")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .json("{\"id\":\"t1\",\"assigneeId\":null}", true);
+    }
+
+    @Test
+    @DisplayName("GET /tasks/{id} -> 200 + item + ETag")
     void getTask() {
-        Mockito.when(taskService.get("t1")).thenReturn(Mono.just(t1));
+        taskService.answer("get t1 null", Mono.just(new Tagged<>("\"t1-3\"", t1)));
 
         webTestClient.get()
                 .uri("/tasks/{id}", "t1")
                 .accept(MediaType.APPLICATION_JSON)
                 .exchange()
                 .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"t1-3\"")
+                .expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT)
                 .expectBody()
                 .jsonPath("$.id").isEqualTo("t1")
-                .jsonPath("$.title").isEqualTo("Buy milk");
+                .jsonPath("$.title").isEqualTo("Buy milk")
+                .jsonPath("$.assigneeId").hasJsonPath()
+                .jsonPath("$.assigneeId").isEmpty();
+    }
+
+    @Test
+    @DisplayName("GET /tasks/{id} with matching If-None-Match -> 304")
+    void getTaskNotModified() {
+        taskService.answer("get t1 null", Mono.just(new Tagged<>("\"t1-3\"", t1)));
+
+        webTestClient.get()
+                .uri("/tasks/{id}", "t1")
+                .accept(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"t1-3\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"t1-3\"")
+                .expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    @DisplayName("GET /tasks/{id} with stale If-None-Match -> 200")
+    void getTaskModified() {
+        taskService.answer("get t1 null", Mono.just(new Tagged<>("\"t1-4\"", t1)));
+
+        webTestClient.get()
+                .uri("/tasks/{id}", "t1")
+                .accept(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"t1-3\"")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"t1-4\"")
+                .expectBody()
+                .jsonPath("$.id").isEqualTo("t1");
     }
 
     @Test
     @DisplayName("POST /tasks -> 200 + created dto")
     void createTask() {
-        Mockito.when(taskService.create(any(TaskCreateRequest.class))).thenReturn(Mono.just(t1));
+        taskService.answer("create", Mono.just(t1));
 
         String body = """
                 { "title":"Buy milk", "description":"2L", "status":"OPEN" }
@@ -105,7 +188,7 @@ class TaskControllerTest {
     @Test
     @DisplayName("PUT /tasks/{id} -> 200 + updated dto")
     void updateTask() {
-        Mockito.when(taskService.update(eq("t2"), any(TaskUpdateRequest.class))).thenReturn(Mono.just(t2));
+        taskService.answer("update t2", Mono.just(t2));
 
         String body = """
                 { "title":"Pay bills", "status":"IN_PROGRESS" }
@@ -123,10 +206,24 @@ class TaskControllerTest {
                 .jsonPath("$.status").isEqualTo("IN_PROGRESS");
     }
 
+    @Test
+    @DisplayName("PUT /tasks/{id} losing a version race -> 409")
+    void updateTaskConflict() {
+        taskService.answer("update t2", Mono.error(new OptimisticLockingFailureException("version changed")));
+
+        webTestClient.put()
+                .uri("/tasks/{id}", "t2")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue("{ \"title\":\"Pay bills\" }")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT);
+    }
+
     @Test
     @DisplayName("PUT /tasks/{id}/assignee -> 200 + dto")
     void assignTask() {
-        Mockito.when(taskService.assign("t1", "u1")).thenReturn(Mono.just(t2));
+        taskService.answer("assign t1 u1", Mono.just(t2));
 
         String body = """
                 { "assigneeId":"u1" }
@@ -154,7 +251,7 @@ class TaskControllerTest {
         unassigned.setStatus("IN_PROGRESS");
         unassigned.setAssigneeId(null);
 
-        Mockito.when(taskService.unassign("t2")).thenReturn(Mono.just(unassigned));
+        taskService.answer("unassign t2", Mono.just(unassigned));
 
         webTestClient.delete()
                 .uri("/tasks/{id}/assignee", "t2")
@@ -169,7 +266,7 @@ class TaskControllerTest {
     @Test
     @DisplayName("DELETE /tasks/{id} -> 200")
     void deleteTask() {
-        Mockito.when(taskService.delete("t1")).thenReturn(Mono.empty());
+        taskService.answer("delete t1", Mono.empty());
 
         webTestClient.delete()
                 .uri("/tasks/{id}", "t1")
@@ -1,16 +1,15 @@
 package com.example.demo.controller;
 
-import com.example.demo.dto.UserCreateRequest;
+import com.example.demo.dto.TaskDto;
 import com.example.demo.dto.UserDto;
-import com.example.demo.dto.UserUpdateRequest;
-import com.example.demo.service.UserService;
+import com.example.demo.service.Tagged;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
-import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
-import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
@@ -18,23 +17,27 @@ import reactor.core.publisher.Mono;
 
 import java.util.List;
 
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.eq;
-
 @WebFluxTest(controllers = UserController.class)
+@Import(ControllerStubs.class)
 class UserControllerTest {
 
     @Autowired
     private WebTestClient webTestClient;
 
-    @MockBean
-    private UserService userService;
+    @Autowired
+    private ControllerStubs.Users userService;
+
+    @Autowired
+    private ControllerStubs.Tasks taskService;
 
     private UserDto u1;
     private UserDto u2;
 
     @BeforeEach
     void setUp() {
+        userService.reset();
+        taskService.reset();
+
         u1 = new UserDto();
         u1.setId("u1");
         u1.setName("Ada Lovelace");
@@ -51,7 +54,7 @@ class UserControllerTest {
     @Test
     @DisplayName("GET /users -> 200 + list")
     void listUsers() {
-        Mockito.when(userService.list()).thenReturn(Flux.just(u1, u2));
+        userService.answer("list null", Mono.just(new Tagged<>("\"users-1\"", List.of(u1, u2))));
 
         webTestClient.get()
                 .uri("/users")
@@ -68,7 +71,7 @@ class UserControllerTest {
     @Test
     @DisplayName("GET /users/{id} -> 200 + item")
     void getUser() {
-        Mockito.when(userService.get("u1")).thenReturn(Mono.just(u1));
+        userService.answer("get u1 null false", Mono.just(new Tagged<>("\"u1-0-1\"", u1)));
 
         webTestClient.get()
                 .uri("/users/{id}", "u1")
@@ -81,10 +84,62 @@ class UserControllerTest {
                 .jsonPath("$.taskIds[1]").isEqualTo("t2");
     }
 
+    @Test
+    @DisplayName("GET /users/{id} with Cache-Control: no-cache -> fresh read")
+    void getUserFresh() {
+        userService.answer("get u1 id,name true", Mono.just(new Tagged<>("\"u1-0;id,name\"", u1)));
+
+        webTestClient.get()
+                .uri("/users/{id}?fields=id,name", "u1")
+                .accept(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.id").isEqualTo("u1");
+    }
+
+    @Test
+    @DisplayName("GET /users with matching If-None-Match -> 304")
+    void listUsersNotModified() {
+        userService.answer("list null", Mono.just(new Tagged<>("\"users-1\"", List.of(u1, u2))));
+
+        webTestClient.get()
+                .uri("/users")
+                .accept(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"users-1\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    @DisplayName("GET /users/{id}/next -> 200 + tasks by priority")
+    void nextTasks() {
+        TaskDto high = new TaskDto();
+        high.setId("t2");
+        high.setPriority(9);
+        TaskDto low = new TaskDto();
+        low.setId("t1");
+        low.setPriority(1);
+        taskService.answer("next u1 2", Flux.just(high, low));
+
+        webTestClient.get()
+                .uri("/users/{id}/next?k=2", "u1")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].id").isEqualTo("t2")
+                .jsonPath("$[0].priority").isEqualTo(9)
+                .jsonPath("$[1].id").isEqualTo("t1");
+    }
+
     @Test
     @DisplayName("POST /users -> 200 + created dto")
     void createUser() {
-        Mockito.when(userService.create(any(UserCreateRequest.class))).thenReturn(Mono.just(u1));
+        userService.answer("create", Mono.just(u1));
 
         String body = """
                 { "name": "Ada Lovelace", "email": "ada@example.com" }
@@ -105,7 +160,7 @@ class UserControllerTest {
     @Test
     @DisplayName("PUT /users/{id} -> 200 + updated dto")
     void updateUser() {
-        Mockito.when(userService.update(eq("u2"), any(UserUpdateRequest.class))).thenReturn(Mono.just(u2));
+        userService.answer("update u2", Mono.just(u2));
 
         String body = """
                 { "name": "Grace H.", "email": "grace@example.com" }
@@ -126,7 +181,7 @@ class UserControllerTest {
     @Test
     @DisplayName("DELETE /users/{id} -> 200")
     void deleteUser() {
-        Mockito.when(userService.delete("u1")).thenReturn(Mono.empty());
+        userService.answer("delete u1", Mono.empty());
 
         webTestClient.delete()
                 .uri("/users/{id}", "u1")
@@ -0,0 +1,134 @@
+package com.example.demo.mapper;
+
+import com.example.demo.config.ProjectionModule;
+import com.example.demo.entity.Task;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.bson.BsonBinary;
+import org.bson.BsonRegularExpression;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.Decimal128;
+import org.bson.types.MaxKey;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TaskJsonWriterTest {
+
+    private final MappingMongoConverter converter = converter();
+    private final TaskMapper mapper = new TaskMapper();
+    private final ObjectMapper json = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .modulesToInstall(new ProjectionModule())
+            .build();
+    private final TaskJsonWriter writer = new TaskJsonWriter(converter, mapper, json);
+
+    @Test
+    @DisplayName("a complete task is written exactly as Jackson writes its DTO")
+    void matchesJackson() throws Exception {
+        assertSameAsJackson(task()
+                .append("description", "Quarterly \"report\"\\ \n\t\r\b\f \u0001\u001f é ✓ 😀 </script>"));
+    }
+
+    @Test
+    @DisplayName("missing and null fields are written as null")
+    void writesNulls() throws Exception {
+        assertSameAsJackson(new Document("_id", "t1"));
+        assertSameAsJackson(new Document("_id", "t1").append("title", null).append("priority", null)
+                .append("dependsOn", Arrays.asList("a", null)).append("dueAt", null).append("version", null));
+        assertSameAsJackson(new Document("title", "no id"));
+    }
+
+    @Test
+    @DisplayName("values the converter has to change take the converter and Jackson path")
+    void fallsBackForConvertedValues() throws Exception {
+        assertSameAsJackson(task().append("priority", 2.0));
+        assertSameAsJackson(task().append("priority", Double.NaN));
+        assertSameAsJackson(task().append("priority", 7L));
+        assertSameAsJackson(task().append("version", 3.0));
+        assertSameAsJackson(task().append("title", 42));
+        assertSameAsJackson(task().append("dependsOn", List.of("a", 1)));
+    }
+
+    @Test
+    @DisplayName("fields the DTO does not have are skipped whatever their BSON type")
+    void skipsUnknownTypes() throws Exception {
+        assertSameAsJackson(task()
+                .append("decimal", new Decimal128(new BigDecimal("1.5")))
+                .append("binary", new BsonBinary(new byte[]{1, 2, 3}))
+                .append("regex", new BsonRegularExpression("^a.*", "i"))
+                .append("timestamp", new BsonTimestamp(1, 2))
+                .append("max", new MaxKey())
+                .append("nested", new Document("a", List.of(1, 2)))
+                .append("ratio", Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    @DisplayName("every element after the first is preceded by a comma")
+    void separatesElements() throws Exception {
+        RawBsonDocument raw = raw(task());
+        String first = text(writer.write(raw.getByteBuffer().asNIO(), DefaultDataBufferFactory.sharedInstance, true));
+        String next = text(writer.write(raw.getByteBuffer().asNIO(), DefaultDataBufferFactory.sharedInstance, false));
+
+        assertThat(next).isEqualTo("," + first);
+    }
+
+    private void assertSameAsJackson(Document doc) throws Exception {
+        RawBsonDocument raw = raw(doc);
+        String expected = json.writeValueAsString(mapper.toDto(converter.read(Task.class, raw.decode(new DocumentCodec()))));
+        String actual = text(writer.write(raw.getByteBuffer().asNIO(), DefaultDataBufferFactory.sharedInstance, true));
+
+        assertThat(actual).isEqualTo(expected);
+        json.readTree(actual);
+    }
+
+    private static Document task() {
+        return new Document("_id", new ObjectId())
+                .append("title", "Report")
+                .append("description", "Q3")
+                .append("status", "IN_PROGRESS")
+                .append("assigneeId", "u-101")
+                .append("priority", 5)
+                .append("dependsOn", List.of(new ObjectId().toHexString(), "t-2"))
+                .append("dueAt", new Date(1_760_000_123_456L))
+                .append("version", 3L)
+                .append("_class", Task.class.getName());
+    }
+
+    private static RawBsonDocument raw(Document doc) {
+        return new RawBsonDocument(doc, new DocumentCodec());
+    }
+
+    private static String text(DataBuffer buffer) {
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+
+    private static MappingMongoConverter converter() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext context = new MongoMappingContext();
+        context.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        context.afterPropertiesSet();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+}
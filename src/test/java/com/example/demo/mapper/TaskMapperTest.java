@@ -0,0 +1,47 @@
+package com.example.demo.mapper;
+
+import com.example.demo.dto.TaskUpdateRequest;
+import com.example.demo.entity.Task;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TaskMapperTest {
+
+    private final TaskMapper mapper = new TaskMapper();
+
+    @Test
+    @DisplayName("merge keeps fields the update leaves out")
+    void mergeKeepsMissingFields() {
+        Task merged = mapper.merge(task(), new TaskUpdateRequest());
+
+        assertThat(merged.getTitle()).isEqualTo("title");
+        assertThat(merged.getDependsOn()).containsExactly("d1");
+        assertThat(merged.getPriority()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("merge replaces fields the update sets, an empty list clears dependencies")
+    void mergeReplacesSetFields() {
+        TaskUpdateRequest req = new TaskUpdateRequest();
+        req.setDependsOn(List.of());
+        req.setPriority(9);
+
+        Task merged = mapper.merge(task(), req);
+
+        assertThat(merged.getDependsOn()).isEmpty();
+        assertThat(merged.getPriority()).isEqualTo(9);
+    }
+
+    private static Task task() {
+        Task t = new Task();
+        t.setId("t1");
+        t.setTitle("title");
+        t.setDependsOn(List.of("d1"));
+        t.setPriority(5);
+        return t;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.demo.profiling;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.EventType;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.core.io.Resource;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProfilingEndpointTest {
+
+    @TempDir
+    Path dir;
+
+    private Profiler profiler;
+    private ProfilingEndpoint endpoint;
+
+    @BeforeEach
+    void setUp() {
+        ProfilingProperties props = new ProfilingProperties();
+        props.setDumpDir(dir);
+        profiler = new Profiler(props, new SimpleMeterRegistry());
+        profiler.start();
+        endpoint = new ProfilingEndpoint(profiler);
+    }
+
+    @AfterEach
+    void tearDown() {
+        profiler.stop();
+    }
+
+    @Test
+    @DisplayName("the streamed recording leaves out the JVM's arguments, properties and environment, and is deleted once read")
+    void streamsRedactedRecording() throws IOException {
+        StepVerifier.create(endpoint.start("profile", 60L))
+                .assertNext(r -> assertThat(r.getState()).isEqualTo("RUNNING"))
+                .verifyComplete();
+
+        Resource resource = endpoint.stop().block();
+        Path copy = dir.resolve("copy.jfr");
+        try (InputStream in = resource.getInputStream()) {
+            Files.copy(in, copy);
+        }
+
+        assertThat(Files.exists(resource.getFile().toPath())).isFalse();
+        List<String> types = RecordingFile.readAllEvents(copy).stream()
+                .map(RecordedEvent::getEventType)
+                .map(EventType::getName)
+                .distinct()
+                .toList();
+        assertThat(types).isNotEmpty()
+                .doesNotContain("jdk.JVMInformation", "jdk.InitialSystemProperty",
+                        "jdk.InitialEnvironmentVariable", "jdk.SystemProcess");
+    }
+
+    @Test
+    @DisplayName("rejects unknown settings and non-positive durations as bad requests")
+    void rejectsBadArguments() {
+        StepVerifier.create(endpoint.start("nope", 60L)).verifyError(InvalidEndpointRequestException.class);
+        StepVerifier.create(endpoint.start("profile", 0L)).verifyError(InvalidEndpointRequestException.class);
+    }
+}
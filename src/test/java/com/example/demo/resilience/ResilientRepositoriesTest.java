@@ -0,0 +1,161 @@
+package com.example.demo.resilience;
+
+import com.example.demo.entity.Task;
+import com.example.demo.repository.TaskRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Drives a stub TaskRepository that turns slow, failing or conflicting through the guard.
+class ResilientRepositoriesTest {
+
+    enum Mode { HEALTHY, SLOW, FAILING, DUPLICATE }
+
+    private volatile Mode mode = Mode.HEALTHY;
+    private final AtomicInteger calls = new AtomicInteger();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ResilientRepositories guards = new ResilientRepositories(props(), converter(), registry);
+    private final TaskRepository repo = guards.wrap(TaskRepository.class, stub(), "tasks",
+            e -> e instanceof Task t ? t.getId() : null);
+
+    @Test
+    @DisplayName("a slow call times out with 504 and counts as a store failure")
+    void timesOut() {
+        mode = Mode.SLOW;
+
+        StepVerifier.create(repo.findById("t1"))
+                .verifyErrorSatisfies(e -> assertThat(status(e)).isEqualTo(HttpStatus.GATEWAY_TIMEOUT));
+        assertThat(count("failure")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("failures open the breaker, which rejects calls without reaching the store")
+    void shortCircuits() {
+        mode = Mode.FAILING;
+        for (int i = 0; i < 4; i++)
+            StepVerifier.create(repo.findAll()).verifyError(DataAccessResourceFailureException.class);
+        assertThat(guards.guard("tasks").state()).isEqualTo(CircuitBreaker.State.OPEN);
+        int reached = calls.get();
+
+        StepVerifier.create(repo.findAll())
+                .verifyErrorSatisfies(e -> assertThat(status(e)).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+        assertThat(calls).hasValue(reached);
+        assertThat(count("short_circuited")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("single-id reads seen before the outage are served from the fallback until a write evicts them")
+    void servesFallback() {
+        StepVerifier.create(repo.findById("t1"))
+                .assertNext(t -> t.setTitle("edited by the caller"))
+                .verifyComplete();
+        mode = Mode.FAILING;
+
+        StepVerifier.create(repo.findById("t1"))
+                .assertNext(t -> {
+                    assertThat(t.getId()).isEqualTo("t1");
+                    assertThat(t.getTitle()).isNull();
+                    t.setTitle("edited by the caller");
+                })
+                .verifyComplete();
+        StepVerifier.create(repo.findById("t1"))
+                .assertNext(t -> assertThat(t.getTitle()).isNull())
+                .verifyComplete();
+        StepVerifier.create(repo.findById("t2")).verifyError(DataAccessResourceFailureException.class);
+        assertThat(count("fallback")).isEqualTo(2);
+
+        StepVerifier.create(repo.save(task("t1"))).verifyError();
+        StepVerifier.create(repo.findById("t1")).verifyError();
+    }
+
+    @Test
+    @DisplayName("errors the store answered with count neither as failures nor as successes")
+    void ignoresStoreAnswers() {
+        mode = Mode.FAILING;
+        for (int i = 0; i < 3; i++)
+            StepVerifier.create(repo.findAll()).verifyError(DataAccessResourceFailureException.class);
+        mode = Mode.DUPLICATE;
+        for (int i = 0; i < 3; i++)
+            StepVerifier.create(repo.insert(task("t1"))).verifyError(DuplicateKeyException.class);
+        assertThat(guards.guard("tasks").state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(count("ignored")).isEqualTo(3);
+        assertThat(count("success")).isZero();
+
+        mode = Mode.FAILING;
+        StepVerifier.create(repo.findAll()).verifyError(DataAccessResourceFailureException.class);
+
+        assertThat(guards.guard("tasks").state()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    private TaskRepository stub() {
+        return (TaskRepository) Proxy.newProxyInstance(TaskRepository.class.getClassLoader(),
+                new Class<?>[]{TaskRepository.class}, (proxy, method, args) -> {
+                    calls.incrementAndGet();
+                    return switch (method.getName()) {
+                        case "findById", "save", "insert" -> switch (mode) {
+                            case HEALTHY -> Mono.just(args[0] instanceof Task t ? t : task((String) args[0]));
+                            case SLOW -> Mono.never();
+                            case FAILING -> Mono.error(new DataAccessResourceFailureException("connection refused"));
+                            case DUPLICATE -> Mono.error(new DuplicateKeyException("E11000 duplicate key"));
+                        };
+                        case "findAll" -> mode == Mode.FAILING
+                                ? Flux.error(new DataAccessResourceFailureException("connection refused"))
+                                : Flux.just(task("t1"));
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    };
+                });
+    }
+
+    private double count(String outcome) {
+        return registry.get("resilience.calls").tag("outcome", outcome).counter().count();
+    }
+
+    private static HttpStatus status(Throwable e) {
+        return HttpStatus.valueOf(((ResponseStatusException) e).getStatusCode().value());
+    }
+
+    private static Task task(String id) {
+        Task t = new Task();
+        t.setId(id);
+        return t;
+    }
+
+    static MappingMongoConverter converter() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext context = new MongoMappingContext();
+        context.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        context.afterPropertiesSet();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+
+    private static ResilienceProperties props() {
+        ResilienceProperties props = new ResilienceProperties();
+        props.setTimeout(Duration.ofMillis(100));
+        props.setWindow(4);
+        props.setMinimumCalls(4);
+        props.setFailureRate(50);
+        props.setOpenFor(Duration.ofSeconds(30));
+        return props;
+    }
+}
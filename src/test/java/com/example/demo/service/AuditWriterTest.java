@@ -0,0 +1,132 @@
+package com.example.demo.service;
+
+import com.example.demo.StubMongoTemplate;
+import com.example.demo.dto.TaskDto;
+import com.example.demo.entity.TaskEvent;
+import com.example.demo.tenant.TenantProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+// The template counts its calls and answers inserts of events with insert and inserts into the dead
+// letter collection with deadLetter. A retry sees as already written only what an insert put into stored.
+class AuditWriterTest {
+
+    private final List<TaskEvent> stored = new CopyOnWriteArrayList<>();
+    private final AtomicInteger inserts = new AtomicInteger();
+    private final AtomicInteger deadLetters = new AtomicInteger();
+    private final AtomicInteger finds = new AtomicInteger();
+    private volatile Function<Collection<TaskEvent>, Flux<TaskEvent>> insert = batch -> Flux.empty();
+    private volatile Supplier<Flux<TaskEvent>> deadLetter = Flux::empty;
+    private final ReactiveMongoTemplate mongo = new StubMongoTemplate() {
+        @Override
+        public <T> Flux<T> find(Query query, Class<T> type) {
+            finds.incrementAndGet();
+            return Flux.fromIterable(stored).cast(type);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> Flux<T> insert(Collection<? extends T> batch, Class<?> type) {
+            inserts.incrementAndGet();
+            return (Flux<T>) insert.apply((Collection<TaskEvent>) batch);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> Flux<T> insert(Collection<? extends T> batch, String collection) {
+            if (!collection.equals(AuditWriter.DEAD_LETTER))
+                return super.insert(batch, collection);
+            deadLetters.incrementAndGet();
+            return (Flux<T>) deadLetter.get();
+        }
+    };
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AuditWriter writer = new AuditWriter(mongo, new TenantProperties(), registry,
+            10, Duration.ofMillis(10), 100, DataSize.ofMegabytes(1), 2, Duration.ofSeconds(1));
+
+    @AfterEach
+    void tearDown() {
+        writer.close();
+    }
+
+    @Test
+    @DisplayName("a batch that keeps failing is retried a bounded number of times, then parked")
+    void parksAfterRetries() {
+        insert = batch -> Flux.error(new DataAccessResourceFailureException("down"));
+
+        writer.record(TaskEvent.Type.CREATED, "t1", null, task("a")).block();
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> deadLetters.get() == 1);
+        // the counter and the queue gauge are updated once the dead-letter insert has completed
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> {
+            assertThat(registry.get("audit.dead.letter").counter().count()).isEqualTo(1);
+            assertThat(registry.get("audit.queued").gauge().value()).isZero();
+        });
+    }
+
+    @Test
+    @DisplayName("the queue keeps draining after a batch was given up")
+    void keepsDraining() {
+        insert = batch -> inserts.get() <= 3 ? Flux.error(new DataAccessResourceFailureException("down")) : Flux.empty();
+        deadLetter = () -> Flux.error(new DataAccessResourceFailureException("still down"));
+
+        writer.record(TaskEvent.Type.CREATED, "t1", null, task("a")).block();
+        await().atMost(Duration.ofSeconds(5)).until(() -> deadLetters.get() == 1);
+        writer.record(TaskEvent.Type.CREATED, "t2", null, task("b")).block();
+
+        // three attempts for the parked batch, then the next batch goes through
+        await().atMost(Duration.ofSeconds(5)).until(() -> inserts.get() == 4);
+    }
+
+    @Test
+    @DisplayName("a retry after an insert that reached the store does not write the events again")
+    void retriesOnlyMissingEvents() {
+        insert = batch -> {
+            stored.addAll(batch);
+            return Flux.error(new DataAccessResourceFailureException("connection reset after the write"));
+        };
+
+        writer.record(TaskEvent.Type.CREATED, "t1", null, task("a")).block();
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> finds.get() > 0);
+        await().during(Duration.ofMillis(300)).atMost(Duration.ofSeconds(1)).until(() -> inserts.get() == 1);
+        assertThat(deadLetters).hasValue(0);
+        assertThat(stored).singleElement().satisfies(e -> assertThat(e.getId()).isNotNull());
+    }
+
+    @Test
+    @DisplayName("closing writes the last partial batch before returning")
+    void flushesOnClose() {
+        AuditWriter slow = new AuditWriter(mongo, new TenantProperties(), registry,
+                10, Duration.ofHours(1), 100, DataSize.ofMegabytes(1), 2, Duration.ofSeconds(5));
+
+        slow.record(TaskEvent.Type.CREATED, "t1", null, task("a")).block();
+        slow.close();
+
+        assertThat(inserts).hasValue(1);
+    }
+
+    private static TaskDto task(String title) {
+        TaskDto d = new TaskDto();
+        d.setTitle(title);
+        return d;
+    }
+}
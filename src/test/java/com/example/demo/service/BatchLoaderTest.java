@@ -0,0 +1,157 @@
+package com.example.demo.service;
+
+import com.example.demo.StubMongoTemplate;
+import com.example.demo.entity.Task;
+import com.example.demo.resilience.ResilienceProperties;
+import com.example.demo.resilience.ResilientRepositories;
+import com.example.demo.resilience.StoreGuard;
+import com.example.demo.tenant.TenantContext;
+import com.example.demo.tenant.TenantLimiter;
+import com.example.demo.tenant.TenantProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchLoaderTest {
+
+    private final List<Query> queries = new ArrayList<>();
+    private final List<String> tenants = new ArrayList<>();
+    private final List<String> permits = new ArrayList<>();
+    private final List<Sinks.Many<Document>> results = new ArrayList<>();
+    // Every query on tasks is answered by a sink of its own, which the test completes.
+    private final ReactiveMongoTemplate mongo = new StubMongoTemplate() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> Flux<T> find(Query query, Class<T> type, String collection) {
+            Sinks.Many<Document> result = Sinks.many().unicast().onBackpressureBuffer();
+            queries.add(query);
+            results.add(result);
+            return Flux.deferContextual(ctx -> {
+                tenants.add(TenantContext.of(ctx));
+                permits.add(TenantContext.of(ctx) + (TenantLimiter.holds(ctx, TenantContext.of(ctx)) ? " held" : " free"));
+                return (Flux<T>) result.asFlux();
+            });
+        }
+    };
+
+    @Test
+    @DisplayName("an idle loader queries at once")
+    void idleLoadIsNotDelayed() {
+        BatchLoader<Task> loader = loader(1);
+
+        StepVerifier.create(loader.load("t1"))
+                .then(() -> assertThat(queries).hasSize(1))
+                .then(() -> complete(0, doc("t1")))
+                .assertNext(task -> assertThat(task.getTitle()).isEqualTo("title t1"))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("keys arriving while every slot is busy go out as one query")
+    void batchesWhileBusy() {
+        BatchLoader<Task> loader = loader(1);
+
+        StepVerifier.create(Flux.merge(loader.load("t1"), loader.load("t2"), loader.load("t3")))
+                .then(() -> assertThat(queries).hasSize(1))
+                .then(() -> complete(0, doc("t1")))
+                .expectNextCount(1)
+                .then(() -> {
+                    assertThat(queries).hasSize(2);
+                    assertThat(ids(queries.get(1))).containsExactlyInAnyOrder("t2", "t3");
+                })
+                .then(() -> complete(1, doc("t2"), doc("t3")))
+                .expectNextCount(2)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("a free slot is used without waiting for the running query")
+    void usesFreeSlots() {
+        BatchLoader<Task> loader = loader(2);
+
+        loader.load("t1").subscribe();
+        loader.load("t2").subscribe();
+        loader.load("t3").subscribe();
+
+        assertThat(queries).hasSize(2);
+        complete(0, doc("t1"));
+        assertThat(queries).hasSize(3);
+    }
+
+    @Test
+    @DisplayName("a batch is split by tenant")
+    void splitsByTenant() {
+        BatchLoader<Task> loader = loader(1);
+
+        loader.load("t0").subscribe();
+        loader.load("a1").contextWrite(TenantContext.with("acme")).subscribe();
+        loader.load("g1").contextWrite(TenantContext.with("globex")).subscribe();
+        complete(0);
+
+        assertThat(queries).hasSize(3);
+        assertThat(tenants).containsExactlyInAnyOrder(TenantContext.DEFAULT, "acme", "globex");
+    }
+
+    @Test
+    @DisplayName("a batch with a caller that holds a tenant permit is fetched under that permit")
+    void fetchesUnderCallersPermit() {
+        TenantLimiter limiter = new TenantLimiter(new TenantProperties(), new SimpleMeterRegistry());
+        BatchLoader<Task> loader = loader(1);
+
+        loader.load("t0").subscribe();
+        loader.load("t1").subscribe();
+        limiter.run(TenantContext.DEFAULT, loader.load("t2")).subscribe();
+        loader.load("a1").contextWrite(TenantContext.with("acme")).subscribe();
+        complete(0);
+
+        assertThat(permits).containsExactlyInAnyOrder("default free", "default held", "acme free");
+    }
+
+    @Test
+    @DisplayName("missing ids complete empty and a failed query fails its waiters")
+    void missingAndFailed() {
+        BatchLoader<Task> loader = loader(1);
+
+        StepVerifier.create(loader.load("missing"))
+                .then(() -> complete(0))
+                .verifyComplete();
+        StepVerifier.create(loader.load("t1"))
+                .then(() -> results.get(1).tryEmitError(new IllegalStateException("down")))
+                .verifyErrorMessage("down");
+    }
+
+    private BatchLoader<Task> loader(int maxInFlight) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        StoreGuard guard = new ResilientRepositories(new ResilienceProperties(), mongo.getConverter(), registry).guard("tasks");
+        return new BatchLoader<>("tasks.findById", Task.class, null, mongo, guard, 100, maxInFlight, registry);
+    }
+
+    private void complete(int query, Document... docs) {
+        for (Document doc : docs)
+            results.get(query).tryEmitNext(doc);
+        results.get(query).tryEmitComplete();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Collection<String> ids(Query query) {
+        Map<String, Object> in = (Map<String, Object>) query.getQueryObject().get("_id");
+        return (Collection<String>) in.get("$in");
+    }
+
+    private static Document doc(String id) {
+        return new Document("_id", id).append("title", "title " + id);
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.demo.service;
+
+import com.example.demo.StubMongoTemplate;
+import com.example.demo.cluster.ClusterProperties;
+import com.example.demo.cluster.PartitionCoordinator;
+import com.example.demo.entity.Task;
+import com.example.demo.entity.TaskStatus;
+import com.example.demo.event.TaskDueEvent;
+import com.example.demo.tenant.TenantContext;
+import com.example.demo.tenant.TenantProperties;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+// The template answers each load with the next of loads (then nothing) and each marker update with
+// whether the task was still unmarked; loads, updates and published events are recorded.
+class DueDateSchedulerTest {
+
+    private final List<Query> loaded = new CopyOnWriteArrayList<>();
+    private final List<UpdateDefinition> marked = new CopyOnWriteArrayList<>();
+    private final Queue<Flux<Task>> loads = new ConcurrentLinkedQueue<>();
+    private volatile boolean unmarked = true;
+    private final ReactiveMongoTemplate mongo = new StubMongoTemplate() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> Flux<T> find(Query query, Class<T> type) {
+            loaded.add(query);
+            Flux<Task> load = loads.poll();
+            return (Flux<T>) (load != null ? load : Flux.empty());
+        }
+
+        @Override
+        public Mono<UpdateResult> updateFirst(Query query, UpdateDefinition update, Class<?> type) {
+            marked.add(update);
+            return Mono.just(unmarked ? UpdateResult.acknowledged(1, 1L, null) : UpdateResult.acknowledged(0, 0L, null));
+        }
+    };
+    private final List<TaskDueEvent> published = new CopyOnWriteArrayList<>();
+    private final Partitions partitions = new Partitions();
+    private DueDateScheduler scheduler;
+
+    // Owns every task's partition unless told otherwise, and keeps the gain listeners for the test to call.
+    private static final class Partitions extends PartitionCoordinator {
+        private final List<Consumer<Set<Integer>>> listeners = new CopyOnWriteArrayList<>();
+        private volatile boolean owner = true;
+
+        Partitions() {
+            super(null, new ClusterProperties(), new SimpleMeterRegistry());
+        }
+
+        @Override
+        public boolean owns(String key) {
+            return owner;
+        }
+
+        @Override
+        public void onGain(Consumer<Set<Integer>> listener) {
+            listeners.add(listener);
+        }
+
+        void gain(Set<Integer> partitions) {
+            owner = true;
+            listeners.forEach(l -> l.accept(partitions));
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new DueDateScheduler(mongo, e -> published.add((TaskDueEvent) e), new TenantProperties(), partitions,
+                new SimpleMeterRegistry(), Duration.ofMillis(10), Duration.ofMinutes(15), Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.stop();
+    }
+
+    @Test
+    @DisplayName("a task that fell due while no node ran is announced on start")
+    void firesOverdueOnStart() {
+        loads.add(Flux.just(task("t1", Instant.now().minus(2, ChronoUnit.HOURS))));
+
+        scheduler.start();
+
+        TaskDueEvent fired = published(1).get(0);
+        assertThat(fired.taskId()).isEqualTo("t1");
+        assertThat(fired.kind()).isEqualTo(TaskDueEvent.Kind.OVERDUE);
+        assertThat(fired.tenant()).isEqualTo(TenantContext.DEFAULT);
+        assertThat(loaded).hasSize(1);
+        Document filter = loaded.get(0).getQueryObject();
+        assertThat((Document) filter.get("dueAt")).containsOnlyKeys("$lt");
+        assertThat(filter).containsEntry("overdueNotifiedAt", null);
+        assertThat(marked).singleElement()
+                .satisfies(u -> assertThat(u.getUpdateObject().get("$inc", Document.class)).containsEntry("version", 1));
+    }
+
+    @Test
+    @DisplayName("the reminder fires ahead of the overdue event")
+    void remindsThenFiresOverdue() {
+        scheduler.start();
+
+        scheduler.track(TenantContext.DEFAULT, task("t1", Instant.now().plusMillis(300)));
+
+        assertThat(published(2)).extracting(TaskDueEvent::kind)
+                .containsExactly(TaskDueEvent.Kind.REMINDER, TaskDueEvent.Kind.OVERDUE);
+    }
+
+    @Test
+    @DisplayName("nothing is announced when another node or an earlier run already marked the task")
+    void skipsMarkedTasks() {
+        unmarked = false;
+        scheduler.start();
+
+        scheduler.track(TenantContext.DEFAULT, task("t1", Instant.now().minusSeconds(1)));
+
+        await().atMost(Duration.ofSeconds(2)).until(() -> marked.size() == 1);
+        await().during(Duration.ofMillis(200)).atMost(Duration.ofSeconds(1)).until(published::isEmpty);
+    }
+
+    @Test
+    @DisplayName("tasks already notified or done are not scheduled")
+    void ignoresNotifiedAndDone() {
+        scheduler.start();
+        Task notified = task("t1", Instant.now().minusSeconds(1));
+        notified.setOverdueNotifiedAt(Instant.now());
+        Task done = task("t2", Instant.now().minusSeconds(1));
+        done.setStatus(TaskStatus.DONE);
+
+        scheduler.track(TenantContext.DEFAULT, notified);
+        scheduler.track(TenantContext.DEFAULT, done);
+
+        await().during(Duration.ofMillis(200)).atMost(Duration.ofSeconds(1)).until(marked::isEmpty);
+    }
+
+    @Test
+    @DisplayName("the same task id in two tenants is scheduled and forgotten per tenant")
+    void keysByTenant() {
+        scheduler.start();
+        Instant due = Instant.now().plusMillis(100);
+
+        scheduler.track("acme", task("t1", due));
+        scheduler.track("globex", task("t1", due));
+        scheduler.forget("globex", "t1");
+
+        assertThat(published(2)).allSatisfy(e -> assertThat(e.tenant()).isEqualTo("acme"))
+                .extracting(TaskDueEvent::kind)
+                .containsExactly(TaskDueEvent.Kind.REMINDER, TaskDueEvent.Kind.OVERDUE);
+    }
+
+    @Test
+    @DisplayName("events skipped while another node owned the partition fire once the partition is gained")
+    void reloadsGainedPartitions() {
+        partitions.owner = false;
+        Task overdue = task("t1", Instant.now().minusSeconds(1));
+        loads.add(Flux.empty());
+        loads.add(Flux.just(overdue));
+        scheduler.start();
+        scheduler.track(TenantContext.DEFAULT, overdue);
+        await().during(Duration.ofMillis(200)).atMost(Duration.ofSeconds(1)).until(marked::isEmpty);
+
+        partitions.gain(Set.of(partitions.partition("t1")));
+
+        assertThat(published(1).get(0).kind()).isEqualTo(TaskDueEvent.Kind.OVERDUE);
+    }
+
+    private List<TaskDueEvent> published(int count) {
+        await().atMost(Duration.ofSeconds(2)).until(() -> published.size() >= count);
+        await().during(Duration.ofMillis(100)).atMost(Duration.ofSeconds(1)).until(() -> published.size() == count);
+        return published;
+    }
+
+    private static Task task(String id, Instant dueAt) {
+        Task t = new Task();
+        t.setId(id);
+        t.setStatus(TaskStatus.TODO);
+        t.setDueAt(dueAt);
+        return t;
+    }
+}
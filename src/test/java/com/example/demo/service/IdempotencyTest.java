@@ -0,0 +1,171 @@
+package com.example.demo.service;
+
+import com.example.demo.StubMongoTemplate;
+import com.example.demo.dto.TaskDto;
+import com.example.demo.entity.IdempotencyRecord;
+import com.example.demo.repository.IdempotencyRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.repository.query.MongoEntityInformation;
+import org.springframework.data.mongodb.repository.support.MappingMongoEntityInformation;
+import org.springframework.data.mongodb.repository.support.SimpleReactiveMongoRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdempotencyTest {
+
+    private final Map<String, IdempotencyRecord> store = new ConcurrentHashMap<>();
+    private final List<String> lookups = new CopyOnWriteArrayList<>();
+    private final IdempotencyRepository records = new Records();
+    private final AtomicInteger runs = new AtomicInteger();
+
+    // Keeps the records in store and logs the keys looked up; the methods Idempotency does not use go
+    // to a template without a database and fail.
+    private final class Records extends SimpleReactiveMongoRepository<IdempotencyRecord, String> implements IdempotencyRepository {
+
+        Records() {
+            super(entity(), new StubMongoTemplate());
+        }
+
+        @Override
+        public Mono<IdempotencyRecord> findById(String id) {
+            lookups.add(id);
+            return Mono.justOrEmpty(store.get(id));
+        }
+
+        @Override
+        public <S extends IdempotencyRecord> Mono<S> insert(S record) {
+            store.put(record.getId(), record);
+            return Mono.just(record);
+        }
+
+        @Override
+        public <S extends IdempotencyRecord> Mono<S> save(S record) {
+            return Mono.just(record);
+        }
+
+        @Override
+        public Mono<Void> deleteById(String id) {
+            return Mono.fromRunnable(() -> store.remove(id));
+        }
+
+        @SuppressWarnings("unchecked")
+        private static MongoEntityInformation<IdempotencyRecord, String> entity() {
+            return new MappingMongoEntityInformation<>((MongoPersistentEntity<IdempotencyRecord>)
+                    StubMongoTemplate.converter().getMappingContext().getRequiredPersistentEntity(IdempotencyRecord.class));
+        }
+    }
+
+    @Test
+    @DisplayName("a repeated key replays the first response, from memory and from the store")
+    void replays() {
+        StepVerifier.create(idempotency().execute("k1", "create", "body", () -> created("t1")))
+                .assertNext(d -> assertThat(d.getId()).isEqualTo("t1"))
+                .verifyComplete();
+        Idempotency sameInstance = idempotency();
+        StepVerifier.create(sameInstance.execute("k1", "create", "body", () -> created("t2")))
+                .assertNext(d -> assertThat(d.getId()).isEqualTo("t1"))
+                .verifyComplete();
+        StepVerifier.create(sameInstance.execute("k1", "create", "body", () -> created("t3")))
+                .assertNext(d -> assertThat(d.getId()).isEqualTo("t1"))
+                .verifyComplete();
+
+        assertThat(runs).hasValue(1);
+        assertThat(lookups).containsExactly("k1", "k1");
+    }
+
+    @Test
+    @DisplayName("the same key with another body is rejected")
+    void rejectsOtherRequest() {
+        Idempotency idempotency = idempotency();
+        idempotency.execute("k1", "create", "body", () -> created("t1")).block();
+
+        StepVerifier.create(idempotency.execute("k1", "create", "other body", () -> created("t2")))
+                .verifyErrorSatisfies(e -> assertThat(((ResponseStatusException) e).getStatusCode())
+                        .isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY));
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("a client error releases the key so the request can be retried")
+    void releasesOnClientError() {
+        Idempotency idempotency = idempotency();
+        StepVerifier.create(idempotency.execute("k1", "assign", "body",
+                        () -> Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND))))
+                .verifyError(ResponseStatusException.class);
+
+        assertThat(store).doesNotContainKey("k1");
+        StepVerifier.create(idempotency.execute("k1", "assign", "body", () -> created("t1")))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("a failure that may follow the write keeps the claim and is not run again")
+    void keepsClaimOnUnknownOutcome() {
+        Idempotency idempotency = idempotency();
+        StepVerifier.create(idempotency.execute("k1", "create", "body",
+                        () -> Mono.error(new DataAccessResourceFailureException("timeout"))))
+                .verifyError(DataAccessResourceFailureException.class);
+
+        assertThat(store.get("k1").isFailed()).isTrue();
+        StepVerifier.create(idempotency.execute("k1", "create", "body", () -> created("t1")))
+                .verifyErrorSatisfies(e -> assertThat(((ResponseStatusException) e).getStatusCode())
+                        .isEqualTo(HttpStatus.CONFLICT));
+        assertThat(runs).hasValue(0);
+    }
+
+    @Test
+    @DisplayName("a cancelled request keeps the claim")
+    void keepsClaimOnCancel() {
+        idempotency().execute("k1", "create", "body", Mono::never).subscribe().dispose();
+
+        assertThat(store.get("k1").isFailed()).isTrue();
+    }
+
+    @Test
+    @DisplayName("a cached key is not replayed once its record has expired")
+    void cacheFollowsRecordExpiry() {
+        idempotency().execute("k1", "create", "body", () -> created("t1")).block();
+        store.get("k1").setCreatedAt(Instant.now().minus(IdempotencyRecord.TTL).minusSeconds(1));
+
+        Idempotency idempotency = idempotency();
+        idempotency.execute("k1", "create", "body", () -> created("t2")).block();
+        idempotency.execute("k1", "create", "body", () -> created("t3")).block();
+
+        assertThat(lookups).containsExactly("k1", "k1", "k1");
+    }
+
+    private Idempotency idempotency() {
+        return new Idempotency(records, new ObjectMapper(), new SimpleMeterRegistry(), 100, Duration.ofSeconds(1));
+    }
+
+    private Mono<TaskDto> created(String id) {
+        return Mono.fromCallable(() -> {
+            runs.incrementAndGet();
+            return dto(id);
+        });
+    }
+
+    private static TaskDto dto(String id) {
+        TaskDto d = new TaskDto();
+        d.setId(id);
+        return d;
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.InboxEventDto;
+import com.example.demo.entity.Task;
+import com.example.demo.entity.TaskEvent;
+import com.example.demo.entity.TaskStatus;
+import com.example.demo.tenant.TenantProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DisabledInNativeImage
+class InboxHubTest {
+
+    private final ReactiveMongoTemplate mongo = mock(ReactiveMongoTemplate.class);
+    private final BatchLookups lookups = mock(BatchLookups.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("a new assignee gets ASSIGNED and the previous one UNASSIGNED, with the task's current title")
+    void routesReassignment() {
+        InboxHub hub = hub(8, InboxHub.Overflow.DROP);
+        when(lookups.findTask("t1")).thenReturn(Mono.just(task("t1", "Write report", TaskStatus.OPEN, "u2")));
+        List<InboxEventDto> u1 = collect(hub.subscribe("default", "u1"));
+        List<InboxEventDto> u2 = collect(hub.subscribe("default", "u2"));
+
+        hub.route("default", created("t1", "Write report", "u1")).block();
+        hub.route("default", event("t1", TaskEvent.Type.ASSIGNED, Map.of("assigneeId", "u1"), Map.of("assigneeId", "u2"))).block();
+
+        assertThat(u1).extracting(InboxEventDto::getType).containsExactly("ASSIGNED", "UNASSIGNED");
+        assertThat(u2).extracting(InboxEventDto::getType).containsExactly("ASSIGNED");
+        assertThat(u2.get(0).getTitle()).isEqualTo("Write report");
+        assertThat(u2.get(0).getStatus()).isEqualTo("OPEN");
+    }
+
+    @Test
+    @DisplayName("unassigning and deleting reach the assignee as UNASSIGNED")
+    void routesUnassignment() {
+        InboxHub hub = hub(8, InboxHub.Overflow.DROP);
+        when(lookups.findTask("t1")).thenReturn(Mono.just(task("t1", "Write report", TaskStatus.OPEN, null)));
+        List<InboxEventDto> u1 = collect(hub.subscribe("default", "u1"));
+
+        Map<String, Object> unassigned = new HashMap<>();
+        unassigned.put("assigneeId", null);
+        hub.route("default", event("t1", TaskEvent.Type.UNASSIGNED, Map.of("assigneeId", "u1"), unassigned)).block();
+        hub.route("default", event("t2", TaskEvent.Type.DELETED,
+                Map.of("title", "Old", "status", "DONE", "assigneeId", "u1"), null)).block();
+
+        assertThat(u1).extracting(InboxEventDto::getType).containsExactly("UNASSIGNED", "UNASSIGNED");
+        assertThat(u1).extracting(InboxEventDto::getTitle).containsExactly("Write report", "Old");
+        verify(lookups, never()).findTask("t2");
+    }
+
+    @Test
+    @DisplayName("a status change goes to the current assignee; other changes and other tenants get nothing")
+    void routesStatusChange() {
+        InboxHub hub = hub(8, InboxHub.Overflow.DROP);
+        when(lookups.findTask("t1")).thenReturn(Mono.just(task("t1", "Write report", TaskStatus.DONE, "u1")));
+        List<InboxEventDto> u1 = collect(hub.subscribe("default", "u1"));
+        List<InboxEventDto> other = collect(hub.subscribe("acme", "u1"));
+
+        hub.route("default", event("t1", TaskEvent.Type.UPDATED, Map.of("status", "OPEN"), Map.of("status", "DONE"))).block();
+        hub.route("default", event("t1", TaskEvent.Type.UPDATED, Map.of("title", "a"), Map.of("title", "b"))).block();
+
+        assertThat(u1).singleElement().satisfies(e -> {
+            assertThat(e.getType()).isEqualTo("STATUS_CHANGED");
+            assertThat(e.getStatus()).isEqualTo("DONE");
+            assertThat(e.getTitle()).isEqualTo("Write report");
+        });
+        assertThat(other).isEmpty();
+    }
+
+    @Test
+    @DisplayName("DROP discards what does not fit a slow subscriber's buffer and keeps it open")
+    void dropsOnOverflow() {
+        InboxHub hub = hub(8, InboxHub.Overflow.DROP);
+        InboxHub.Inbox inbox = hub.subscribe("default", "u1");
+
+        StepVerifier.create(inbox.events(), 0)
+                .then(() -> assign(hub, 10))
+                .then(() -> {
+                    assertThat(registry.get("inbox.dropped").counter().count()).isEqualTo(2);
+                    assertThat(inbox.overflowed()).isFalse();
+                })
+                .thenRequest(9)
+                .expectNextCount(8)
+                .then(() -> hub.route("default", created("t10", "task 10", "u1")).block())
+                .assertNext(e -> assertThat(e.getTaskId()).isEqualTo("t10"))
+                .thenCancel()
+                .verify();
+        assertThat(registry.get("inbox.connections").gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("CLOSE completes a slow subscriber's inbox after what it had buffered")
+    void closesOnOverflow() {
+        InboxHub hub = hub(8, InboxHub.Overflow.CLOSE);
+        InboxHub.Inbox inbox = hub.subscribe("default", "u1");
+
+        StepVerifier.create(inbox.events(), 0)
+                .then(() -> assign(hub, 10))
+                .then(() -> {
+                    assertThat(inbox.overflowed()).isTrue();
+                    assertThat(registry.get("inbox.closed").counter().count()).isEqualTo(1);
+                })
+                .thenRequest(Long.MAX_VALUE)
+                .expectNextCount(8)
+                .verifyComplete();
+        assertThat(registry.get("inbox.connections").gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("the feed resumes after a failed tail without routing an event twice")
+    void resumesFeed() {
+        InboxHub hub = hub(8, InboxHub.Overflow.DROP);
+        List<InboxEventDto> u1 = collect(hub.subscribe("default", "u1"));
+        TaskEvent first = created("t1", "one", "u1");
+        TaskEvent second = created("t2", "two", "u1");
+        AtomicInteger tails = new AtomicInteger();
+        when(mongo.tail(any(Query.class), eq(TaskEvent.class))).thenAnswer(inv -> tails.getAndIncrement() == 0
+                ? Flux.just(first).concatWith(Flux.error(new IllegalStateException("cursor killed")))
+                : Flux.just(first, second).concatWith(Flux.never()));
+
+        Disposable feed = hub.feed("default", Instant.now()).subscribe();
+        try {
+            await().atMost(Duration.ofSeconds(10)).until(() -> u1.size() == 2);
+            assertThat(u1).extracting(InboxEventDto::getTaskId).containsExactly("t1", "t2");
+        } finally {
+            feed.dispose();
+        }
+    }
+
+    private InboxHub hub(int bufferSize, InboxHub.Overflow overflow) {
+        when(lookups.findTask(anyString())).thenReturn(Mono.empty());
+        return new InboxHub(mongo, lookups, new TenantProperties(), registry, bufferSize, overflow);
+    }
+
+    private static void assign(InboxHub hub, int n) {
+        for (int i = 0; i < n; i++)
+            hub.route("default", created("t" + i, "task " + i, "u1")).block();
+    }
+
+    private static List<InboxEventDto> collect(InboxHub.Inbox inbox) {
+        List<InboxEventDto> received = new ArrayList<>();
+        inbox.events().subscribe(received::add);
+        return received;
+    }
+
+    private static TaskEvent created(String taskId, String title, String assigneeId) {
+        return event(taskId, TaskEvent.Type.CREATED, null, Map.of("title", title, "status", "OPEN", "assigneeId", assigneeId));
+    }
+
+    private static TaskEvent event(String taskId, TaskEvent.Type type, Map<String, Object> before, Map<String, Object> after) {
+        TaskEvent e = new TaskEvent();
+        e.setId(taskId + "-" + type + "-" + System.nanoTime());
+        e.setTaskId(taskId);
+        e.setType(type);
+        e.setAt(Instant.now());
+        e.setBefore(before);
+        e.setAfter(after);
+        return e;
+    }
+
+    private static Task task(String id, String title, TaskStatus status, String assigneeId) {
+        Task t = new Task();
+        t.setId(id);
+        t.setTitle(title);
+        t.setStatus(status);
+        t.setAssigneeId(assigneeId);
+        return t;
+    }
+}
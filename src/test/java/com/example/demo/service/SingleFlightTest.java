@@ -0,0 +1,127 @@
+package com.example.demo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SingleFlightTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final SingleFlight<String, String> flight = new SingleFlight<>("test", registry);
+
+    @Test
+    @DisplayName("callers arriving during a load share one loader call")
+    void sharesRunningLoad() {
+        AtomicInteger loads = new AtomicInteger();
+        Sinks.One<String> source = Sinks.one();
+
+        Mono<String> first = flight.execute("k", () -> {
+            loads.incrementAndGet();
+            return source.asMono();
+        });
+        Mono<String> second = flight.execute("k", () -> {
+            loads.incrementAndGet();
+            return Mono.just("other");
+        });
+
+        StepVerifier.create(Flux.merge(first, second))
+                .then(() -> source.tryEmitValue("v"))
+                .expectNext("v", "v")
+                .verifyComplete();
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("the entry is gone before the result is emitted")
+    void removesBeforeEmitting() {
+        AtomicInteger loads = new AtomicInteger();
+        Sinks.One<String> source = Sinks.one();
+        List<String> seenInside = new ArrayList<>();
+
+        flight.execute("k", () -> {
+                    loads.incrementAndGet();
+                    return source.asMono();
+                })
+                .doOnNext(v -> flight.execute("k", () -> {
+                    loads.incrementAndGet();
+                    return Mono.just("fresh");
+                }).subscribe(seenInside::add))
+                .subscribe();
+        source.tryEmitValue("v");
+
+        assertThat(seenInside).containsExactly("fresh");
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("an error reaches every waiting caller")
+    void sharesError() {
+        Sinks.One<String> source = Sinks.one();
+        Mono<String> first = flight.execute("k", source::asMono);
+        Mono<String> second = flight.execute("k", () -> Mono.just("other"));
+
+        StepVerifier.create(Flux.mergeDelayError(2, first, second))
+                .then(() -> source.tryEmitError(new IllegalStateException("boom")))
+                .verifyErrorSatisfies(e -> assertThat(Exceptions.unwrapMultiple(e))
+                        .hasSize(2)
+                        .allSatisfy(each -> assertThat(each).hasMessage("boom")));
+    }
+
+    @Test
+    @DisplayName("the load is cancelled only after its last subscriber cancels")
+    void cancelsWithLastSubscriber() {
+        AtomicInteger cancels = new AtomicInteger();
+        Mono<String> never = Mono.<String>never().doOnCancel(cancels::incrementAndGet);
+
+        Disposable a = flight.execute("k", () -> never).subscribe();
+        Disposable b = flight.execute("k", () -> never).subscribe();
+        a.dispose();
+        assertThat(cancels).hasValue(0);
+        b.dispose();
+        assertThat(cancels).hasValue(1);
+
+        StepVerifier.create(flight.execute("k", () -> Mono.just("next")))
+                .expectNext("next")
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("under concurrent callers every loader run is a flight that was not coalesced")
+    void neverReloadsForCoalescedCallers() {
+        AtomicInteger loads = new AtomicInteger();
+        int callers = 2_000;
+
+        List<String> results = Flux.range(0, callers)
+                .parallel(8)
+                .runOn(Schedulers.parallel())
+                .flatMap(i -> flight.execute("k", () -> Mono.fromCallable(() -> {
+                            loads.incrementAndGet();
+                            return "v";
+                        })
+                        .delayElement(Duration.ofNanos(50_000), Schedulers.boundedElastic())))
+                .sequential()
+                .collectList()
+                .block(Duration.ofSeconds(30));
+
+        double requests = registry.get("singleflight.requests").counter().count();
+        double coalesced = registry.get("singleflight.coalesced").counter().count();
+        assertThat(results).hasSize(callers).containsOnly("v");
+        assertThat(requests).isEqualTo(callers);
+        assertThat(loads.get()).isEqualTo((int) (requests - coalesced));
+        assertThat(coalesced).isPositive();
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TaskGraphTest {
+
+    private static final String T = "acme";
+
+    private final TaskGraph graph = new TaskGraph();
+
+    @Test
+    @DisplayName("an edge that closes a cycle is rejected")
+    void rejectsCycle() {
+        graph.put(T, "a", List.of(), false);
+        graph.put(T, "b", List.of("a"), false);
+        graph.put(T, "c", List.of("b"), false);
+
+        assertThatThrownBy(() -> graph.requireAcyclic(T, "a", List.of("c")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("cycle");
+        assertThatThrownBy(() -> graph.requireAcyclic(T, "a", List.of("a")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatCode(() -> graph.requireAcyclic(T, "c", List.of("a"))).doesNotThrowAnyException();
+    }
+
+    @Test
+    @DisplayName("unknown dependencies are rejected, also for new tasks")
+    void rejectsUnknownDependency() {
+        graph.put(T, "a", List.of(), false);
+
+        assertThatThrownBy(() -> graph.requireAcyclic(T, null, List.of("a", "missing")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("missing");
+        assertThatCode(() -> graph.requireAcyclic(T, null, List.of("a"))).doesNotThrowAnyException();
+    }
+
+    @Test
+    @DisplayName("a reserved edge counts for the next check, and rolling it back restores the old node")
+    void reservesEdges() {
+        graph.put(T, "a", List.of(), false);
+        graph.put(T, "b", List.of(), false);
+
+        Runnable rollback = graph.reserve(T, "a", List.of("b"), false);
+        assertThatThrownBy(() -> graph.reserve(T, "b", List.of("a"), false))
+                .hasMessageContaining("cycle");
+
+        rollback.run();
+        assertThat(graph.ready(T)).containsExactlyInAnyOrder("a", "b");
+        assertThatCode(() -> graph.reserve(T, "b", List.of("a"), false)).doesNotThrowAnyException();
+    }
+
+    @Test
+    @DisplayName("only dependencies a task gains are checked, so one that disappeared does not block it")
+    void checksAddedDependenciesOnly() {
+        graph.put(T, "a", List.of(), false);
+        graph.put(T, "b", List.of("gone"), false);
+
+        assertThatCode(() -> graph.reserve(T, "b", List.of("gone"), true)).doesNotThrowAnyException();
+        assertThatThrownBy(() -> graph.reserve(T, "b", List.of("gone", "missing"), true))
+                .hasMessageContaining("missing");
+        assertThatCode(() -> graph.reserve(T, "b", List.of("gone", "a"), true)).doesNotThrowAnyException();
+    }
+
+    @Test
+    @DisplayName("a task with dependents cannot be removed; a removal can be rolled back")
+    void removesOnlyUnreferencedTasks() {
+        graph.put(T, "a", List.of(), false);
+        graph.put(T, "b", List.of("a"), false);
+
+        assertThatThrownBy(() -> graph.reserveRemoval(T, "a")).hasMessageContaining("b");
+
+        Runnable rollback = graph.reserveRemoval(T, "b");
+        assertThat(graph.contains(T, "b")).isFalse();
+        rollback.run();
+        assertThat(graph.contains(T, "b")).isTrue();
+        assertThat(graph.ready(T)).containsExactly("a");
+    }
+
+    @Test
+    @DisplayName("a task is ready once all its dependencies are done")
+    void tracksReadiness() {
+        graph.put(T, "a", List.of(), false);
+        graph.put(T, "b", List.of(), false);
+        graph.put(T, "c", List.of("a", "b"), false);
+        assertThat(graph.ready(T)).containsExactlyInAnyOrder("a", "b");
+
+        graph.put(T, "a", List.of(), true);
+        assertThat(graph.ready(T)).containsExactly("b");
+
+        graph.put(T, "b", List.of(), true);
+        assertThat(graph.ready(T)).containsExactly("c");
+
+        graph.put(T, "b", List.of(), false);
+        assertThat(graph.ready(T)).containsExactly("b");
+
+        graph.remove(T, "b");
+        assertThat(graph.ready(T)).containsExactly("c");
+    }
+
+    @Test
+    @DisplayName("the same task id in two tenants is two independent tasks")
+    void isolatesTenants() {
+        graph.put("acme", "a", List.of(), false);
+        graph.put("globex", "a", List.of(), true);
+        graph.put("globex", "b", List.of("a"), false);
+
+        assertThat(graph.ready("acme")).containsExactly("a");
+        assertThat(graph.ready("globex")).containsExactly("b");
+        assertThat(graph.contains("initech", "a")).isFalse();
+        assertThatThrownBy(() -> graph.requireAcyclic("initech", null, List.of("a")))
+                .hasMessageContaining("unknown dependency");
+
+        graph.remove("acme", "a");
+        assertThat(graph.ready("acme")).isEmpty();
+        assertThat(graph.contains("globex", "a")).isTrue();
+    }
+}
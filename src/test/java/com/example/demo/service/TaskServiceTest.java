@@ -0,0 +1,240 @@
+package com.example.demo.service;
+
+import com.example.demo.cluster.PartitionedWork;
+import com.example.demo.config.MongoTuningProperties;
+import com.example.demo.dto.TaskCreateRequest;
+import com.example.demo.dto.TaskUpdateRequest;
+import com.example.demo.entity.Task;
+import com.example.demo.entity.TaskStatus;
+import com.example.demo.entity.User;
+import com.example.demo.mapper.TaskMapper;
+import com.example.demo.repository.TaskEventRepository;
+import com.example.demo.repository.TaskRepository;
+import com.example.demo.resilience.ResilienceProperties;
+import com.example.demo.resilience.ResilientRepositories;
+import com.example.demo.tenant.TenantLimiter;
+import com.example.demo.tenant.TenantProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// TaskService over real lookups, guards and graph; the store is an in-memory map of task documents
+// that can be taken down.
+@DisabledInNativeImage
+class TaskServiceTest {
+
+    private final ReactiveMongoTemplate mongo = mock(ReactiveMongoTemplate.class);
+    private final TaskRepository tasks = mock(TaskRepository.class);
+    private final AuditWriter audit = mock(AuditWriter.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final Map<String, Document> store = new ConcurrentHashMap<>();
+    private volatile boolean down;
+    private volatile boolean failSaves;
+    private MappingMongoConverter converter;
+    private BatchLookups lookups;
+    private TaskService service;
+
+    @BeforeEach
+    void setUp() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext context = new MongoMappingContext();
+        context.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        context.afterPropertiesSet();
+        converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        when(mongo.getConverter()).thenReturn(converter);
+        when(mongo.getCollectionName(Task.class)).thenReturn("tasks");
+        when(mongo.find(any(Query.class), eq(Document.class), eq("tasks"))).thenAnswer(inv -> down
+                ? Flux.error(new DataAccessResourceFailureException("connection refused"))
+                : Flux.fromIterable(List.copyOf(store.values())));
+        when(mongo.getCollectionName(User.class)).thenReturn("users");
+        when(mongo.find(any(Query.class), eq(Document.class), eq("users"))).thenAnswer(inv -> Flux.just(new Document("_id", "u1")));
+        when(mongo.find(any(Query.class), eq(Task.class))).thenAnswer(inv -> Flux.fromIterable(List.copyOf(store.values()))
+                .map(doc -> converter.read(Task.class, doc)));
+        when(tasks.save(any(Task.class))).thenAnswer(inv -> {
+            Task t = inv.getArgument(0);
+            if (failSaves)
+                return Mono.error(new DataAccessResourceFailureException("write failed"));
+            put(t);
+            return Mono.just(t);
+        });
+        when(tasks.delete(any(Task.class))).thenAnswer(inv -> {
+            store.remove(inv.<Task>getArgument(0).getId());
+            return Mono.empty();
+        });
+        when(audit.record(any(), anyString(), any(), any())).thenReturn(Mono.empty());
+
+        ResilienceProperties props = new ResilienceProperties();
+        props.setWindow(2);
+        props.setMinimumCalls(2);
+        props.setFailureRate(50);
+        props.setOpenFor(Duration.ofMinutes(1));
+        ResilientRepositories guards = new ResilientRepositories(props, converter, registry);
+        lookups = new BatchLookups(mongo, guards, registry, 100, 4);
+        service = new TaskService(tasks, new TaskMapper(), lookups, new TaskGraph(), mock(DueDateScheduler.class),
+                mongo, new MongoTuningProperties(), guards, registry, new TenantProperties(),
+                new TenantLimiter(new TenantProperties(), registry), mock(TaskEventRepository.class), audit, mock(ApplicationEventPublisher.class), null,
+                mock(PartitionedWork.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        lookups.close();
+    }
+
+    @Test
+    @DisplayName("an update that fails after merging leaves the fallback with the persisted task")
+    void failedUpdateDoesNotReachFallback() {
+        put(task("t1", "persisted"));
+        service.loadGraph();
+
+        TaskUpdateRequest req = new TaskUpdateRequest();
+        req.setTitle("never saved");
+        req.setStatus("NOT_A_STATUS");
+        StepVerifier.create(service.update("t1", req)).verifyError(IllegalArgumentException.class);
+
+        down = true;
+        for (int i = 0; i < 2; i++)
+            StepVerifier.create(service.get("t1"))
+                    .assertNext(d -> assertThat(d.getTitle()).isEqualTo("persisted"))
+                    .verifyComplete();
+        assertThat(registry.get("resilience.breaker.state").tag("name", "tasks").gauge().value()).isEqualTo(2);
+        StepVerifier.create(service.get("t1"))
+                .assertNext(d -> assertThat(d.getTitle()).isEqualTo("persisted"))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("writes wait for the dependency graph to load instead of rejecting dependencies it has not seen")
+    void waitsForGraph() {
+        put(task("a", "first"));
+        TaskCreateRequest req = new TaskCreateRequest();
+        req.setTitle("second");
+        req.setDependsOn(List.of("a"));
+
+        StepVerifier.create(service.create(req))
+                .then(service::loadGraph)
+                .assertNext(d -> assertThat(d.getDependsOn()).containsExactly("a"))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("a dependency that no longer exists does not block unrelated updates")
+    void keepsStaleDependencies() {
+        Task b = task("b", "dependent");
+        b.setDependsOn(List.of("gone"));
+        put(b);
+        service.loadGraph();
+
+        TaskUpdateRequest req = new TaskUpdateRequest();
+        req.setStatus("DONE");
+        StepVerifier.create(service.update("b", req))
+                .assertNext(d -> assertThat(d.getStatus()).isEqualTo("DONE"))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("a task other tasks depend on cannot be deleted")
+    void refusesToDeleteDependencies() {
+        put(task("a", "dependency"));
+        Task b = task("b", "dependent");
+        b.setDependsOn(List.of("a"));
+        put(b);
+        service.loadGraph();
+
+        StepVerifier.create(service.delete("a")).verifyErrorSatisfies(e ->
+                assertThat(((ResponseStatusException) e).getStatusCode()).isEqualTo(HttpStatus.CONFLICT));
+        StepVerifier.create(service.delete("b")).verifyComplete();
+        StepVerifier.create(service.delete("a")).verifyComplete();
+    }
+
+    @Test
+    @DisplayName("an edge whose save failed is rolled back and does not block the reverse edge")
+    void rollsBackFailedSave() {
+        put(task("a", "first"));
+        put(task("b", "second"));
+        service.loadGraph();
+
+        failSaves = true;
+        StepVerifier.create(service.update("a", dependsOn("b"))).verifyError(DataAccessResourceFailureException.class);
+        failSaves = false;
+
+        StepVerifier.create(service.update("b", dependsOn("a")))
+                .assertNext(d -> assertThat(d.getDependsOn()).containsExactly("a"))
+                .verifyComplete();
+        StepVerifier.create(service.update("a", dependsOn("b"))).verifyError(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("repeating an assignment or unassignment, as a re-run partition job does, saves and records nothing")
+    void repeatedAssignmentIsNoOp() {
+        put(task("t1", "report"));
+
+        for (int i = 0; i < 2; i++)
+            StepVerifier.create(service.assign("t1", "u1"))
+                    .assertNext(d -> assertThat(d.getAssigneeId()).isEqualTo("u1"))
+                    .verifyComplete();
+        verify(tasks, times(1)).save(any(Task.class));
+        verify(audit, times(1)).record(any(), anyString(), any(), any());
+
+        for (int i = 0; i < 2; i++)
+            StepVerifier.create(service.unassign("t1"))
+                    .assertNext(d -> assertThat(d.getAssigneeId()).isNull())
+                    .verifyComplete();
+        verify(tasks, times(2)).save(any(Task.class));
+        verify(audit, times(2)).record(any(), anyString(), any(), any());
+    }
+
+    private static TaskUpdateRequest dependsOn(String... ids) {
+        TaskUpdateRequest req = new TaskUpdateRequest();
+        req.setDependsOn(List.of(ids));
+        return req;
+    }
+
+    private void put(Task t) {
+        Document doc = new Document();
+        converter.write(t, doc);
+        store.put(t.getId(), doc);
+    }
+
+    private static Task task(String id, String title) {
+        Task t = new Task();
+        t.setId(id);
+        t.setTitle(title);
+        t.setStatus(TaskStatus.OPEN);
+        t.setVersion(1L);
+        return t;
+    }
+}
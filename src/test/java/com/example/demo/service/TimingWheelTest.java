@@ -0,0 +1,69 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimingWheelTest {
+
+    private static final long TICK = 10;
+
+    private final TimingWheel<String> wheel = new TimingWheel<>(TICK, 8, 3, 0);
+
+    @Test
+    @DisplayName("an entry fires on the tick of its deadline, not before")
+    void firesAtDeadline() {
+        wheel.schedule("a", 55, "a");
+
+        assertThat(wheel.advance(49)).isEmpty();
+        assertThat(wheel.advance(50)).containsExactly("a");
+        assertThat(wheel.advance(100)).isEmpty();
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("entries on higher levels cascade down and fire in order")
+    void cascades() {
+        wheel.schedule("late", 3_000, "late");
+        wheel.schedule("mid", 700, "mid");
+        wheel.schedule("soon", 20, "soon");
+
+        assertThat(wheel.advance(20)).containsExactly("soon");
+        assertThat(wheel.advance(699)).isEmpty();
+        assertThat(wheel.advance(700)).containsExactly("mid");
+        assertThat(wheel.advance(2_999)).isEmpty();
+        assertThat(wheel.advance(3_000)).containsExactly("late");
+    }
+
+    @Test
+    @DisplayName("a past deadline fires on the next tick")
+    void pastDeadlineFiresNext() {
+        wheel.advance(500);
+        wheel.schedule("overdue", 100, "overdue");
+
+        assertThat(wheel.advance(510)).containsExactly("overdue");
+    }
+
+    @Test
+    @DisplayName("cancelled and rescheduled entries fire once, at the new deadline")
+    void cancelAndReschedule() {
+        wheel.schedule("a", 100, "first");
+        wheel.schedule("b", 100, "b");
+        wheel.cancel("b");
+        wheel.schedule("a", 300, "second");
+
+        assertThat(wheel.advance(200)).isEmpty();
+        assertThat(wheel.advance(300)).containsExactly("second");
+    }
+
+    @Test
+    @DisplayName("a deadline beyond the horizon is refused")
+    void refusesBeyondHorizon() {
+        assertThat(wheel.horizonMs()).isEqualTo(8 * 8 * 8 * TICK);
+
+        assertThat(wheel.schedule("far", wheel.horizonMs() + TICK, "far")).isFalse();
+        assertThat(wheel.size()).isZero();
+        assertThat(wheel.schedule("near", wheel.horizonMs() - TICK, "near")).isTrue();
+    }
+}
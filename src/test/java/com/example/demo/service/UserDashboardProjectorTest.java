@@ -0,0 +1,110 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Task;
+import com.example.demo.entity.TaskStatus;
+import com.example.demo.entity.User;
+import com.example.demo.entity.UserDashboard;
+import com.example.demo.repository.UserDashboardRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.tenant.TenantProperties;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DisabledInNativeImage
+class UserDashboardProjectorTest {
+
+    private final ReactiveMongoTemplate mongo = mock(ReactiveMongoTemplate.class);
+    private final UserRepository users = mock(UserRepository.class);
+    private final UserDashboardRepository dashboards = mock(UserDashboardRepository.class);
+    private final UserDashboardProjector projector = new UserDashboardProjector(mongo, users, dashboards,
+            new TenantProperties(), new SimpleMeterRegistry(), 20, Duration.ofSeconds(30),
+            Duration.ofSeconds(5), Duration.ofSeconds(1), 3);
+
+    @BeforeEach
+    void setUp() {
+        User u = new User();
+        u.setId("u1");
+        u.setName("Ada");
+        when(users.findById("u1")).thenReturn(Mono.just(u));
+        when(mongo.find(any(Query.class), eq(Task.class))).thenReturn(Flux.just(task("t1", TaskStatus.OPEN), task("t2", TaskStatus.DONE)));
+        when(mongo.upsert(any(Query.class), any(UpdateDefinition.class), eq(UserDashboard.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(mongo.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(UserDashboard.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+    }
+
+    @Test
+    @DisplayName("task data is set and activity pushed without reading the dashboard back")
+    void updatesInPlace() {
+        UserDashboard.Activity activity = new UserDashboard.Activity();
+        activity.setEventId("e1");
+        activity.setTaskId("t1");
+        activity.setAt(Instant.now());
+
+        projector.project("u1", activity).block();
+
+        ArgumentCaptor<UpdateDefinition> summary = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongo).upsert(any(Query.class), summary.capture(), eq(UserDashboard.class));
+        Document set = summary.getValue().getUpdateObject().get("$set", Document.class);
+        assertThat(set.get("taskIds")).isEqualTo(List.of("t1", "t2"));
+        assertThat(set).doesNotContainKey("recent");
+
+        ArgumentCaptor<Query> target = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> push = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongo).updateFirst(target.capture(), push.capture(), eq(UserDashboard.class));
+        assertThat(target.getValue().getQueryObject().get("recent.eventId")).isEqualTo(new Document("$ne", "e1"));
+        Update.Modifiers recent = (Update.Modifiers) push.getValue().getUpdateObject().get("$push", Document.class).get("recent");
+        assertThat(recent.getModifiers()).anySatisfy(m -> {
+            assertThat(m.getKey()).isEqualTo("$slice");
+            assertThat(m.getValue()).isEqualTo(20);
+        });
+        verify(dashboards, never()).findById("u1");
+        verify(dashboards, never()).save(any(UserDashboard.class));
+    }
+
+    @Test
+    @DisplayName("a rebuild without activity does not touch recent activity")
+    void rebuildKeepsActivity() {
+        projector.project("u1", null).block();
+
+        verify(mongo).upsert(any(Query.class), any(Update.class), eq(UserDashboard.class));
+        verify(mongo, never()).updateFirst(any(Query.class), any(UpdateDefinition.class), eq(UserDashboard.class));
+    }
+
+    @Test
+    @DisplayName("reads bypass the dashboards until the lag has been measured")
+    void servesOnlyWhenMeasured() {
+        assertThat(projector.serves("default")).isFalse();
+    }
+
+    private static Task task(String id, TaskStatus status) {
+        Task t = new Task();
+        t.setId(id);
+        t.setStatus(status);
+        return t;
+    }
+}
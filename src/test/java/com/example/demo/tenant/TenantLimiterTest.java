@@ -0,0 +1,148 @@
+package com.example.demo.tenant;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TenantLimiterTest {
+
+    @Test
+    @DisplayName("a lone tenant may use every permit")
+    void workConserving() {
+        TenantLimiter limiter = limiter(4, 10, Map.of("a", 1, "b", 3));
+
+        List<TenantLimiter.Permit> held = acquire(limiter, "a", 4);
+
+        assertThat(held).hasSize(4);
+        assertThat(limiter.inUse("a")).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("under contention freed permits converge to the weighted share")
+    void weightedShare() {
+        TenantLimiter limiter = limiter(4, 10, Map.of("a", 3, "b", 1));
+        List<TenantLimiter.Permit> first = acquire(limiter, "a", 4);
+        List<TenantLimiter.Permit> granted = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire("a").subscribe(granted::add);
+            limiter.acquire("b").subscribe(granted::add);
+        }
+        assertThat(limiter.queued("a")).isEqualTo(5);
+        assertThat(limiter.queued("b")).isEqualTo(5);
+
+        first.forEach(TenantLimiter.Permit::release);
+
+        assertThat(limiter.inUse("a")).isEqualTo(3);
+        assertThat(limiter.inUse("b")).isEqualTo(1);
+        assertThat(granted).hasSize(4);
+    }
+
+    @Test
+    @DisplayName("a heavy tenant does not delay a light one behind its own queue")
+    void lightTenantGoesFirst() {
+        TenantLimiter limiter = limiter(2, 10, Map.of("a", 1, "b", 1));
+        List<TenantLimiter.Permit> first = acquire(limiter, "a", 2);
+        List<String> order = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            limiter.acquire("a").subscribe(p -> order.add("a"));
+        limiter.acquire("b").subscribe(p -> order.add("b"));
+
+        first.get(0).release();
+
+        assertThat(order).containsExactly("b");
+    }
+
+    @Test
+    @DisplayName("a full queue rejects with 429, a cancelled waiter leaves the queue")
+    void queueLimitAndCancel() {
+        TenantLimiter limiter = limiter(1, 1, Map.of("a", 1));
+        TenantLimiter.Permit held = acquire(limiter, "a", 1).get(0);
+        Disposable waiting = limiter.acquire("a").subscribe();
+
+        StepVerifier.create(limiter.acquire("a"))
+                .expectErrorSatisfies(e -> assertThat(((ResponseStatusException) e).getStatusCode().value()).isEqualTo(429))
+                .verify();
+
+        waiting.dispose();
+        assertThat(limiter.queued("a")).isZero();
+        held.release();
+        assertThat(limiter.inUse("a")).isZero();
+    }
+
+    @Test
+    @DisplayName("a stream keeps its permit until it completes or is cancelled")
+    void holdsUntilTerminated() {
+        TenantLimiter limiter = limiter(1, 10, Map.of("a", 1));
+        Sinks.Many<Integer> cursor = Sinks.many().unicast().onBackpressureBuffer();
+
+        StepVerifier.create(limiter.run("a", cursor.asFlux()))
+                .then(() -> cursor.tryEmitNext(1))
+                .expectNext(1)
+                .then(() -> assertThat(limiter.inUse("a")).isEqualTo(1))
+                .then(cursor::tryEmitComplete)
+                .verifyComplete();
+        assertThat(limiter.inUse("a")).isZero();
+
+        StepVerifier.create(limiter.run("a", Flux.never()))
+                .then(() -> assertThat(limiter.inUse("a")).isEqualTo(1))
+                .thenCancel()
+                .verify();
+        assertThat(limiter.inUse("a")).isZero();
+    }
+
+    @Test
+    @DisplayName("calls made under a held permit reuse it, so a saturated tenant cannot wait on itself")
+    void nestedCallsReusePermit() {
+        TenantLimiter limiter = limiter(1, 1, Map.of("a", 1));
+
+        Flux<Integer> nested = limiter.run("a", Flux.range(0, 500)
+                .flatMap(i -> limiter.run("a", Mono.just(i))));
+
+        StepVerifier.create(nested.count())
+                .then(() -> assertThat(limiter.inUse("a")).isLessThanOrEqualTo(1))
+                .expectNext(500L)
+                .verifyComplete();
+        assertThat(limiter.inUse("a")).isZero();
+    }
+
+    @Test
+    @DisplayName("another tenant's permit is not reused, and unlimited work takes none")
+    void reuseIsPerTenant() {
+        TenantLimiter limiter = limiter(2, 10, Map.of("a", 1, "b", 1));
+
+        limiter.run("a", limiter.run("b", Mono.never())).subscribe();
+        assertThat(limiter.inUse("a")).isEqualTo(1);
+        assertThat(limiter.inUse("b")).isEqualTo(1);
+
+        limiter.run("a", Flux.never()).contextWrite(TenantLimiter.unlimited()).subscribe();
+        assertThat(limiter.inUse("a")).isEqualTo(1);
+    }
+
+    private static List<TenantLimiter.Permit> acquire(TenantLimiter limiter, String tenant, int n) {
+        List<TenantLimiter.Permit> held = new ArrayList<>();
+        for (int i = 0; i < n; i++)
+            limiter.acquire(tenant).subscribe(held::add);
+        return held;
+    }
+
+    private static TenantLimiter limiter(int capacity, int maxQueue, Map<String, Integer> weights) {
+        TenantProperties props = new TenantProperties();
+        props.setTotalConcurrency(capacity);
+        props.setMaxQueue(maxQueue);
+        props.setWeights(new LinkedHashMap<>(weights));
+        return new TenantLimiter(props, new SimpleMeterRegistry());
+    }
+}
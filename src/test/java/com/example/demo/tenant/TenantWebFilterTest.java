@@ -0,0 +1,53 @@
+package com.example.demo.tenant;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TenantWebFilterTest {
+
+    private final TenantWebFilter filter = new TenantWebFilter(props());
+
+    @Test
+    @DisplayName("each request runs in the tenant named by its header, or the default one")
+    void resolvesTenant() {
+        List<String> seen = new CopyOnWriteArrayList<>();
+
+        filter.filter(exchange("acme"), e -> TenantContext.current().doOnNext(seen::add).then()).block();
+        filter.filter(exchange(null), e -> TenantContext.current().doOnNext(seen::add).then()).block();
+
+        assertThat(seen).containsExactly("acme", TenantContext.DEFAULT);
+    }
+
+    @Test
+    @DisplayName("an unknown tenant is rejected with 400")
+    void rejectsUnknownTenant() {
+        StepVerifier.create(filter.filter(exchange("initech"), e -> Mono.empty()))
+                .expectErrorSatisfies(e -> assertThat(((ResponseStatusException) e).getStatusCode().value()).isEqualTo(400))
+                .verify();
+    }
+
+    private static MockServerWebExchange exchange(String tenant) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get("/tasks");
+        if (tenant != null)
+            request.header("X-Tenant-Id", tenant);
+        return MockServerWebExchange.from(request);
+    }
+
+    private static TenantProperties props() {
+        TenantProperties props = new TenantProperties();
+        props.setWeights(new LinkedHashMap<>(Map.of(TenantContext.DEFAULT, 1, "acme", 1)));
+        return props;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.demo.web;
+
+import com.example.demo.event.Actor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ActorWebFilterTest {
+
+    private final ActorWebFilter filter = new ActorWebFilter(new String[]{"10.0.0.5"});
+
+    @Test
+    @DisplayName("the header is taken from a trusted proxy")
+    void trustsProxy() {
+        assertThat(actor("10.0.0.5", "alice")).isEqualTo("alice");
+    }
+
+    @Test
+    @DisplayName("any other peer is recorded by address, whatever header it sends")
+    void ignoresHeaderFromUntrustedPeer() {
+        assertThat(actor("203.0.113.7", "alice")).isEqualTo("ip:203.0.113.7");
+        assertThat(actor("10.0.0.5", null)).isEqualTo("ip:10.0.0.5");
+    }
+
+    private String actor(String peer, String header) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.post("/tasks")
+                .remoteAddress(new InetSocketAddress(peer, 40_000));
+        if (header != null)
+            request.header(ActorWebFilter.HEADER, header);
+        AtomicReference<String> seen = new AtomicReference<>();
+        filter.filter(MockServerWebExchange.from(request),
+                exchange -> Mono.deferContextual(ctx -> {
+                    seen.set(Actor.of(ctx));
+                    return Mono.empty();
+                })).block();
+        return seen.get();
+    }
+}